@@ -23,6 +23,18 @@ public enum RedisKeys {
 	/** 动态配置信息的前缀 */
 	CONFIG_STORE("cfg:"),
 
+	/** 定时任务保存 SCAN 游标的前缀，以便下次接着上次的位置继续 */
+	CURSOR("cursor:"),
+
+	/** 发布/订阅频道的前缀，用于通知其它节点刷新本地缓存 */
+	CHANNEL("ch:"),
+
+	/** 邮件发件箱，包括待发送的队列、邮件内容和给博主的摘要 */
+	MAIL("mail:"),
+
+	/** 草稿自动保存的缓冲区，以及等待写入数据库的草稿 ZSET */
+	DRAFT_BUFFER("draft-buf:"),
+
 	; // <-- 分号是必须要有滴
 
 	private final String prefix;
@@ -1,28 +1,86 @@
 package com.kaciras.blog.api.account;
 
 import com.kaciras.blog.api.RedisKeys;
-import lombok.Cleanup;
-import lombok.RequiredArgsConstructor;
+import com.kaciras.blog.infra.principal.SessionPrincipalCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.session.SessionRepository;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * 为了保证服务端能够主动删除 Session，使用了 Redis 的 Set 来记录每个用户的 Session。
  * 该仓库使用 Redis 的 Set 来记录 UserId -> [SessionIds]。
  *
  * <h2>RedisTemplate 的返回值</h2>
  * SpringDataRedis 的脑残设计，只有事务下才会返回 null 但 RedisTemplate 无法区分也没有事务，所以这里直接忽略警告。
+ *
+ * <h2>身份缓存</h2>
+ * 每个节点都在本地缓存了会话对应的身份（见 SessionPrincipalCache），删除会话或登出后
+ * 通过 Redis 的发布/订阅通知所有节点（包括自己）删除对应的缓存。
  */
-@RequiredArgsConstructor
-@SuppressWarnings("ConstantConditions")
+@SuppressWarnings({"ConstantConditions", "unchecked", "rawtypes"})
+@Slf4j
 @Component
-public class HttpSessionTable {
+public class HttpSessionTable implements MessageListener {
+
+	private static final String CHANNEL = RedisKeys.CHANNEL.of("session");
+
+	private static final String CURSOR_KEY = RedisKeys.CURSOR.of("ac");
+	private static final String ACCOUNT_PATTERN = RedisKeys.ACCOUNT_SESSIONS.of("*");
+
+	/** 每批 SCAN 的 COUNT 参数 */
+	private static final String SCAN_COUNT = "100";
+
+	/** 每次清理最多执行几批 */
+	private static final int MAX_STEPS = 20;
+
+	private static final DefaultRedisScript<List> SCAN_STEP;
+
+	static {
+		SCAN_STEP = new DefaultRedisScript<>();
+		SCAN_STEP.setResultType(List.class);
+		SCAN_STEP.setLocation(new ClassPathResource("ScanStep.lua"));
+	}
 
 	private final SessionRepository<?> sessionRepository;
 	private final RedisTemplate<String, String> redisTemplate;
+	private final SessionPrincipalCache principalCache;
+
+	/** 会话在 Redis 里的键前缀，跟 RedisSessionRepository 的一致 */
+	private final String sessionKeyPrefix;
+
+	private final LongAdder totalRemoved = new LongAdder();
+	private volatile Duration lastRunTime = Duration.ZERO;
+	private volatile int lastRemoved;
+
+	public HttpSessionTable(SessionRepository<?> sessionRepository,
+							RedisTemplate<String, String> redisTemplate,
+							SessionPrincipalCache principalCache,
+							RedisMessageListenerContainer container,
+							@Value("${spring.session.redis.namespace:spring:session}") String namespace) {
+		this.sessionRepository = sessionRepository;
+		this.redisTemplate = redisTemplate;
+		this.principalCache = principalCache;
+		this.sessionKeyPrefix = namespace + ":sessions:";
+		container.addMessageListener(this, new ChannelTopic(CHANNEL));
+	}
 
 	/**
 	 * 记录用户的 HTTP 会话 ID 以便后面能够删除会话。
@@ -44,30 +102,131 @@ public class HttpSessionTable {
 		var records = redisTemplate.opsForSet().members(key);
 
 		redisTemplate.unlink(key);
-		records.forEach(sessionRepository::deleteById);
+		for (var sessionId : records) {
+			sessionRepository.deleteById(sessionId);
+			invalidatePrincipal(sessionId);
+		}
+	}
+
+	/**
+	 * 会话中的用户改变后（比如登出）调用，让所有节点上缓存的身份失效。
+	 *
+	 * @param sessionId 会话ID
+	 */
+	public void invalidatePrincipal(String sessionId) {
+		principalCache.invalidate(sessionId);
+		redisTemplate.convertAndSend(CHANNEL, sessionId);
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		principalCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
 	}
 
 	/**
 	 * 会话如果过期，那么也没有办法及时清理，所以需要搞一个定时清理。
+	 * <p>
+	 * 每次最多处理 MAX_STEPS 批，然后把 SCAN 的游标存到 Redis 里下次接着来，
+	 * 一批之内的查询都使用管道，不会长时间霸占 Redis。
+	 * 检查会话是否存在时直接对会话的键用 EXISTS，不去加载整个会话。
 	 */
-	@Scheduled(fixedDelay = 24 * 60 * 60 * 1000)
+	@Scheduled(fixedDelay = 10 * 60 * 1000)
 	void cleanAccountRecords() {
-		var options = ScanOptions.scanOptions()
-				.match(RedisKeys.ACCOUNT_SESSIONS.of("*"))
-				.build();
-
-		@Cleanup var conn = redisTemplate.getRequiredConnectionFactory().getConnection();
-		@Cleanup var accounts = conn.keyCommands().scan(options);
-
-		while (accounts.hasNext()) {
-			var recordSet = new String(accounts.next());
-			var invalid = redisTemplate.opsForSet().members(recordSet)
-					.stream()
-					.filter(id -> sessionRepository.findById(id) == null)
-					.toArray();
-			if (invalid.length > 0) {
-				redisTemplate.opsForSet().remove(recordSet, invalid);
+		var start = System.nanoTime();
+		var cursor = redisTemplate.opsForValue().get(CURSOR_KEY);
+		if (cursor == null) {
+			cursor = "0";
+		}
+
+		var scanned = 0;
+		var removed = 0;
+		for (var i = 0; i < MAX_STEPS; i++) {
+			var result = redisTemplate.execute(SCAN_STEP, List.of(), cursor, ACCOUNT_PATTERN, SCAN_COUNT);
+			cursor = (String) result.get(0);
+
+			var keys = (List<String>) result.get(1);
+			scanned += keys.size();
+			removed += removeInvalid(keys);
+
+			if ("0".equals(cursor)) {
+				break;
 			}
 		}
+
+		if ("0".equals(cursor)) {
+			redisTemplate.unlink(CURSOR_KEY);
+		} else {
+			redisTemplate.opsForValue().set(CURSOR_KEY, cursor);
+		}
+
+		lastRunTime = Duration.ofNanos(System.nanoTime() - start);
+		lastRemoved = removed;
+		totalRemoved.add(removed);
+		logger.info("清理会话记录：检查了 {} 个账户，删除 {} 条，耗时 {}ms",
+				scanned, removed, lastRunTime.toMillis());
+	}
+
+	/**
+	 * 删除一批账户的会话集合中已经不存在的会话，分三轮管道：读取集合、检查会话、删除记录。
+	 *
+	 * @param keys 账户会话集合的键
+	 * @return 删除的记录数
+	 */
+	private int removeInvalid(List<String> keys) {
+		if (keys.isEmpty()) {
+			return 0;
+		}
+		var serializer = redisTemplate.getStringSerializer();
+
+		var members = redisTemplate.executePipelined((RedisCallback<?>) conn -> {
+			keys.forEach(k -> conn.setCommands().sMembers(serializer.serialize(k)));
+			return null;
+		});
+
+		var records = new ArrayList<String[]>();
+		for (var i = 0; i < keys.size(); i++) {
+			for (var id : (Set<String>) members.get(i)) {
+				records.add(new String[]{keys.get(i), id});
+			}
+		}
+
+		var exists = redisTemplate.executePipelined((RedisCallback<?>) conn -> {
+			records.forEach(r -> conn.keyCommands().exists(serializer.serialize(sessionKeyPrefix + r[1])));
+			return null;
+		});
+
+		var invalid = new HashMap<String, List<String>>();
+		for (var i = 0; i < records.size(); i++) {
+			if (!((Boolean) exists.get(i))) {
+				var r = records.get(i);
+				invalid.computeIfAbsent(r[0], k -> new ArrayList<>()).add(r[1]);
+			}
+		}
+
+		if (!invalid.isEmpty()) {
+			redisTemplate.executePipelined((RedisCallback<?>) conn -> {
+				invalid.forEach((key, ids) -> conn.setCommands().sRem(
+						serializer.serialize(key),
+						ids.stream().map(serializer::serialize).toArray(byte[][]::new)
+				));
+				return null;
+			});
+		}
+		return invalid.values().stream().mapToInt(List::size).sum();
+	}
+
+	/** 最近一次清理的耗时 */
+	public Duration getLastRunTime() {
+		return lastRunTime;
+	}
+
+	/** 最近一次清理删除的记录数 */
+	public int getLastRemoved() {
+		return lastRemoved;
+	}
+
+	/** 启动以来清理删除的记录总数 */
+	public long getTotalRemoved() {
+		return totalRemoved.sum();
 	}
 }
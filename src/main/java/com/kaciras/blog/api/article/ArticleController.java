@@ -4,6 +4,7 @@ import com.kaciras.blog.api.DeletedState;
 import com.kaciras.blog.api.ListQueryView;
 import com.kaciras.blog.api.draft.DraftContent;
 import com.kaciras.blog.api.draft.DraftRepository;
+import com.kaciras.blog.infra.ParallelScope;
 import com.kaciras.blog.infra.RequestUtils;
 import com.kaciras.blog.infra.exception.RequestArgumentException;
 import com.kaciras.blog.infra.exception.ResourceDeletedException;
@@ -77,10 +78,12 @@ class ArticleController {
 			SecurityContext.require("SHOW_DELETED");
 		}
 
-		var items = mapper.toPreview(repository.findAll(query), query);
-		var total = repository.count(query);
-
-		return new ListQueryView<>(total, items);
+		// 文章列表和总数互不依赖，同时查询
+		try (var scope = new ParallelScope()) {
+			var items = scope.fork(() -> mapper.toPreview(repository.findAll(query), query));
+			var total = scope.fork(() -> repository.count(query));
+			return new ListQueryView<>(total.get(), items.get());
+		}
 	}
 
 	@GetMapping("/{id}")
@@ -25,13 +25,13 @@ interface ArticleDAO {
 	int selectCount();
 
 	/**
-	 * 没指定分类的话单独搞一个方法查询性能好点
+	 * 没指定分类的话单独搞一个方法查询性能好点，结果中不包含关键词。
 	 *
 	 * @param query 查询请求对象
 	 * @return 文章预览信息列表
 	 */
 	@SelectProvider(type = SqlProvider.class, method = "selectPreview")
-	@ResultMap("com.kaciras.blog.api.article.ArticleDAO.articleMap")
+	@ResultMap("com.kaciras.blog.api.article.ArticleDAO.previewMap")
 	List<Article> selectPreview(ArticleListQuery query);
 
 	@Insert("INSERT INTO article(category, title, url_title, cover, summary, content) " +
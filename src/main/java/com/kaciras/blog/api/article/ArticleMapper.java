@@ -5,7 +5,6 @@ import com.kaciras.blog.api.category.Banner;
 import com.kaciras.blog.api.category.Category;
 import com.kaciras.blog.api.category.CategoryManager;
 import com.kaciras.blog.api.category.CategoryRepository;
-import com.kaciras.blog.api.discuss.DiscussionQuery;
 import com.kaciras.blog.api.discuss.DiscussionRepository;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -14,9 +13,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Mapper(config = MapStructConfig.class)
 abstract class ArticleMapper {
@@ -47,27 +47,37 @@ abstract class ArticleMapper {
 		return categoryManager.getBanner(article.getCategory());
 	}
 
-	public final List<PreviewVO> toPreview(@NonNull List<Article> articles, ArticleListQuery request) {
-		return articles.stream().map(article -> toPreview(article, request)).collect(Collectors.toList());
-	}
-
 	/**
-	 * 将用户信息，评论数，分类路径和文章聚合为一个对象，节约前端请求次数。
+	 * 批量转换为预览对象。
+	 * <p>
+	 * 评论数用一条 GROUP BY 查询全部取出；分类路径按分类去重，一页里的文章通常只属于少数几个分类。
+	 * 这样语句数与文章数无关，也不会为每篇文章占用一个数据库连接。
 	 *
-	 * @param article 文章对象
-	 * @return 聚合后的对象
+	 * @param articles 文章列表
+	 * @param request  查询参数
+	 * @return 预览对象列表，顺序与参数相同
 	 */
-	final PreviewVO toPreview(Article article, ArticleListQuery request) {
-		var vo = createPreviewFrom(article);
-		if (request.isContent()) {
-			vo.content = article.getContent();
+	public final List<PreviewVO> toPreview(@NonNull List<Article> articles, ArticleListQuery request) {
+		var ids = articles.stream().map(Article::getId).toList();
+		var discussionCounts = discussionRepository.countByTopics(1, ids);
+		var paths = new HashMap<Integer, List<CategoryNode>>();
+
+		var result = new ArrayList<PreviewVO>(articles.size());
+		for (var article : articles) {
+			var vo = createPreviewFrom(article);
+			if (request.isContent()) {
+				vo.content = article.getContent();
+			}
+			vo.categories = paths.computeIfAbsent(article.getCategory(), id -> getCategoryPath(id, request));
+			vo.discussionCount = discussionCounts.getOrDefault(article.getId(), 0);
+			result.add(vo);
 		}
+		return result;
+	}
 
-		var path = categoryRepository.get(article.getCategory()).getPathTo(request.getCategory());
-		vo.categories = mapCategoryPath(path);
-
-		vo.discussionCount = discussionRepository.count(new DiscussionQuery().setObjectId(article.getId()).setType(1));
-		return vo;
+	private List<CategoryNode> getCategoryPath(int category, ArticleListQuery request) {
+		var path = categoryRepository.get(category).getPathTo(request.getCategory());
+		return mapCategoryPath(path);
 	}
 
 	// 排除内容属性，由外层的方法决定是否复制
@@ -11,7 +11,9 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor(access = AccessLevel.PROTECTED)
 @Repository
@@ -33,15 +35,38 @@ public class ArticleRepository {
 		return articleDAO.selectById(id).orElseThrow(ResourceNotFoundException::new);
 	}
 
+	/**
+	 * 查询文章列表，整页文章的关键词用一条语句查出，而不是每篇文章查一次。
+	 *
+	 * @param query 查询条件
+	 * @return 文章列表
+	 */
 	public List<Article> findAll(@NonNull ArticleListQuery query) {
-		return articleDAO.selectPreview(query);
+		var articles = articleDAO.selectPreview(query);
+		if (articles.isEmpty()) {
+			return articles;
+		}
+
+		var ids = articles.stream().map(Article::getId).toList();
+		var keywords = keywordDAO.selectAll(ids).stream()
+				.collect(Collectors.groupingBy(KeywordDAO.Keyword::id,
+						Collectors.mapping(KeywordDAO.Keyword::value, Collectors.toList())));
+
+		for (var article : articles) {
+			article.setKeywords(keywords.getOrDefault(article.getId(), new ArrayList<>()));
+		}
+		return articles;
 	}
 
 	@Transactional
 	public void add(@NonNull Article article) {
 		try {
 			articleDAO.insert(article);
-			insertKeywords(article.getId(), article.getKeywords());
+
+			var keywords = normalize(article.getKeywords());
+			if (!keywords.isEmpty()) {
+				keywordDAO.insertAll(article.getId(), keywords);
+			}
 		} catch (DataIntegrityViolationException ex) {
 			throw new RequestArgumentException();
 		}
@@ -51,17 +76,34 @@ public class ArticleRepository {
 	public void update(@NonNull Article article) {
 		try {
 			Utils.checkEffective(articleDAO.update(article));
-			keywordDAO.clear(article.getId());
-			insertKeywords(article.getId(), article.getKeywords());
+			updateKeywords(article.getId(), normalize(article.getKeywords()));
 		} catch (DataIntegrityViolationException ex) {
 			throw new RequestArgumentException();
 		}
 	}
 
-	private void insertKeywords(int articleId, List<String> keywords) {
-		keywords.stream().map(String::trim)
-				.filter(kw -> !kw.isEmpty())
-				.forEach(kw -> keywordDAO.insert(articleId, kw));
+	/**
+	 * 对比新旧关键词，只删除去掉的、插入新增的，没有变化就不写数据库。
+	 */
+	private void updateKeywords(int articleId, List<String> keywords) {
+		var existing = keywordDAO.select(articleId);
+
+		var removed = new ArrayList<>(existing);
+		removed.removeAll(keywords);
+
+		var added = new ArrayList<>(keywords);
+		added.removeAll(existing);
+
+		if (!removed.isEmpty()) {
+			keywordDAO.delete(articleId, removed);
+		}
+		if (!added.isEmpty()) {
+			keywordDAO.insertAll(articleId, added);
+		}
+	}
+
+	private static List<String> normalize(List<String> keywords) {
+		return keywords.stream().map(String::trim).filter(kw -> !kw.isEmpty()).toList();
 	}
 
 	public int size() {
@@ -1,21 +1,41 @@
 package com.kaciras.blog.api.article;
 
+import com.kaciras.blog.infra.MybatisInlineScriptDriver;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Lang;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
 interface KeywordDAO {
 
+	record Keyword(int id, String value) {}
+
 	@Select("SELECT value FROM keyword WHERE id=#{id}")
 	List<String> select(int id);
 
-	@Insert("INSERT INTO keyword(id, value) VALUES (#{id}, #{value})")
-	void insert(int id, String value);
+	/**
+	 * 查询多篇文章的关键词，ids 不能为空。
+	 */
+	@Lang(MybatisInlineScriptDriver.class)
+	@Select("SELECT id, value FROM keyword WHERE id IN (#{ids})")
+	List<Keyword> selectAll(Collection<Integer> ids);
+
+	/**
+	 * 一条语句插入多个关键词，values 不能为空。
+	 */
+	@Lang(MybatisInlineScriptDriver.class)
+	@Insert("INSERT INTO keyword(id, value) VALUES (#{id}, #{values[]})")
+	void insertAll(int id, Collection<String> values);
 
-	@Delete("DELETE FROM keyword WHERE id=#{id}")
-	void clear(int id);
+	/**
+	 * 删除文章的部分关键词，values 不能为空。
+	 */
+	@Lang(MybatisInlineScriptDriver.class)
+	@Delete("DELETE FROM keyword WHERE id=#{id} AND value IN (#{values})")
+	void delete(int id, Collection<String> values);
 }
@@ -15,19 +15,32 @@ final class ChangeListener<T> {
 	@Getter
 	private final Class<T> type;
 
+	/** 已应用的配置的版本号 */
+	@Getter
+	private volatile long version;
+
 	/**
-	 * 把配置对象应用到每个绑定点上。
+	 * 把配置对象应用到每个绑定点上，如果版本号比已应用的旧则忽略。
+	 * 版本号相同的配置内容也相同，再应用一次没有影响。
 	 *
 	 * <h2>没有做隔离</h2>
 	 * 懒得为每个接受者复制一份了，所有地方都是同一个对象。
 	 *
-	 * @param value 配置对象
+	 * @param value   配置对象
+	 * @param version 配置的版本号
+	 * @return 是否应用了
 	 */
-	public void fire(T value) {
+	public synchronized boolean fire(T value, long version) {
+		if (version < this.version) {
+			return false;
+		}
+		this.version = version;
 		listeners.forEach(lis -> lis.accept(value));
+		return true;
 	}
 
-	public void add(Consumer<T> consumer) {
+	public synchronized void add(Consumer<T> consumer, long version) {
 		listeners.add(consumer);
+		this.version = Math.max(this.version, version);
 	}
 }
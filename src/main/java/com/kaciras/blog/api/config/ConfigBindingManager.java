@@ -1,36 +1,135 @@
 package com.kaciras.blog.api.config;
 
+import com.kaciras.blog.api.config.ConfigRepository.Stored;
 import com.kaciras.blog.infra.func.UncheckedConsumer;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.ValidationException;
 import jakarta.validation.Validator;
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 管理配置的绑定，配置修改后应用到所有绑定了的地方。
+ *
+ * <h2>启动</h2>
+ * ConfigBindingPostProcessor 会先收集所有要绑定的配置名，调用 preload 一次性读取，
+ * 之后每个 bean 绑定时直接使用，不用每个字段查一次 Redis。启动完成后就清掉。
+ *
+ * <h2>集群</h2>
+ * 修改配置时存储会递增版本号并广播给所有节点，每个节点收到后重新绑定。
+ * 消息的到达顺序可能与修改的顺序不同，所以只应用比当前版本新的配置。
+ * <p>
+ * 消息可能在绑定注册之前就到了，这时还没有地方可以应用。所以每个配置收到的最新消息都会记下来，
+ * 绑定注册后再检查一次，比读取到的版本新就应用它。
+ * <p>
+ * 发布/订阅不保证送达，断线期间的消息会丢失，所以每次订阅成功（包括重连）和定时都会
+ * 从存储读一遍版本号，把落后的配置补上。
+ */
 @SuppressWarnings("unchecked")
-@RequiredArgsConstructor(access = AccessLevel.PROTECTED)
+@Slf4j
 @Service
-public class ConfigBindingManager {
+public class ConfigBindingManager implements SmartInitializingSingleton {
 
-	// 目前仅在启动时添加，不存在线程安全问题
-	private final Map<String, ChangeListener<?>> bindings = new HashMap<>();
+	private static final Stored EMPTY = new Stored(null, 0);
+
+	// 启动时添加，同时可能收到修改的消息
+	private final Map<String, ChangeListener<?>> bindings = new ConcurrentHashMap<>();
+
+	/** 每个配置收到过的最新消息，用于补上绑定注册前到达的修改 */
+	private final Map<String, Stored> received = new ConcurrentHashMap<>();
 
 	private final ConfigRepository configRepository;
 
 	@Nullable
 	private final Validator validator;
 
+	/** 启动时批量读取的配置，启动完成后清空 */
+	private volatile Map<String, Stored> preloaded = Map.of();
+
+	protected ConfigBindingManager(ConfigRepository configRepository, @Nullable Validator validator) {
+		this.configRepository = configRepository;
+		this.validator = validator;
+		configRepository.subscribe(this::onChange, this::resync);
+	}
+
+	/**
+	 * 一次性读取多个配置，之后对它们的绑定就不再访问存储。
+	 *
+	 * @param names 配置名
+	 */
+	public void preload(Collection<String> names) {
+		preloaded = configRepository.loadAll(names);
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		preloaded = Map.of();
+	}
+
 	public <T> void bind(String name, Class<T> type, UncheckedConsumer<T> setter) {
-		setter.accept(getConfigObject(name, type));
+		var stored = preloaded.get(name);
+		if (stored == null) {
+			stored = configRepository.loadAll(List.of(name)).getOrDefault(name, EMPTY);
+		}
+		var data = stored.data();
+		setter.accept(validOrDefault(name, type, data == null ? null : configRepository.parse(data, type)));
+
 		var listener = bindings.computeIfAbsent(name, (__) -> new ChangeListener<>(type));
-		((ChangeListener<T>) listener).add(setter);
+		((ChangeListener<T>) listener).add(setter, stored.version());
+
+		// 先注册再检查，onChange 则是先记录再找绑定，两边总有一个能看到对方。
+		var latest = received.get(name);
+		if (latest != null && latest.version() > stored.version()) {
+			apply(name, latest);
+		}
+	}
+
+	/**
+	 * 从存储读取所有已绑定配置的版本号，应用比当前新的，补上丢失的消息。
+	 */
+	@Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 10 * 60 * 1000)
+	void resync() {
+		if (bindings.isEmpty()) {
+			return;
+		}
+		configRepository.loadAll(List.copyOf(bindings.keySet())).forEach((name, stored) -> {
+			var binding = bindings.get(name);
+			if (binding != null && stored.version() > binding.getVersion()) {
+				apply(name, stored);
+			}
+		});
+	}
+
+	/**
+	 * 收到配置修改的消息，包括自己发出的。
+	 */
+	private void onChange(String name, Stored stored) {
+		received.merge(name, stored, (old, now) -> now.version() > old.version() ? now : old);
+		apply(name, stored);
+	}
+
+	private <T> void apply(String name, Stored stored) {
+		var binding = (ChangeListener<T>) bindings.get(name);
+		if (binding == null || stored.version() < binding.getVersion()) {
+			return;
+		}
+		try {
+			var value = configRepository.parse(Objects.requireNonNull(stored.data()), binding.getType());
+			validate(name, value);
+			binding.fire(value, stored.version());
+		} catch (RuntimeException e) {
+			logger.error("无法应用配置 {}，版本 {}", name, stored.version(), e);
+		}
 	}
 
 	/**
@@ -50,7 +149,7 @@ public class ConfigBindingManager {
 	}
 
 	/**
-	 * 设置指定的配置，新的配置将应用到所有绑定了的地方，并保存在存储中以便下次使用。
+	 * 设置指定的配置，新的配置将保存在存储中以便下次使用，并应用到所有节点上绑定了的地方。
 	 *
 	 * @param name  配置名
 	 * @param value 新的配置，不能为 null
@@ -59,14 +158,16 @@ public class ConfigBindingManager {
 		validate(name, Objects.requireNonNull(value));
 
 		var binding = bindings.get(name);
-		if (binding != null) {
-			if (binding.getType() != value.getClass()) {
-				throw new IllegalArgumentException("配置类型不符");
-			}
-			((ChangeListener<T>) binding).fire(value);
+		if (binding != null && binding.getType() != value.getClass()) {
+			throw new IllegalArgumentException("配置类型不符");
 		}
 
-		configRepository.save(name, value);
+		var version = configRepository.save(name, value);
+
+		// 本节点不必等消息，如果消息先到了，版本相同也没关系。
+		if (binding != null) {
+			((ChangeListener<T>) binding).fire(value, version);
+		}
 	}
 
 	// 两种校验方式，以后可能会扩展？
@@ -95,8 +196,15 @@ public class ConfigBindingManager {
 	 */
 	@NonNull
 	private <T> T getConfigObject(String name, Class<T> type) {
+		return validOrDefault(name, type, configRepository.load(name, type));
+	}
+
+	/**
+	 * 校验配置对象，如果为 null 则使用默认构造方法创建。
+	 */
+	@NonNull
+	private <T> T validOrDefault(String name, Class<T> type, @Nullable T config) {
 		try {
-			var config = configRepository.load(name, type);
 			if (config == null) {
 				var ctor = type.getDeclaredConstructor();
 				ctor.setAccessible(true);
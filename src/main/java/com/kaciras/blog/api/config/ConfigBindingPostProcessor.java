@@ -2,6 +2,7 @@ package com.kaciras.blog.api.config;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanPostProcessor;
@@ -9,9 +10,13 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.lang.NonNull;
 
 import java.lang.reflect.Modifier;
+import java.util.HashSet;
 
 /**
  * 扫描所有 bean，将标记了 {@link BindConfig} 的字段绑定到 {@link ConfigBindingManager}。
+ * <p>
+ * 处理第一个 bean 之前先根据 bean 的定义推断类型，收集所有要绑定的配置名一次性读取。
+ * 推断不出类型的（比如工厂方法返回接口）也没关系，绑定时会单独读取。
  *
  * @see BindConfig
  * @see ConfigBindingManager
@@ -22,24 +27,18 @@ final class ConfigBindingPostProcessor implements BeanPostProcessor {
 	private final BeanDefinitionRegistry beanRegistry;
 	private final ConfigBindingManager configBindingManager;
 
+	private boolean preloaded;
+
 	@Override
 	public Object postProcessBeforeInitialization(Object bean, @NonNull String beanName) {
-		var clazz = bean.getClass();
-		if (!clazz.getName().startsWith("com.kaciras")) {
-			return bean;
+		if (!preloaded) {
+			preloaded = true;
+			preload();
 		}
 
-		/*
-		 * 目前只绑定单例 bean，因为没法知道原型 bean 什么时候销毁从而解绑。
-		 * 另外原型bean可能频繁创建，每次注入都从数据库读取性能差。当前也没有用原型bean
-		 */
-		try {
-			var definition = beanRegistry.getBeanDefinition(beanName);
-			if (BeanDefinition.SCOPE_PROTOTYPE.equals(definition.getScope())) {
-				return bean;
-			}
-		} catch (NoSuchBeanDefinitionException ignore) {
-			// 一些 Bean 触发了这个方法，但是在 BeanRegistry 里却没有定义
+		var clazz = bean.getClass();
+		if (!clazz.getName().startsWith("com.kaciras") || isPrototype(beanName)) {
+			return bean;
 		}
 
 		for (var field : clazz.getDeclaredFields()) {
@@ -56,4 +55,38 @@ final class ConfigBindingPostProcessor implements BeanPostProcessor {
 
 		return bean;
 	}
+
+	/*
+	 * 目前只绑定单例 bean，因为没法知道原型 bean 什么时候销毁从而解绑。
+	 * 另外原型bean可能频繁创建，每次注入都从数据库读取性能差。当前也没有用原型bean
+	 */
+	private boolean isPrototype(String beanName) {
+		try {
+			var definition = beanRegistry.getBeanDefinition(beanName);
+			return BeanDefinition.SCOPE_PROTOTYPE.equals(definition.getScope());
+		} catch (NoSuchBeanDefinitionException ignore) {
+			// 一些 Bean 触发了这个方法，但是在 BeanRegistry 里却没有定义
+			return false;
+		}
+	}
+
+	private void preload() {
+		if (!(beanRegistry instanceof ListableBeanFactory factory)) {
+			return;
+		}
+		var names = new HashSet<String>();
+		for (var beanName : factory.getBeanDefinitionNames()) {
+			var type = factory.getType(beanName, false);
+			if (type == null || !type.getName().startsWith("com.kaciras") || isPrototype(beanName)) {
+				continue;
+			}
+			for (var field : type.getDeclaredFields()) {
+				var bind = field.getDeclaredAnnotation(BindConfig.class);
+				if (bind != null) {
+					names.add(bind.value());
+				}
+			}
+		}
+		configBindingManager.preload(names);
+	}
 }
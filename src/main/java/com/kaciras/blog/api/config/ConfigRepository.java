@@ -4,27 +4,86 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaciras.blog.api.RedisKeys;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * 配置的存储，每个配置以 JSON 保存在单独的键里，另有一个 HASH 记录每个配置的版本号。
+ * <p>
+ * 保存时会通过 Redis 的发布/订阅把新的配置连同版本号发给所有节点（包括自己），
+ * 收到的节点直接使用消息里的数据，不用再查一次。
+ */
 @RequiredArgsConstructor
 @Repository
 public class ConfigRepository {
 
+	private static final String VERSION_KEY = RedisKeys.CONFIG_STORE.of("@versions");
+	private static final String CHANNEL = RedisKeys.CHANNEL.of("config");
+
+	private static final DefaultRedisScript<Long> SAVE_SCRIPT;
+
+	static {
+		SAVE_SCRIPT = new DefaultRedisScript<>();
+		SAVE_SCRIPT.setResultType(Long.class);
+		SAVE_SCRIPT.setLocation(new ClassPathResource("SaveConfig.lua"));
+	}
+
+	/**
+	 * 存储中的配置。
+	 *
+	 * @param data    配置的 JSON，没有保存过则为 null
+	 * @param version 版本号，每次保存加一，没有保存过则为 0
+	 */
+	public record Stored(@Nullable byte[] data, long version) {}
+
+	/**
+	 * 其它节点（也包括自己）保存了配置时的回调。
+	 */
+	@FunctionalInterface
+	public interface ChangeHandler {
+		void onChange(String name, Stored value);
+	}
+
 	private final RedisTemplate<String, byte[]> redisTemplate;
 	private final ObjectMapper objectMapper;
+	private final RedisMessageListenerContainer container;
 
 	private final RedisKeys namespace = RedisKeys.CONFIG_STORE;
 
-	public void save(String name, Object config) {
+	/**
+	 * 保存配置并通知所有节点。
+	 *
+	 * @param name   配置名
+	 * @param config 配置对象
+	 * @return 新的版本号
+	 */
+	public long save(String name, Object config) {
+		byte[] data;
 		try {
-			redisTemplate.opsForValue().set(namespace.of(name), objectMapper.writeValueAsBytes(config));
+			data = objectMapper.writeValueAsBytes(config);
 		} catch (JsonProcessingException e) {
 			throw new SerializationException("配置保存失败", e);
 		}
+		var keys = List.of(namespace.of(name), VERSION_KEY, CHANNEL);
+		return redisTemplate.execute(SAVE_SCRIPT, keys, name.getBytes(StandardCharsets.UTF_8), data);
 	}
 
 	/**
@@ -38,13 +97,97 @@ public class ConfigRepository {
 	 */
 	public <T> T load(String name, Class<T> type) {
 		var data = redisTemplate.opsForValue().get(namespace.of(name));
-		if (data == null) {
-			return null;
+		return data == null ? null : parse(data, type);
+	}
+
+	/**
+	 * 一次性读取多个配置的数据和版本号，只需要一个往返，用于启动时批量绑定。
+	 *
+	 * @param names 配置名
+	 * @return 配置名到存储的数据的映射，包含了所有的 names
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Stored> loadAll(Collection<String> names) {
+		if (names.isEmpty()) {
+			return Map.of();
 		}
+		var fields = names.stream().map(n -> n.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+		var keys = names.stream().map(n -> namespace.of(n).getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+		var versionKey = VERSION_KEY.getBytes(StandardCharsets.UTF_8);
+
+		var results = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+			connection.openPipeline();
+			connection.stringCommands().mGet(keys);
+			connection.hashCommands().hMGet(versionKey, fields);
+			return connection.closePipeline();
+		});
+
+		var values = (List<byte[]>) results.get(0);
+		var versions = (List<byte[]>) results.get(1);
+		var map = new HashMap<String, Stored>();
+		var i = 0;
+		for (var name : names) {
+			var version = versions.get(i);
+			var number = version == null ? 0 : Long.parseLong(new String(version, StandardCharsets.US_ASCII));
+			map.put(name, new Stored(values.get(i++), number));
+		}
+		return map;
+	}
+
+	/**
+	 * 把存储的数据解析为配置对象，每次调用都返回新的实例。
+	 */
+	public <T> T parse(byte[] data, Class<T> type) {
 		try {
 			return objectMapper.readValue(data, type);
 		} catch (IOException e) {
 			throw new SerializationException("配置读取失败", e);
 		}
 	}
+
+	/**
+	 * 订阅配置的修改，任意节点调用 save 后所有节点都会收到。
+	 * <p>
+	 * 断线期间的消息会丢失，所以每次订阅成功（包括重连后的重新订阅）都会调用 onSubscribed，
+	 * 订阅者可以在里面重新同步。
+	 *
+	 * @param handler      回调，在监听线程里调用
+	 * @param onSubscribed 订阅成功后的回调
+	 */
+	public void subscribe(ChangeHandler handler, Runnable onSubscribed) {
+		container.addMessageListener(new ChangeMessageListener(handler, onSubscribed), new ChannelTopic(CHANNEL));
+	}
+
+	@RequiredArgsConstructor
+	private static final class ChangeMessageListener implements MessageListener, SubscriptionListener {
+
+		private final ChangeHandler handler;
+		private final Runnable onSubscribed;
+
+		@Override
+		public void onMessage(Message message, byte[] pattern) {
+			var body = message.getBody();
+			var first = indexOf(body, 0);
+			var second = indexOf(body, first + 1);
+
+			var name = new String(body, 0, first, StandardCharsets.UTF_8);
+			var version = Long.parseLong(new String(body, first + 1, second - first - 1, StandardCharsets.US_ASCII));
+			var data = Arrays.copyOfRange(body, second + 1, body.length);
+			handler.onChange(name, new Stored(data, version));
+		}
+
+		@Override
+		public void onChannelSubscribed(byte[] channel, long count) {
+			onSubscribed.run();
+		}
+	}
+
+	private static int indexOf(byte[] body, int start) {
+		for (var i = start; i < body.length; i++) {
+			if (body[i] == '\n') {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("配置消息的格式错误");
+	}
 }
@@ -4,6 +4,7 @@ import com.kaciras.blog.api.MappingListView;
 import com.kaciras.blog.api.config.BindConfig;
 import com.kaciras.blog.api.notice.NoticeService;
 import com.kaciras.blog.api.user.UserRepository;
+import com.kaciras.blog.infra.ParallelScope;
 import com.kaciras.blog.infra.RequestUtils;
 import com.kaciras.blog.infra.exception.PermissionException;
 import com.kaciras.blog.infra.exception.RequestArgumentException;
@@ -74,10 +75,12 @@ class DiscussionController {
 		verifyQuery(query);
 
 		var session = new QueryWorker(repository, topics, mapper);
-		var items = session.execute(query);
-		var total = repository.count(query);
 
-		return new MappingListView<>(total, items, session.getObjects());
+		try (var scope = new ParallelScope()) {
+			var items = scope.fork(() -> session.execute(query));
+			var total = scope.fork(() -> repository.count(query));
+			return new MappingListView<>(total.get(), items.get(), session.getObjects());
+		}
 	}
 
 	@PostMapping
@@ -16,6 +16,14 @@ import java.util.Optional;
 @Mapper
 interface DiscussionDAO {
 
+	/**
+	 * 一个主题下的评论数。
+	 *
+	 * @param objectId 主题的 ID
+	 * @param count    评论数
+	 */
+	record TopicCount(int objectId, int count) {}
+
 	@InsertProvider(type = SqlProvider.class, method = "insert")
 	@Options(useGeneratedKeys = true, keyColumn = "id", keyProperty = "id")
 	void insert(Discussion discussion);
@@ -39,6 +47,20 @@ interface DiscussionDAO {
 	@SelectProvider(type = SqlProvider.class, method = "selectCount")
 	int count(DiscussionQuery query);
 
+	/**
+	 * 一次查询多个主题的评论数，用于列表页，没有评论的主题不在结果中。
+	 *
+	 * @param type      主题的类型
+	 * @param objectIds 主题 ID 的集合，不能为空
+	 * @param state     评论的状态
+	 * @return 每个主题的评论数
+	 */
+	@Lang(MybatisInlineScriptDriver.class)
+	@Select("SELECT object_id, COUNT(*) AS count FROM discussion " +
+			"WHERE type=#{type} AND object_id IN (#{objectIds}) AND state=#{state} " +
+			"GROUP BY object_id")
+	List<TopicCount> countByTopics(int type, Collection<Integer> objectIds, DiscussionState state);
+
 	/**
 	 * 修改评论的回复数，用于子评论改动后确保父评论数据一致。
 	 *
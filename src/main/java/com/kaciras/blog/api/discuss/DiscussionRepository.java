@@ -11,7 +11,9 @@ import java.time.Clock;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * 虽然在设计上评论是主题的子树，但评论对象是聚合根，所以评论仓库不应关心主题的存在，
@@ -69,6 +71,22 @@ public class DiscussionRepository {
 		return dao.count(query);
 	}
 
+	/**
+	 * 批量查询多个主题的可见评论数，与逐个调用 count 的结果相同，但只需要一次查询。
+	 *
+	 * @param type      主题的类型
+	 * @param objectIds 主题 ID 的集合
+	 * @return 主题 ID 到评论数的映射，没有评论的主题不在其中
+	 */
+	public Map<Integer, Integer> countByTopics(int type, Collection<Integer> objectIds) {
+		if (objectIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		return dao.countByTopics(type, objectIds, DiscussionState.VISIBLE)
+				.stream()
+				.collect(Collectors.toMap(DiscussionDAO.TopicCount::objectId, DiscussionDAO.TopicCount::count));
+	}
+
 	public Optional<Discussion> get(int id) {
 		return dao.selectById(id);
 	}
@@ -70,9 +70,8 @@ final class QueryWorker {
 	 * @return 视图对象的流，用于后续操作
 	 */
 	private Stream<DiscussionVO> findAll(DiscussionQuery query) {
-		return repository.findAll(query)
+		return mapper.toViewObjects(repository.findAll(query))
 				.stream()
-				.map(mapper::toViewObject)
 				.peek(v -> objects.put(v.id, v));
 	}
 
@@ -106,6 +105,6 @@ final class QueryWorker {
 	 * 代码有点长写在 lambda 里不好看所以拿出来了。
 	 */
 	private void attachAdditional() {
-		repository.get(additional).forEach(v -> objects.put(v.getId(), mapper.toViewObject(v)));
+		mapper.toViewObjects(repository.get(additional)).forEach(v -> objects.put(v.id, v));
 	}
 }
@@ -5,8 +5,12 @@ import com.kaciras.blog.api.user.UserManager;
 import com.kaciras.blog.api.user.UserVO;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.Named;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Mapper(config = MapStructConfig.class)
 abstract class ViewModelMapper {
 
@@ -49,4 +53,27 @@ abstract class ViewModelMapper {
 	final UserVO getUserVO(Discussion discussion) {
 		return userManager.getUser(discussion.getUserId());
 	}
+
+	/**
+	 * 批量转换为视图对象，所有评论的用户一次性查出，避免每条评论都查一次。
+	 *
+	 * @param list 评论模型对象列表
+	 * @return 评论视图对象列表，顺序与参数相同
+	 */
+	final List<DiscussionVO> toViewObjects(List<Discussion> list) {
+		var ids = list.stream()
+				.map(Discussion::getUserId)
+				.collect(Collectors.toSet());
+		var users = userManager.getUsers(ids);
+
+		return list.stream().map(value -> {
+			var vo = toViewObjectWithoutUser(value);
+			vo.user = users.get(value.getUserId());
+			return vo;
+		}).collect(Collectors.toList());
+	}
+
+	@Named("withoutUser")
+	@Mapping(target = "user", ignore = true)
+	abstract DiscussionVO toViewObjectWithoutUser(Discussion source);
 }
@@ -0,0 +1,203 @@
+package com.kaciras.blog.api.draft;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaciras.blog.api.RedisKeys;
+import com.kaciras.blog.infra.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.lang.Nullable;
+
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 草稿自动保存的写回缓冲区。
+ * <p>
+ * 编辑器每打几个字就会自动保存一次，以前每次都要 UPDATE 一个 mediumtext 的行。
+ * 现在自动保存只写入 Redis，后一次覆盖前一次，停止编辑 idleTimeout 之后才写入数据库，
+ * 另外新建历史记录（手动保存）之前和程序关闭时也会写入。读取最后一条历史记录时要先看缓冲区。
+ *
+ * <h2>存储</h2>
+ * 每个草稿一个 JSON 字符串，包含了内容和它属于哪个历史记录；
+ * 另有一个 ZSET 记录等待写入的草稿，分数是可以写入的时间，每次自动保存都会推迟。
+ *
+ * <h2>并发</h2>
+ * 写入数据库之后用脚本比较缓冲区的值，没有变过才删除，否则留给下一次写入，不会丢失期间的自动保存。
+ * 写入时限定了历史记录的 save_count，不会改到已经被压缩的旧记录。
+ * 自动保存和新建历史记录并发时缓冲区里的 save_count 可能已经过时，此时改为写入最新的那条，
+ * 因为自动保存总是编辑器里最新的内容。
+ */
+@Slf4j
+class DraftBuffer {
+
+	private static final String DUE_KEY = RedisKeys.DRAFT_BUFFER.of("due");
+
+	private static final DefaultRedisScript<Long> DELETE_IF_EQUALS;
+
+	static {
+		DELETE_IF_EQUALS = new DefaultRedisScript<>();
+		DELETE_IF_EQUALS.setResultType(Long.class);
+		DELETE_IF_EQUALS.setLocation(new ClassPathResource("DeleteIfEquals.lua"));
+	}
+
+	/**
+	 * 缓冲区里的一次自动保存。
+	 *
+	 * @param saveCount 所属的历史记录，也就是保存时最新的那条
+	 * @param content   内容
+	 * @param time      保存的时间
+	 */
+	record Buffered(int saveCount, DraftContent content, Instant time) {}
+
+	private final StringRedisTemplate redis;
+	private final ObjectMapper objectMapper;
+	private final HistoryDAO historyDAO;
+	private final Clock clock;
+	private final Duration idleTimeout;
+
+	DraftBuffer(StringRedisTemplate redis,
+				ObjectMapper objectMapper,
+				HistoryDAO historyDAO,
+				Clock clock,
+				Duration idleTimeout) {
+		this.redis = redis;
+		this.objectMapper = objectMapper;
+		this.historyDAO = historyDAO;
+		this.clock = clock;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * 保存草稿的内容到缓冲区，覆盖之前的。
+	 * 缓冲区为空时需要查一次数据库得到最新的历史记录，之后的自动保存都不访问数据库。
+	 *
+	 * @param id      草稿 ID
+	 * @param content 内容
+	 * @throws ResourceNotFoundException 如果草稿没有历史记录
+	 */
+	public void put(int id, DraftContent content) {
+		var previous = get(id);
+		Integer saveCount;
+		if (previous != null) {
+			saveCount = previous.saveCount;
+		} else {
+			saveCount = historyDAO.selectLastSaveCount(id);
+			if (saveCount == null) {
+				throw new ResourceNotFoundException();
+			}
+		}
+
+		var now = clock.instant();
+		var json = serialize(new Buffered(saveCount, content, now));
+		var due = now.plus(idleTimeout).toEpochMilli();
+
+		redis.executePipelined((RedisCallback<?>) connection -> {
+			var conn = (StringRedisConnection) connection;
+			conn.set(RedisKeys.DRAFT_BUFFER.of(id), json);
+			conn.zAdd(DUE_KEY, due, Integer.toString(id));
+			return null;
+		});
+	}
+
+	/**
+	 * 读取缓冲区里的内容。
+	 *
+	 * @param id 草稿 ID
+	 * @return 缓冲的自动保存，没有则为 null
+	 */
+	@Nullable
+	public Buffered get(int id) {
+		var json = redis.opsForValue().get(RedisKeys.DRAFT_BUFFER.of(id));
+		return json == null ? null : deserialize(json);
+	}
+
+	/**
+	 * 立即把草稿的缓冲区写入数据库，在新建历史记录之前调用。
+	 *
+	 * @param id 草稿 ID
+	 */
+	public void flush(int id) {
+		var key = RedisKeys.DRAFT_BUFFER.of(id);
+		var member = Integer.toString(id);
+		var json = redis.opsForValue().get(key);
+
+		if (json == null) {
+			redis.opsForZSet().remove(DUE_KEY, member);
+			return;
+		}
+
+		var buffered = deserialize(json);
+		if (historyDAO.updateLatest(id, buffered.saveCount, buffered.content) == 0) {
+			writeToLatest(id, buffered);
+		}
+		redis.execute(DELETE_IF_EQUALS, List.of(key, DUE_KEY), json, member);
+	}
+
+	/**
+	 * 缓冲区所属的历史记录已不是最新的，重新查询一次并写入最新的记录。
+	 * 如果仍然失败（草稿被删除，或者又有新的保存正在进行）则只能丢弃。
+	 */
+	private void writeToLatest(int id, Buffered buffered) {
+		var latest = historyDAO.selectLastSaveCount(id);
+		if (latest != null
+				&& latest != buffered.saveCount
+				&& historyDAO.updateLatest(id, latest, buffered.content) > 0) {
+			logger.debug("草稿 {} 的缓冲区属于历史记录 {}，已写入最新的 {}", id, buffered.saveCount, latest);
+		} else {
+			logger.warn("草稿 {} 的缓冲区无法写入，最新的历史记录为 {}，丢弃保存于 {} 的内容",
+					id, latest, buffered.time);
+		}
+	}
+
+	/**
+	 * 写入已经停止编辑 idleTimeout 的草稿，由定时任务调用。
+	 */
+	public void flushIdle() {
+		flushEach(redis.opsForZSet().rangeByScore(DUE_KEY, 0, clock.millis()));
+	}
+
+	/**
+	 * 写入缓冲区里全部的草稿，程序关闭时调用。
+	 */
+	public void flushAll() {
+		flushEach(redis.opsForZSet().range(DUE_KEY, 0, -1));
+	}
+
+	private void flushEach(@Nullable Set<String> ids) {
+		if (ids == null) {
+			return;
+		}
+		for (var id : ids) {
+			try {
+				flush(Integer.parseInt(id));
+			} catch (RuntimeException e) {
+				logger.error("草稿 {} 写入数据库失败，下次重试", id, e);
+			}
+		}
+	}
+
+	private String serialize(Buffered value) {
+		try {
+			return objectMapper.writeValueAsString(value);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Buffered deserialize(String json) {
+		try {
+			return objectMapper.readValue(json, Buffered.class);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.kaciras.blog.api.draft;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@RequiredArgsConstructor
+@ConfigurationProperties("app.draft-buffer")
+public final class DraftBufferProperties {
+
+	/** 自动保存停止这么久之后才写入数据库 */
+	public final Duration idleTimeout;
+
+	/** 检查是否有需要写入的草稿的间隔 */
+	public final Duration flushInterval;
+}
@@ -0,0 +1,30 @@
+package com.kaciras.blog.api.draft;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Clock;
+
+@EnableConfigurationProperties(DraftBufferProperties.class)
+@Configuration(proxyBeanMethods = false)
+class DraftConfiguration {
+
+	/**
+	 * 创建自动保存的缓冲区并启动写回任务，关闭时把缓冲区里的全部写入数据库。
+	 */
+	@Bean(destroyMethod = "flushAll")
+	DraftBuffer draftBuffer(StringRedisTemplate redis,
+							ObjectMapper objectMapper,
+							HistoryDAO historyDAO,
+							Clock clock,
+							DraftBufferProperties properties,
+							TaskScheduler taskScheduler) {
+		var buffer = new DraftBuffer(redis, objectMapper, historyDAO, clock, properties.idleTimeout);
+		taskScheduler.scheduleWithFixedDelay(buffer::flushIdle, properties.flushInterval);
+		return buffer;
+	}
+}
@@ -0,0 +1,205 @@
+package com.kaciras.blog.api.draft;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 草稿历史内容的压缩格式，有两种：
+ * <ul>
+ *     <li>基准（BASE）：整个内容用 Deflate 压缩。</li>
+ *     <li>差异（DELTA）：记录怎样从另一个版本（参照）得到本版本，由复制和插入两种操作组成，再用 Deflate 压缩。</li>
+ * </ul>
+ * 第一个字节是类型，差异格式后面紧跟 4 字节的参照版本的 save_count，然后是压缩的数据。
+ *
+ * <h2>差异算法</h2>
+ * 把参照版本按 BLOCK 个字符分块建立哈希索引，然后逐个位置查找目标里相同的块，
+ * 找到后向前后扩展成尽可能长的复制操作，没找到的部分作为插入。
+ * 复制的边界可能落在代理对中间，所以插入的文本按 UTF-16 存储，多出来的零字节交给 Deflate 压缩。
+ * 这是 rsync 的简化版，对于草稿这种每次只改几处的文本足够了，也不会因为改动分散而退化成整篇。
+ */
+final class HistoryCodec {
+
+	static final byte BASE = 0;
+	static final byte DELTA = 1;
+
+	private static final int BLOCK = 16;
+
+	private static final int OP_END = 0;
+	private static final int OP_COPY = 1;
+	private static final int OP_INSERT = 2;
+
+	private HistoryCodec() {}
+
+	static byte type(byte[] packed) {
+		return packed[0];
+	}
+
+	/**
+	 * 获取差异格式的参照版本。
+	 */
+	static int reference(byte[] packed) {
+		return (packed[1] & 0xFF) << 24 | (packed[2] & 0xFF) << 16 | (packed[3] & 0xFF) << 8 | packed[4] & 0xFF;
+	}
+
+	static byte[] encodeBase(String content) {
+		var buffer = new ByteArrayOutputStream();
+		buffer.write(BASE);
+		try (var output = new DeflaterOutputStream(buffer)) {
+			output.write(content.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * 计算从参照版本 source 到 target 的差异。
+	 *
+	 * @param source    参照版本的内容
+	 * @param reference 参照版本的 save_count
+	 * @param target    要压缩的内容
+	 * @return 差异格式的数据
+	 */
+	static byte[] encodeDelta(String source, int reference, String target) {
+		var buffer = new ByteArrayOutputStream();
+		buffer.write(DELTA);
+		buffer.write(reference >>> 24);
+		buffer.write(reference >>> 16);
+		buffer.write(reference >>> 8);
+		buffer.write(reference);
+
+		try (var output = new DataOutputStream(new DeflaterOutputStream(buffer))) {
+			writeOperations(source, target, output);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return buffer.toByteArray();
+	}
+
+	private static void writeOperations(String source, String target, DataOutputStream output) throws IOException {
+		var index = new HashMap<Integer, Integer>();
+		for (var i = 0; i + BLOCK <= source.length(); i += BLOCK) {
+			index.putIfAbsent(hash(source, i), i);
+		}
+
+		var literal = 0;
+		var i = 0;
+		while (i + BLOCK <= target.length()) {
+			var candidate = index.get(hash(target, i));
+			if (candidate == null || !target.regionMatches(i, source, candidate, BLOCK)) {
+				i++;
+				continue;
+			}
+
+			int start = candidate, length = BLOCK;
+			while (i + length < target.length()
+					&& start + length < source.length()
+					&& target.charAt(i + length) == source.charAt(start + length)) {
+				length++;
+			}
+			while (i > literal && start > 0 && target.charAt(i - 1) == source.charAt(start - 1)) {
+				i--;
+				start--;
+				length++;
+			}
+
+			writeInsert(output, target, literal, i);
+			output.write(OP_COPY);
+			writeVarInt(output, start);
+			writeVarInt(output, length);
+			i += length;
+			literal = i;
+		}
+
+		writeInsert(output, target, literal, target.length());
+		output.write(OP_END);
+	}
+
+	private static void writeInsert(DataOutputStream output, String target, int start, int end) throws IOException {
+		if (start == end) {
+			return;
+		}
+		output.write(OP_INSERT);
+		writeVarInt(output, end - start);
+		output.writeChars(target.substring(start, end));
+	}
+
+	private static int hash(String text, int offset) {
+		var h = 0;
+		for (var i = offset; i < offset + BLOCK; i++) {
+			h = 31 * h + text.charAt(i);
+		}
+		return h;
+	}
+
+	/**
+	 * 解压基准格式的数据。
+	 */
+	static String decodeBase(byte[] packed) {
+		var input = new InflaterInputStream(new ByteArrayInputStream(packed, 1, packed.length - 1));
+		try (input) {
+			return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 把差异应用到参照版本上，还原出原本的内容。
+	 *
+	 * @param source 参照版本的内容，即 reference(packed) 所指的版本
+	 * @param packed 差异格式的数据
+	 * @return 还原的内容
+	 */
+	static String decodeDelta(String source, byte[] packed) {
+		var stream = new InflaterInputStream(new ByteArrayInputStream(packed, 5, packed.length - 5));
+		var output = new StringBuilder(source.length());
+
+		try (var input = new DataInputStream(stream)) {
+			for (var op = input.read(); op != OP_END; op = input.read()) {
+				switch (op) {
+					case OP_COPY -> {
+						var start = readVarInt(input);
+						output.append(source, start, start + readVarInt(input));
+					}
+					case OP_INSERT -> {
+						for (var i = readVarInt(input); i > 0; i--) {
+							output.append(input.readChar());
+						}
+					}
+					default -> throw new IllegalStateException("差异数据已损坏，操作码：" + op);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return output.toString();
+	}
+
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+
+	private static int readVarInt(DataInputStream input) throws IOException {
+		var value = 0;
+		for (var shift = 0; ; shift += 7) {
+			var b = input.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+}
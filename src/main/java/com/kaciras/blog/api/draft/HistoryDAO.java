@@ -12,28 +12,52 @@ interface HistoryDAO {
 	@Select("SELECT MAX(save_count) FROM draft_history WHERE id=#{id}")
 	Integer selectLastSaveCount(int id);
 
-	@Select("SELECT *, CHAR_LENGTH(content) AS wordCount FROM draft_history WHERE id=#{id} AND save_count=#{saveCount}")
+	/**
+	 * 查询一条历史记录，如果是压缩过的则 content 为空串，需要用 selectStored 查出来还原。
+	 */
+	@Select("SELECT * FROM draft_history WHERE id=#{id} AND save_count=#{saveCount}")
 	History select(int id, int saveCount);
 
-	// SQL in xml file.
-	void insert(int id, int saveCount, DraftContent draft);
+	/**
+	 * 保存一条历史记录，超出 limit 条则覆盖最旧的，一次往返完成。
+	 * SQL in xml file.
+	 *
+	 * @return 新记录的 save_count，如果草稿不存在则为 null
+	 */
+	Integer append(int id, int limit, DraftContent draft);
 
-	// SQL in xml file.
-	void deleteOldest(int id);
-
-	@Select("SELECT COUNT(*) FROM draft_history WHERE id=#{id}")
-	int selectCount(int id);
-
-	@Select("SELECT save_count, CHAR_LENGTH(content) AS wordCount, `time` " +
+	@Select("SELECT save_count, word_count, `time` " +
 			"FROM draft_history WHERE id=#{id} ORDER BY save_count DESC")
 	List<History> selectAll(int id);
 
-	@Update("UPDATE draft_history SET " +
-			"title=#{value.title}," +
-			"cover=#{value.cover}," +
-			"summary=#{value.summary}," +
-			"keywords=#{value.keywords}," +
-			"content=#{value.content} " +
-			"WHERE id=#{id} AND save_count=#{saveCount}")
-	int update(int id, int saveCount, DraftContent value);
+	/**
+	 * 修改最后一次保存的记录，saveCount 必须是草稿表里的最新的那个，
+	 * 这样即使同时有新的保存，也不会改到已经被压缩的旧记录。
+	 */
+	@Update("UPDATE draft_history AS h JOIN draft AS d ON d.id=h.id SET " +
+			"h.title=#{value.title}," +
+			"h.cover=#{value.cover}," +
+			"h.summary=#{value.summary}," +
+			"h.keywords=#{value.keywords}," +
+			"h.content=#{value.content}," +
+			"h.word_count=CHAR_LENGTH(#{value.content}) " +
+			"WHERE h.id=#{id} AND h.save_count=#{saveCount} AND h.save_count=d.save_count-1")
+	int updateLatest(int id, int saveCount, DraftContent value);
+
+	/**
+	 * 查询 saveCount 及之后的记录的存储形式，用于还原压缩的内容。
+	 */
+	@Select("SELECT save_count, content, packed FROM draft_history WHERE id=#{id} AND save_count>=#{saveCount}")
+	List<StoredContent> selectStored(int id, int saveCount);
+
+	/**
+	 * 把一条记录的内容替换为压缩后的形式，save_count 不对（槽位已被覆盖）则什么也不做。
+	 */
+	@Update("UPDATE draft_history SET content='', packed=#{packed} WHERE id=#{id} AND save_count=#{saveCount}")
+	void pack(int id, int saveCount, byte[] packed);
+
+	/**
+	 * 历史记录的存储形式，packed 为 null 表示 content 未压缩。
+	 */
+	record StoredContent(int saveCount, String content, byte[] packed) {}
 }
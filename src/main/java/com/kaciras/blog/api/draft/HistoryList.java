@@ -1,6 +1,6 @@
 package com.kaciras.blog.api.draft;
 
-import com.kaciras.blog.api.Utils;
+import com.kaciras.blog.infra.exception.ResourceNotFoundException;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +27,16 @@ public final class HistoryList {
 	@Setter(AccessLevel.NONE)
 	private HistoryDAO historyDAO;
 
+	@Autowired
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private HistoryCompressor compressor;
+
+	@Autowired
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private DraftBuffer buffer;
+
 
 // - - - - - - - - - - - - - - - - - - - - - -
 
@@ -34,25 +44,31 @@ public final class HistoryList {
 
 	/**
 	 * 保存草稿的内容为一个新的历史记录。
-	 * 检查数量可能出现幻读（新增）和不可重读（删除），但影响不大
+	 * 历史记录是个环形缓冲区，保存次数由草稿表分配，一条 SQL 往返就完成，并发保存也不会冲突。
+	 * 之前的记录在后台压缩，缓冲区里的自动保存要先写入，否则会被丢弃。
 	 *
 	 * @param content 内容
+	 * @return 新记录的保存次数
+	 * @throws ResourceNotFoundException 如果草稿不存在
 	 */
 	public int add(DraftContent content) {
-		var count = historyDAO.selectCount(id);
-		if (count >= historyLimit) {
-			historyDAO.deleteOldest(id);
+		buffer.flush(id);
+		var saveCount = historyDAO.append(id, historyLimit, content);
+		if (saveCount == null) {
+			throw new ResourceNotFoundException();
 		}
-
-		var newSaveCount = historyDAO.selectLastSaveCount(id);
-		newSaveCount = newSaveCount == null ? 0 : newSaveCount + 1;
-		historyDAO.insert(id, newSaveCount, content);
-
-		return newSaveCount;
+		compressor.compactAsync(id, saveCount);
+		return saveCount;
 	}
 
 	public History findBySaveCount(int saveCount) {
-		return historyDAO.select(id, saveCount);
+		var history = historyDAO.select(id, saveCount);
+
+		// 压缩过的记录 content 是空串，但字数还在。
+		if (history != null && history.getContent().isEmpty() && history.getWordCount() > 0) {
+			history.setContent(compressor.restore(id, saveCount));
+		}
+		return applyBuffer(history, buffer.get(id));
 	}
 
 	// 不包含 content
@@ -61,15 +77,42 @@ public final class HistoryList {
 		if (latest == null) {
 			throw new Error("草稿主表与历史表不一致，id=" + id);
 		}
-		return historyDAO.select(id, latest);
+		return applyBuffer(historyDAO.select(id, latest), buffer.get(id));
 	}
 
 	public List<History> findAll() {
-		return historyDAO.selectAll(id);
+		var list = historyDAO.selectAll(id);
+		var buffered = buffer.get(id);
+		list.forEach(history -> applyBuffer(history, buffered));
+		return list;
 	}
 
+	/**
+	 * 修改最后一条历史记录，只写入缓冲区，停止编辑一段时间后才保存到数据库。
+	 */
 	public void update(DraftContent content) {
-		var last = historyDAO.selectLastSaveCount(id);
-		Utils.checkEffective(historyDAO.update(id, last, content));
+		buffer.put(id, content);
+	}
+
+	/**
+	 * 如果缓冲区里有这条历史记录的自动保存，就用它替换数据库里的内容。
+	 */
+	private static History applyBuffer(History history, DraftBuffer.Buffered buffered) {
+		if (history == null || buffered == null || buffered.saveCount() != history.getSaveCount()) {
+			return history;
+		}
+		var content = buffered.content();
+		history.setTitle(content.getTitle());
+		history.setCover(content.getCover());
+		history.setSummary(content.getSummary());
+		history.setKeywords(content.getKeywords());
+		history.setTime(buffered.time());
+
+		// selectAll 不查询内容，只更新字数。
+		if (history.getContent() != null) {
+			history.setContent(content.getContent());
+		}
+		history.setWordCount(content.getContent().codePointCount(0, content.getContent().length()));
+		return history;
 	}
 }
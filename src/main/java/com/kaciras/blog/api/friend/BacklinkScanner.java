@@ -0,0 +1,355 @@
+package com.kaciras.blog.api.friend;
+
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 从字节流里查找指向本站的链接（互链），找到第一个或读够了字节数就停止。
+ * <p>
+ * 友链检查只关心页面里有没有一个 href 以本站 origin 开头的 a 元素，
+ * 没必要把整个页面下载成字符串再用 Jsoup 建 DOM 树，这里一边读一边做个简易的词法分析。
+ * 找到之后剩下的部分就不用下载了，关闭流即可中断连接。
+ *
+ * <h2>规则</h2>
+ * 尽量与原来的 Jsoup 实现（href 解析为 URI 后 scheme://host 等于本站）保持一致：
+ * <ul>
+ *     <li>标签名和属性名不区分大小写，属性值支持双引号、单引号和不带引号三种写法。</li>
+ *     <li>只看每个 a 标签的第一个 href 属性，重复的属性会被 Jsoup 忽略。</li>
+ *     <li>href 必须以 origin 开头，且后面紧接着结束、路径、端口、查询或片段。</li>
+ *     <li>注释、script、style 等元素的内容不是标签，会跳过。</li>
+ * </ul>
+ * 属性值里的字符实体不做解码，几乎没人会把域名写成实体。
+ *
+ * <h2>编码</h2>
+ * 直接比较字节，origin 是 ASCII 所以 UTF-8、GBK 等兼容 ASCII 的编码都没问题，UTF-16 的页面不支持。
+ *
+ * <h2>摘要</h2>
+ * 可以顺便计算读过的内容的摘要，只包含扫描到的部分，不受网络分块的影响，同样的页面总是得到同样的结果。
+ */
+final class BacklinkScanner {
+
+	// 这些元素的内容是纯文本，里面的 <a> 不是标签。
+	private static final byte[][] RAW_TEXT_ELEMENTS = {
+			ascii("script"), ascii("style"), ascii("textarea"), ascii("title"),
+	};
+
+	private static final int NAME_BUFFER_SIZE = 8;
+
+	private final InputStream input;
+	private final byte[] origin;
+	private final long limit;
+
+	@Nullable
+	private final MessageDigest digest;
+
+	private final byte[] buffer = new byte[8192];
+	private int offset;
+	private int count;
+
+	private long position;
+	private int pushback = -1;
+
+	private BacklinkScanner(InputStream input, byte[] origin, long limit, @Nullable MessageDigest digest) {
+		this.input = input;
+		this.origin = origin;
+		this.limit = limit;
+		this.digest = digest;
+	}
+
+	/**
+	 * 扫描流里的 HTML，查找指向 origin 的链接。不会关闭流。
+	 *
+	 * @param input  HTML 字节流
+	 * @param origin 本站的 origin，例如 https://blog.example.com
+	 * @param limit  最多读取的字节数，超过了就当作没有
+	 * @return 如果找到了返回 true
+	 * @throws IOException 如果读取流时出错
+	 */
+	static boolean scan(InputStream input, String origin, long limit) throws IOException {
+		return scan(input, origin, limit, null);
+	}
+
+	/**
+	 * 同上，并把扫描过的内容更新到摘要里。
+	 *
+	 * @param digest 摘要，为 null 则不计算
+	 */
+	static boolean scan(InputStream input, String origin, long limit, @Nullable MessageDigest digest) throws IOException {
+		var scanner = new BacklinkScanner(input, ascii(origin), limit, digest);
+		var found = scanner.run();
+		scanner.updateDigest();
+		return found;
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private int read() throws IOException {
+		if (pushback != -1) {
+			var c = pushback;
+			pushback = -1;
+			return c;
+		}
+		if (position >= limit) {
+			return -1;
+		}
+		if (offset == count && !fill()) {
+			return -1;
+		}
+		position++;
+		return buffer[offset++] & 0xFF;
+	}
+
+	private boolean fill() throws IOException {
+		updateDigest();
+		offset = 0;
+		count = Math.max(0, input.read(buffer));
+		return count > 0;
+	}
+
+	private void updateDigest() {
+		if (digest != null) {
+			digest.update(buffer, 0, offset);
+		}
+	}
+
+	private void unread(int c) {
+		pushback = c;
+	}
+
+	private boolean run() throws IOException {
+		for (var c = read(); c != -1; c = read()) {
+			if (c != '<') {
+				continue;
+			}
+			c = read();
+			if (c == '!') {
+				skipComment();
+			} else if (c == '/' || c == '?') {
+				skipTag();
+			} else if (isLetter(c)) {
+				if (scanElement(c)) {
+					return true;
+				}
+			} else {
+				unread(c); // 可能是 "<<a"
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 读取标签名并处理整个开始标签，first 是已经读出的第一个字母。
+	 */
+	private boolean scanElement(int first) throws IOException {
+		var name = new byte[NAME_BUFFER_SIZE];
+		var length = 0;
+		var c = first;
+
+		for (; c != -1 && !isWhitespace(c) && c != '/' && c != '>'; c = read()) {
+			if (length < name.length) {
+				name[length] = (byte) toLower(c);
+			}
+			length++;
+		}
+		unread(c);
+
+		if (length == 1 && name[0] == 'a') {
+			return scanAttributes(true);
+		}
+		scanAttributes(false);
+
+		for (var element : RAW_TEXT_ELEMENTS) {
+			if (length == element.length && regionEquals(name, element, length)) {
+				skipRawText(element);
+				break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 读取标签的属性直到标签结束，如果 checkHref 为 true 则检查第一个 href 属性。
+	 *
+	 * @return 是否是指向本站的链接
+	 */
+	private boolean scanAttributes(boolean checkHref) throws IOException {
+		for (; ; ) {
+			var c = skipWhitespace();
+			if (c == -1 || c == '>') {
+				return false;
+			}
+			if (c == '/') {
+				continue;
+			}
+
+			// 属性名，只需要知道是不是 href。
+			var isHref = checkHref;
+			var length = 0;
+			for (; c != -1 && !isWhitespace(c) && c != '=' && c != '>' && c != '/'; c = read()) {
+				isHref &= length < 4 && toLower(c) == "href".charAt(length);
+				length++;
+			}
+			isHref &= length == 4;
+
+			unread(c);
+			c = skipWhitespace();
+			if (c != '=') {
+				unread(c); // 没有值的属性
+				continue;
+			}
+
+			if (isHref) {
+				checkHref = false;
+				if (matchValue()) {
+					return true;
+				}
+			} else {
+				skipValue();
+			}
+		}
+	}
+
+	/**
+	 * 读取属性值并与 origin 比较，读完整个属性值才返回。
+	 */
+	private boolean matchValue() throws IOException {
+		var c = skipWhitespace();
+		var quote = 0;
+		if (c == '"' || c == '\'') {
+			quote = c;
+			c = read();
+		}
+
+		var i = 0;
+		for (; i < origin.length; i++, c = read()) {
+			if (isValueEnd(c, quote) || c != origin[i]) {
+				break;
+			}
+		}
+
+		// 前缀相同还不够，https://blog.example.com.evil 的主机就不是本站。
+		var matched = i == origin.length && (isValueEnd(c, quote)
+				|| c == '/' || c == ':' || c == '?' || c == '#');
+
+		for (; !isValueEnd(c, quote); c = read()) ;
+		if (quote == 0) {
+			unread(c);
+		}
+		return matched;
+	}
+
+	private void skipValue() throws IOException {
+		var c = skipWhitespace();
+		var quote = 0;
+		if (c == '"' || c == '\'') {
+			quote = c;
+			c = read();
+		}
+		for (; !isValueEnd(c, quote); c = read()) ;
+		if (quote == 0) {
+			unread(c);
+		}
+	}
+
+	private static boolean isValueEnd(int c, int quote) {
+		if (c == -1) {
+			return true;
+		}
+		return quote == 0 ? isWhitespace(c) || c == '>' : c == quote;
+	}
+
+	/**
+	 * 跳过 "<!" 开头的注释或 DOCTYPE 之类的声明。
+	 */
+	private void skipComment() throws IOException {
+		var c = read();
+		if (c != '-') {
+			unread(c);
+			skipTag();
+			return;
+		}
+		c = read();
+		if (c != '-') {
+			unread(c);
+			skipTag();
+			return;
+		}
+
+		// 找 "-->"，"<!---->" 这种空注释也要能处理。
+		var dashes = 0;
+		for (c = read(); c != -1; c = read()) {
+			if (c == '>' && dashes >= 2) {
+				return;
+			}
+			dashes = c == '-' ? dashes + 1 : 0;
+		}
+	}
+
+	private void skipTag() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != -1 && c != '>');
+	}
+
+	/**
+	 * 跳过纯文本元素的内容，直到遇见对应的结束标签。
+	 */
+	private void skipRawText(byte[] name) throws IOException {
+		var matched = -1; // -1 表示还没遇到 "</"
+		var previous = 0;
+
+		for (var c = read(); c != -1; c = read()) {
+			if (matched >= 0) {
+				if (toLower(c) == name[matched]) {
+					if (++matched == name.length) {
+						skipTag();
+						return;
+					}
+					previous = c;
+					continue;
+				}
+				matched = -1;
+			}
+			if (previous == '<' && c == '/') {
+				matched = 0;
+			}
+			previous = c;
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (isWhitespace(c));
+		return c;
+	}
+
+	private static boolean regionEquals(byte[] a, byte[] b, int length) {
+		for (var i = 0; i < length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static int toLower(int c) {
+		return c >= 'A' && c <= 'Z' ? c + 32 : c;
+	}
+}
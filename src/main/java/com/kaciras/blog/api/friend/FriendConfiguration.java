@@ -3,11 +3,13 @@ package com.kaciras.blog.api.friend;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
 
 import java.time.Duration;
 
+@EnableConfigurationProperties(FriendValidatorProperties.class)
 @Configuration(proxyBeanMethods = false)
 @RequiredArgsConstructor
 public class FriendConfiguration {
@@ -5,7 +5,10 @@ import com.kaciras.blog.infra.exception.ResourceStateException;
 import com.kaciras.blog.infra.principal.RequirePermission;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
@@ -25,12 +28,69 @@ class FriendController {
 
 	/**
 	 * 有朋友就要骄傲地展示出来!
+	 * <p>
+	 * 直接返回缓存里序列化好的 JSON，客户端支持的话就用压缩过的版本。
+	 * 两个版本的 ETag 不同，匹配时由 HttpEntityMethodProcessor 返回 304。
 	 *
-	 * @return 友链列表
+	 * @param acceptEncoding 请求头 Accept-Encoding
+	 * @return 友链列表的 JSON
 	 */
 	@GetMapping
-	public FriendLink[] getFriends() {
-		return repository.getAll();
+	public ResponseEntity<byte[]> getFriends(
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+	) {
+		var snapshot = repository.getSnapshot();
+		var builder = ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+		if (acceptsGzip(acceptEncoding)) {
+			return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+					.eTag(snapshot.etag() + "-gzip")
+					.body(snapshot.gzip());
+		}
+		return builder.eTag(snapshot.etag()).body(snapshot.json());
+	}
+
+	/**
+	 * 判断客户端是否接受 gzip 编码，q=0 表示明确拒绝。
+	 * <p>
+	 * 显式列出的 gzip 优先于通配符 *，两者都没有则不压缩。
+	 *
+	 * @param header 请求头 Accept-Encoding，可能为 null
+	 * @return 如果可以返回 gzip 压缩的响应则为 true
+	 */
+	static boolean acceptsGzip(@Nullable String header) {
+		if (header == null) {
+			return false;
+		}
+		var wildcard = false;
+		for (var item : header.split(",")) {
+			var parts = item.split(";");
+			var coding = parts[0].trim();
+			var accepted = quality(parts) > 0;
+
+			if ("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+				return accepted;
+			} else if ("*".equals(coding)) {
+				wildcard = accepted;
+			}
+		}
+		return wildcard;
+	}
+
+	private static double quality(String[] parts) {
+		for (var i = 1; i < parts.length; i++) {
+			var param = parts[i].trim();
+			if (param.length() > 2 && param.regionMatches(true, 0, "q=", 0, 2)) {
+				try {
+					return Double.parseDouble(param.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0; // 格式错误的权重视为不接受
+				}
+			}
+		}
+		return 1;
 	}
 
 	/**
@@ -1,15 +1,32 @@
 package com.kaciras.blog.api.friend;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaciras.blog.api.RedisKeys;
 import com.kaciras.blog.infra.RedisOperationsBuilder;
+import com.kaciras.blog.infra.codec.CodecUtils;
 import jakarta.annotation.PostConstruct;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.BoundListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 友链的存储服务，保存了友链的信息及排序，并提供 CURD 和重排功能。
@@ -23,22 +40,80 @@ import java.time.Clock;
  * <p>
  * 不过这也要求同一时刻只能调用一个修改方法，因为只有博主能修改所以是可以的。
  * 在 Controller 里用了 synchronized，使修改操作不会因为线程安全问题导致缓存更新错误。
+ *
+ * <h2>预先序列化</h2>
+ * 友链列表是公开的，每个访客都要请求，所以缓存里同时保存了序列化后的 JSON、
+ * 它的 gzip 压缩版本以及 ETag，响应时直接写出字节，不用每次都遍历对象。
+ *
+ * <h2>多节点</h2>
+ * 修改并刷新缓存后通过 Redis 的发布/订阅通知其它节点重新加载，
+ * 消息内容是发送者的 ID，自己发的消息会被忽略，免得跟正在进行的修改交错。
+ * <p>
+ * 发布/订阅不保证送达，断线期间的消息会丢失，所以还会定时从 Redis 重新加载一次兜底，
+ * 节点之间最多不一致一个周期。
  */
 @SuppressWarnings("ConstantConditions")
 @Repository
-public class FriendRepository {
+public class FriendRepository implements MessageListener {
+
+	private static final String CHANNEL = RedisKeys.CHANNEL.of("friends");
+
+	/**
+	 * 友链列表的缓存。
+	 *
+	 * @param list 友链列表
+	 * @param json 序列化后的 JSON
+	 * @param gzip 用 gzip 压缩的 JSON
+	 * @param etag JSON 的哈希，未加引号
+	 */
+	public record Snapshot(FriendLink[] list, byte[] json, byte[] gzip, String etag) {
+
+		Snapshot(FriendLink[] list, byte[] json) {
+			this(list, json, gzip(json), hash(json));
+		}
+
+		private static byte[] gzip(byte[] data) {
+			var output = new ByteArrayOutputStream(data.length / 2);
+			try (var stream = new GZIPOutputStream(output)) {
+				stream.write(data);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e); // 写入内存不会出错
+			}
+			return output.toByteArray();
+		}
+
+		private static String hash(byte[] data) {
+			try {
+				var digest = MessageDigest.getInstance("SHA-256").digest(data);
+				return CodecUtils.encodeHex(digest, 0, 16);
+			} catch (NoSuchAlgorithmException e) {
+				throw new Error("JDK 必须支持 SHA-256", e);
+			}
+		}
+	}
+
+	private final String nodeId = UUID.randomUUID().toString();
 
 	private final Clock clock;
+	private final ObjectMapper objectMapper;
+	private final StringRedisTemplate redis;
 
 	private final BoundHashOperations<String, String, FriendLink> friendMap;
 	private final BoundListOperations<String, String> hostList;
 
-	private FriendLink[] cache;
+	private volatile Snapshot cache;
 
-	FriendRepository(Clock clock, RedisOperationsBuilder redisBuilder) {
+	FriendRepository(Clock clock,
+					 RedisOperationsBuilder redisBuilder,
+					 ObjectMapper objectMapper,
+					 StringRedisTemplate redis,
+					 RedisMessageListenerContainer container) {
 		this.clock = clock;
+		this.objectMapper = objectMapper;
+		this.redis = redis;
 		friendMap = redisBuilder.bindHash(RedisKeys.FRIENDS.of("map"), FriendLink.class);
 		hostList = redisBuilder.bindList(RedisKeys.FRIENDS.of("list"), RedisSerializer.string());
+		container.addMessageListener(this, new ChannelTopic(CHANNEL));
 	}
 
 	/**
@@ -47,10 +122,39 @@ public class FriendRepository {
 	 * 启动时必须调用该方法生成换成，修改后也要调用来刷新。
 	 */
 	@PostConstruct
-	private void generateFriendsCache() {
+	private synchronized void generateFriendsCache() {
 		var list = hostList.range(0, -1);
 		var map = friendMap.entries();
-		cache = list.stream().map(map::get).toArray(FriendLink[]::new);
+		var friends = list.stream().map(map::get).toArray(FriendLink[]::new);
+		try {
+			cache = new Snapshot(friends, objectMapper.writeValueAsBytes(friends));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e); // FriendLink 一定能序列化
+		}
+	}
+
+	/**
+	 * 刷新本地缓存，并通知其它节点也刷新。
+	 */
+	private void refreshAll() {
+		generateFriendsCache();
+		redis.convertAndSend(CHANNEL, nodeId);
+	}
+
+	/**
+	 * 定时重新加载，防止漏掉其它节点的通知导致缓存一直是旧的。
+	 */
+	@Scheduled(fixedDelay = 5 * 60 * 1000, initialDelay = 5 * 60 * 1000)
+	void reload() {
+		generateFriendsCache();
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		var sender = new String(message.getBody(), StandardCharsets.UTF_8);
+		if (!nodeId.equals(sender)) {
+			generateFriendsCache();
+		}
 	}
 
 	/**
@@ -59,6 +163,15 @@ public class FriendRepository {
 	 * @return 友链列表
 	 */
 	public FriendLink[] getAll() {
+		return cache.list;
+	}
+
+	/**
+	 * 获取友链列表的缓存，包含了序列化好的 JSON，用于响应请求。
+	 *
+	 * @return 缓存
+	 */
+	public Snapshot getSnapshot() {
 		return cache;
 	}
 
@@ -85,7 +198,7 @@ public class FriendRepository {
 
 		if (friendMap.putIfAbsent(host, friend)) {
 			hostList.rightPush(host);
-			generateFriendsCache();
+			refreshAll();
 			return true;
 		}
 		return false;
@@ -115,7 +228,7 @@ public class FriendRepository {
 			friendMap.delete(host);
 		}
 
-		generateFriendsCache();
+		refreshAll();
 		return true;
 	}
 
@@ -128,7 +241,7 @@ public class FriendRepository {
 	public boolean remove(String host) {
 		if (hostList.remove(1, host) != 0) {
 			friendMap.delete(host);
-			generateFriendsCache();
+			refreshAll();
 			return true;
 		}
 		return false;
@@ -144,6 +257,6 @@ public class FriendRepository {
 	public void updateSort(String[] newList) {
 		hostList.getOperations().unlink(hostList.getKey());
 		hostList.rightPushAll(newList);
-		generateFriendsCache();
+		refreshAll();
 	}
 }
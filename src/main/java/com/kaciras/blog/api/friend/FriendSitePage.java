@@ -1,15 +1,12 @@
 package com.kaciras.blog.api.friend;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
 import org.springframework.lang.Nullable;
 
 import java.net.URI;
-import java.util.function.Predicate;
 
-@RequiredArgsConstructor
+@AllArgsConstructor
 final class FriendSitePage {
 
 	/**
@@ -25,11 +22,41 @@ final class FriendSitePage {
 	@Getter
 	private final URI newUrl;
 
-	private final String myOrigin;
-	private final String html;
+	private final boolean myLink;
 
 	/**
-	 * 页面里是否存在本站的链接（互链）。
+	 * 响应的 ETag 头，用于下次的条件请求。
+	 */
+	@Nullable
+	@Getter
+	private final String etag;
+
+	/**
+	 * 响应的 Last-Modified 头，用于下次的条件请求。
+	 */
+	@Nullable
+	@Getter
+	private final String lastModified;
+
+	/**
+	 * 检查互链时读取的那部分内容的摘要，找到互链就不会再往下读，所以不一定是整个页面的。
+	 */
+	@Nullable
+	@Getter
+	private final String contentHash;
+
+	/**
+	 * 对方是否返回了 304，此时页面没有下载，互链的检查结果沿用上次的。
+	 */
+	@Getter
+	private final boolean notModified;
+
+	FriendSitePage(boolean alive, @Nullable URI newUrl, boolean myLink) {
+		this(alive, newUrl, myLink, null, null, null, false);
+	}
+
+	/**
+	 * 页面里是否存在本站的链接（互链），在下载页面时由 BacklinkScanner 检查。
 	 * <p>
 	 * 现在动态站很多也没几个做 SSR 的，直接检查页面很容易误报，
 	 * 这种小功能也懒得去上无头浏览器，不管了。
@@ -37,15 +64,6 @@ final class FriendSitePage {
 	 * @return 如果存在返回 true
 	 */
 	public boolean hasMyLink() {
-		Predicate<Element> isLinkToMySite = el -> {
-			var href = URI.create(el.attr("href"));
-			var origin = href.getScheme() + "://" + href.getHost();
-			return myOrigin.equals(origin);
-		};
-
-		return Jsoup.parse(html)
-				.getElementsByTag("a")
-				.stream()
-				.anyMatch(isLinkToMySite);
+		return myLink;
 	}
 }
@@ -7,6 +7,9 @@ import com.kaciras.blog.infra.RedisOperationsBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.BoundHashOperations;
+import org.springframework.data.redis.core.BoundSetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.support.collections.DefaultRedisMap;
 import org.springframework.data.redis.support.collections.RedisMap;
 import org.springframework.stereotype.Service;
@@ -14,8 +17,11 @@ import org.springframework.stereotype.Service;
 import java.net.URI;
 import java.time.Clock;
 import java.time.Duration;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 定时扫描对方的网站，检查是否嗝屁（默哀），以及单方面删除本站（为什么不跟人家做朋友了）。
@@ -27,6 +33,16 @@ import java.util.Queue;
  *
  * <h2>安全性</h2>
  * 发送请求可能暴露服务器的地址，这种情况下可以通过 app.http-client.proxy 设置代理。
+ *
+ * <h2>进度</h2>
+ * 每次检查的待检查域名保存在 Redis 的集合里，检查完一个删一个，进度保存在一个 HASH 里。
+ * 如果中途重启，下次开始时会先把上次剩下的检查完，而不是重新筛选。
+ * 全部检查完后进度也一起删除，所以 HASH 存在就表示有检查没做完。
+ * 调度的细节见 {@link ValidationScheduler}。
+ *
+ * <h2>条件请求</h2>
+ * 记录里保存了上次成功访问时的 ETag、Last-Modified 和内容摘要，下次检查时发送条件请求，
+ * 返回 304 的和内容没变的数量会在检查结束时记录到日志。
  */
 @Service
 @RequiredArgsConstructor
@@ -38,14 +54,21 @@ public class FriendValidateService {
 
 	private final Clock clock;
 	private final FriendValidator validator;
+	private final FriendValidatorProperties properties;
+
+	private final AtomicBoolean running = new AtomicBoolean();
 
 	private RedisMap<String, ValidateRecord> validateMap;
+	private BoundSetOperations<String, String> pending;
+	private BoundHashOperations<String, String, String> progress;
 
 	// 该方法不能是 private，因为私有方法隐含 final 无法被 mock，而 Autowired 又让它被测试容器调用，
 	// 这导致实际的代码在 mock 测试中运行。
 	@Autowired
-	void setRedis(RedisOperationsBuilder builder) {
+	void setRedis(RedisOperationsBuilder builder, StringRedisTemplate redis) {
 		validateMap = new DefaultRedisMap<>(builder.bindHash(RedisKeys.FRIENDS.of("validate"), ValidateRecord.class));
+		pending = redis.boundSetOps(RedisKeys.FRIENDS.of("pending"));
+		progress = redis.boundHashOps(RedisKeys.FRIENDS.of("progress"));
 	}
 
 	/**
@@ -68,22 +91,64 @@ public class FriendValidateService {
 	 */
 	public void removeFromValidate(String host) {
 		validateMap.remove(host);
+		pending.remove(host);
 	}
 
 	/**
-	 * 开始一次检查，从所有的记录中筛选出待检查的友链进行检查。
+	 * 开始一次检查，从所有的记录中筛选出待检查的友链，在后台进行检查。
+	 * 如果上次的检查没做完，则继续检查剩下的。
+	 *
+	 * @return 本次检查完成时完成的 Future，如果上次的检查还在进行中则直接完成
 	 */
-	public void startValidation() {
-		var queue = new LinkedList<ValidateRecord>();
+	public CompletableFuture<Void> startValidation() {
+		if (!running.compareAndSet(false, true)) {
+			logger.warn("上次的友链检查还没结束，跳过本次");
+			return CompletableFuture.completedFuture(null);
+		}
+
+		List<ValidateRecord> queue;
+		try {
+			queue = loadQueue();
+		} catch (RuntimeException e) {
+			running.set(false);
+			throw e;
+		}
+
+		if (queue.isEmpty()) {
+			running.set(false);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return CompletableFuture
+				.runAsync(() -> validateFriends(queue), command -> Thread.ofVirtual().start(command))
+				.whenComplete((v, e) -> running.set(false));
+	}
+
+	private List<ValidateRecord> loadQueue() {
 		var records = validateMap.values();
+		var remaining = pending.members();
 
-		records.stream().filter(this::shouldValidate).forEach(queue::addFirst);
+		if (!remaining.isEmpty()) {
+			var queue = records.stream().filter(r -> remaining.contains(r.url.getHost())).toList();
+			if (!queue.isEmpty()) {
+				logger.info("继续上次未完成的友链检查，剩余 {} 个", queue.size());
+				return queue;
+			}
+			// 剩下的记录都被删了，当作上次已经完成
+			clearProgress();
+		}
 
+		var queue = records.stream().filter(this::shouldValidate).toList();
 		if (!queue.isEmpty()) {
 			logger.info("共有 {} 个友链，本次检测 {} 个", records.size(), queue.size());
+			pending.add(queue.stream().map(r -> r.url.getHost()).toArray(String[]::new));
+			progress.putAll(Map.of(
+					"started", clock.instant().toString(),
+					"total", Integer.toString(queue.size()),
+					"done", "0"
+			));
 		}
-
-		validateFriendsAsync(queue);
+		return queue;
 	}
 
 	/**
@@ -97,16 +162,41 @@ public class FriendValidateService {
 		return record.validate.plus(p).isBefore(clock.instant());
 	}
 
-	private void validateFriendsAsync(Queue<ValidateRecord> queue) {
-		if (queue.isEmpty()) {
-			return;
+	private static URI targetOf(ValidateRecord record) {
+		return record.friendPage != null ? record.friendPage : record.url;
+	}
+
+	private void validateFriends(List<ValidateRecord> queue) {
+		var start = System.nanoTime();
+		var notModified = new AtomicInteger();
+		var unchanged = new AtomicInteger();
+
+		var scheduler = new ValidationScheduler<ValidateRecord>(properties,
+				record -> validator.visit(targetOf(record), record));
+
+		scheduler.run(queue, FriendValidateService::targetOf, (record, page) -> {
+			if (page.isNotModified()) {
+				notModified.incrementAndGet();
+			} else if (page.getContentHash() != null && page.getContentHash().equals(record.contentHash)) {
+				unchanged.incrementAndGet();
+			}
+			handleResponse(record, page);
+			pending.remove(record.url.getHost());
+			progress.increment("done", 1);
+		});
+
+		// 中断的话还有剩余，保留进度下次继续。
+		if (pending.size() == 0) {
+			clearProgress();
 		}
-		var record = queue.remove();
-		var checkUrl = record.friendPage != null ? record.friendPage : record.url;
 
-		validator.visit(checkUrl)
-				.thenAccept(page -> this.handleResponse(record, page))
-				.thenRun(() -> validateFriendsAsync(queue));
+		var elapsed = Duration.ofNanos(System.nanoTime() - start);
+		logger.info("友链检查完成，共 {} 个，其中 {} 个返回 304，{} 个内容未变，耗时 {}s",
+				queue.size(), notModified.get(), unchanged.get(), elapsed.toSeconds());
+	}
+
+	private void clearProgress() {
+		pending.getOperations().unlink(List.of(pending.getKey(), progress.getKey()));
 	}
 
 	private void handleResponse(ValidateRecord record, FriendSitePage page) {
@@ -121,8 +211,12 @@ public class FriendValidateService {
 				record.failed = 0;
 			}
 		} else {
-			// 一旦访问成功就把失败次数归零。
+			// 一旦访问成功就把失败次数归零，并保存用于下次条件请求的信息。
 			record.failed = 0;
+			record.etag = page.getEtag();
+			record.lastModified = page.getLastModified();
+			record.contentHash = page.getContentHash();
+			record.myLink = page.hasMyLink();
 
 			// 有重定向直接报告。
 			if (page.getNewUrl() != null) {
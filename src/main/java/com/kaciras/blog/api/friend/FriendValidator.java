@@ -1,29 +1,51 @@
 package com.kaciras.blog.api.friend;
 
+import com.kaciras.blog.infra.codec.CodecUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * 处理友链验证逻辑的类，支持对网站的存活、迁移、互链做检查。
+ * <p>
+ * 页面不会整个下载下来，而是边读边用 BacklinkScanner 找互链，找到或者超出限制就断开连接。
+ * 读取响应体是阻塞的，放在虚拟线程里进行，以免占用 HttpClient 的线程。
+ *
+ * <h2>条件请求</h2>
+ * 如果有上次的记录，就带上 If-None-Match 和 If-Modified-Since，
+ * 对方返回 304 说明页面没变，视为存活并沿用上次的互链检查结果，双方都省了流量和解析。
  */
 @Component
 class FriendValidator {
 
+	private static final Executor SCAN_EXECUTOR = command -> Thread.ofVirtual().start(command);
+
 	private final HttpClient httpClient;
 	private final String myOrigin;
+	private final long scanLimit;
 
 	private final String userAgent;
 
-	public FriendValidator(HttpClient httpClient, @Value("${app.origin}") String myOrigin) {
+	public FriendValidator(HttpClient httpClient,
+						   @Value("${app.origin}") String myOrigin,
+						   FriendValidatorProperties properties) {
 		this.httpClient = httpClient;
 		this.myOrigin = myOrigin;
+		this.scanLimit = properties.scanLimit.toBytes();
 
 		userAgent = String.format("KacirasBlog Friend Validator (%s/about/me#friend", myOrigin);
 	}
@@ -35,32 +57,79 @@ class FriendValidator {
 	 * @return 检查结果
 	 */
 	public CompletableFuture<FriendSitePage> visit(URI uri) {
+		return visit(uri, null);
+	}
+
+	/**
+	 * 检查一个友链站点，如果有上次的记录则发送条件请求。
+	 *
+	 * @param uri  地址
+	 * @param last 上次的检查记录，没有则为 null
+	 * @return 检查结果
+	 */
+	public CompletableFuture<FriendSitePage> visit(URI uri, @Nullable ValidateRecord last) {
 		var request = HttpRequest.newBuilder(uri)
 				.header("User-Agent", userAgent)
 				.timeout(Duration.ofSeconds(10));
 
+		if (last != null && last.etag != null) {
+			request.header(HttpHeaders.IF_NONE_MATCH, last.etag);
+		}
+		if (last != null && last.lastModified != null) {
+			request.header(HttpHeaders.IF_MODIFIED_SINCE, last.lastModified);
+		}
+
 		return httpClient
-				.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
-				.thenApply(this::handleResponse)
+				.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream())
+				.thenApplyAsync(response -> handleResponse(response, last), SCAN_EXECUTOR)
 				.exceptionally(e -> unavailable());
 	}
 
-	private FriendSitePage handleResponse(HttpResponse<String> response) {
-		var hundred = response.statusCode() / 100;
+	// 关闭响应流会取消剩下的下载。
+	private FriendSitePage handleResponse(HttpResponse<InputStream> response, @Nullable ValidateRecord last) {
+		try (var body = response.body()) {
+			var status = response.statusCode();
+			var notModified = status == 304 && last != null;
 
-		if (hundred != 2) {
-			return unavailable();
-		}
+			if (status / 100 != 2 && !notModified) {
+				return unavailable();
+			}
+
+			URI newUrl = null;
+			if (response.previousResponse().isPresent()) {
+				newUrl = response.uri();
+			}
+
+			var headers = response.headers();
+			var etag = headers.firstValue(HttpHeaders.ETAG).orElse(null);
+			var lastModified = headers.firstValue(HttpHeaders.LAST_MODIFIED).orElse(null);
 
-		URI newUrl = null;
-		if (response.previousResponse().isPresent()) {
-			newUrl = response.uri();
+			if (notModified) {
+				return new FriendSitePage(true, newUrl, last.myLink,
+						etag != null ? etag : last.etag,
+						lastModified != null ? lastModified : last.lastModified,
+						last.contentHash, true);
+			}
+
+			var digest = sha256();
+			var hasMyLink = BacklinkScanner.scan(body, myOrigin, scanLimit, digest);
+			var hash = CodecUtils.encodeHex(digest.digest(), 0, 16);
+
+			return new FriendSitePage(true, newUrl, hasMyLink, etag, lastModified, hash, false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
+	}
 
-		return new FriendSitePage(true, newUrl, myOrigin, response.body());
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new Error("JDK 必须支持 SHA-256", e);
+		}
 	}
 
 	private FriendSitePage unavailable() {
-		return new FriendSitePage(false, null, myOrigin, null);
+		return new FriendSitePage(false, null, false);
 	}
 }
@@ -0,0 +1,27 @@
+package com.kaciras.blog.api.friend;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@RequiredArgsConstructor
+@ConfigurationProperties("app.friend-validator")
+public final class FriendValidatorProperties {
+
+	/** 最多同时检查几个友链 */
+	public final int concurrency;
+
+	/** 对同一个域名的两次请求至少间隔多久 */
+	public final Duration hostInterval;
+
+	/** 访问失败后最多重试几次 */
+	public final int maxRetries;
+
+	/** 第一次重试前等待的时间，之后每次翻倍，并加上随机的抖动 */
+	public final Duration retryDelay;
+
+	/** 在页面里找互链时最多读取多少字节，超出的部分当作没有 */
+	public final DataSize scanLimit;
+}
@@ -1,12 +1,10 @@
 package com.kaciras.blog.api.friend;
 
-import lombok.AllArgsConstructor;
 import org.springframework.lang.Nullable;
 
 import java.net.URI;
 import java.time.Instant;
 
-@AllArgsConstructor
 final class ValidateRecord {
 
 	public URI url;
@@ -19,4 +17,29 @@ final class ValidateRecord {
 
 	/** 验证失败次数 */
 	public int failed;
+
+	/*
+	 * 下面是上次成功访问时的结果，用于下次发送条件请求，没有的为 null。
+	 * 对方返回 304 时页面没变，互链的检查结果也就沿用上次的。
+	 */
+
+	@Nullable
+	public String etag;
+
+	@Nullable
+	public String lastModified;
+
+	/** 上次检查互链时读取的那部分内容的摘要 */
+	@Nullable
+	public String contentHash;
+
+	/** 上次检查是否存在互链 */
+	public boolean myLink;
+
+	public ValidateRecord(URI url, @Nullable URI friendPage, Instant validate, int failed) {
+		this.url = url;
+		this.friendPage = friendPage;
+		this.validate = validate;
+		this.failed = failed;
+	}
 }
@@ -0,0 +1,142 @@
+package com.kaciras.blog.api.friend;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 友链检查的调度器，控制同时检查的数量，并对同一个域名限速，失败了还会重试。
+ * <p>
+ * 以前是一个接一个地检查，几百个友链加上 10 秒的超时，一次要跑将近一个小时，
+ * 而且一个慢的网站会拖住后面所有的。现在每个友链一个虚拟线程，由信号量限制并发数。
+ *
+ * <h2>礼貌</h2>
+ * 有些友链在同一个域名下（比如友链页和主页），对同一个域名的请求至少间隔 hostInterval，
+ * 重试也同样遵守。
+ *
+ * <h2>重试</h2>
+ * 访问失败后等待 retryDelay * 2^n 再试，等待时间乘以 [0.5, 1.5) 的随机数，
+ * 避免一批同时失败的请求又同时重试。
+ * <p>
+ * 信号量只在访问时占用，退避等待期间释放掉，否则一批失败的友链会占满并发数，
+ * 其它正常的友链只能干等着。
+ *
+ * @param <T> 检查任务的类型
+ */
+@Slf4j
+final class ValidationScheduler<T> {
+
+	/**
+	 * 时间源和等待，测试时替换掉来检查调度的时间，不用真的等。
+	 */
+	interface Timer {
+
+		Timer SYSTEM = new Timer() {
+			@Override
+			public long nanoTime() {
+				return System.nanoTime();
+			}
+
+			@Override
+			public void sleep(long nanos) throws InterruptedException {
+				Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+			}
+		};
+
+		long nanoTime();
+
+		void sleep(long nanos) throws InterruptedException;
+	}
+
+	private final FriendValidatorProperties config;
+	private final Function<T, CompletableFuture<FriendSitePage>> visitor;
+	private final Timer timer;
+
+	/** 域名 -> 下一次允许请求的时间（System.nanoTime） */
+	private final Map<String, Long> hostSlots = new ConcurrentHashMap<>();
+
+	ValidationScheduler(FriendValidatorProperties config,
+						Function<T, CompletableFuture<FriendSitePage>> visitor) {
+		this(config, visitor, Timer.SYSTEM);
+	}
+
+	ValidationScheduler(FriendValidatorProperties config,
+						Function<T, CompletableFuture<FriendSitePage>> visitor,
+						Timer timer) {
+		this.config = config;
+		this.visitor = visitor;
+		this.timer = timer;
+	}
+
+	/**
+	 * 检查所有的任务，每完成一个就调用一次回调，全部完成后才返回。
+	 * 回调可能在多个线程里同时调用。
+	 *
+	 * @param tasks    任务列表
+	 * @param urlOf    获取任务要访问的地址，用于对域名限速
+	 * @param callback 任务完成后的回调，参数为任务和最后一次访问的结果
+	 */
+	public void run(Collection<T> tasks, Function<T, URI> urlOf, BiConsumer<T, FriendSitePage> callback) {
+		var semaphore = new Semaphore(config.concurrency);
+
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (var task : tasks) {
+				executor.execute(() -> {
+					try {
+						callback.accept(task, visitWithRetry(task, urlOf.apply(task), semaphore));
+					} catch (InterruptedException e) {
+						logger.warn("友链检查被中断");
+					} catch (RuntimeException e) {
+						logger.error("检查友链出错", e);
+					}
+				});
+			}
+		}
+	}
+
+	private FriendSitePage visitWithRetry(T task, URI url, Semaphore semaphore) throws InterruptedException {
+		for (var retry = 0; ; retry++) {
+			FriendSitePage page;
+			semaphore.acquire();
+			try {
+				waitForHost(url.getHost());
+				page = visitor.apply(task).join();
+			} finally {
+				semaphore.release();
+			}
+
+			if (page.isAlive() || retry >= config.maxRetries) {
+				return page;
+			}
+
+			var jitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+			var delay = (long) (config.retryDelay.toMillis() * (1L << retry) * jitter);
+			logger.debug("访问 {} 失败，{}ms 后重试", url, delay);
+			timer.sleep(TimeUnit.MILLISECONDS.toNanos(delay));
+		}
+	}
+
+	/**
+	 * 预约一个该域名的请求时间，然后等到那时候。
+	 */
+	private void waitForHost(String host) throws InterruptedException {
+		var interval = config.hostInterval.toNanos();
+		var now = timer.nanoTime();
+		var next = hostSlots.merge(host, now + interval, (prev, v) -> Math.max(prev, now) + interval);
+
+		var wait = next - interval - now;
+		if (wait > 0) {
+			timer.sleep(wait);
+		}
+	}
+}
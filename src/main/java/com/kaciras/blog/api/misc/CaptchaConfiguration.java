@@ -0,0 +1,22 @@
+package com.kaciras.blog.api.misc;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@EnableConfigurationProperties(CaptchaProperties.class)
+@Configuration(proxyBeanMethods = false)
+public class CaptchaConfiguration {
+
+	/**
+	 * 创建验证码池并启动填充任务，每次只生成一个，按速率换算成间隔。
+	 */
+	@Bean(destroyMethod = "close")
+	CaptchaPool captchaPool(TextImageCaptchaGenerator generator, CaptchaProperties properties) {
+		var pool = new CaptchaPool(generator, properties.poolSize, properties.maxWait);
+		pool.startRefill(Duration.ofNanos((long) (1e9 / properties.refillRate)));
+		return pool;
+	}
+}
@@ -17,10 +17,10 @@ import java.time.Clock;
 public class CaptchaController {
 
 	private final Clock clock;
-	private final TextImageCaptchaGenerator generator;
+	private final CaptchaPool pool;
 
 	/**
-	 * 生成验证码图片，并绑定会话属性。前端通常是一个img元素使用src属性发出请求。
+	 * 从池中取一个验证码图片，并绑定会话属性。前端通常是一个img元素使用src属性发出请求。
 	 *
 	 * @param session 会话
 	 * @param resp    响应
@@ -28,6 +28,7 @@ public class CaptchaController {
 	 */
 	@GetMapping
 	public void getCaptcha(HttpSession session, HttpServletResponse resp) throws IOException {
+		var captcha = pool.take();
 		resp.setContentType("image/jpeg");
 
 		/*
@@ -42,8 +43,10 @@ public class CaptchaController {
 		resp.setHeader("Cache-Control", "no-store, no-cache, must-revalidate");
 		resp.setDateHeader("Expires", 0);
 
-		var captcha = generator.generate(resp.getOutputStream());
-		SessionValue.CAPTCHA.setTo(session, captcha);
+		SessionValue.CAPTCHA.setTo(session, captcha.text());
 		SessionValue.CAPTCHA_TIME.setTo(session, clock.instant());
+
+		resp.setContentLength(captcha.image().length);
+		resp.getOutputStream().write(captcha.image());
 	}
 }
@@ -0,0 +1,126 @@
+package com.kaciras.blog.api.misc;
+
+import com.kaciras.blog.api.misc.TextImageCaptchaGenerator.Captcha;
+import com.kaciras.blog.infra.exception.RequestFrequencyException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预先生成的验证码池，由后台任务按固定的速率填充，请求时直接取出写入响应。
+ * <p>
+ * 生成验证码要用 AWT 绘图和 JPEG 编码，比较耗 CPU，如果在请求里生成，
+ * 大量刷注册页的请求就能把 CPU 占满。池子的容量和填充速率都有上限，
+ * 所以生成验证码的开销也被限制住了。
+ *
+ * <h2>池子空了怎么办</h2>
+ * 每个验证码只能用一次，不能重复发出去。池子空了先等待一小会儿填充，
+ * 还是没有就返回 429 让客户端稍后重试，绝不在请求里生成，否则被刷空之后开销就又不受限制了。
+ * 这种情况会记录到 misses 里，正常使用也经常发生的话就要调大容量或速率。
+ *
+ * <h2>填充线程</h2>
+ * 填充任务使用自己的线程，不与 HttpClient 等共用的 taskScheduler 抢线程，生成的速度也不会超过一个核。
+ * 没有把它注册为 Bean，因为存在 ScheduledExecutorService 类型的 Bean 会让 Spring Boot 不再创建 taskScheduler。
+ */
+@Slf4j
+public final class CaptchaPool implements AutoCloseable {
+
+	private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+	private final TextImageCaptchaGenerator generator;
+	private final BlockingQueue<Captcha> queue;
+	private final Duration maxWait;
+
+	private ScheduledExecutorService refiller;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param generator 验证码生成器
+	 * @param capacity  池子的容量
+	 * @param maxWait   池子为空时最多等待多久
+	 */
+	public CaptchaPool(TextImageCaptchaGenerator generator, int capacity, Duration maxWait) {
+		this.generator = generator;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * 取出一个验证码，如果池子空了就等待填充，最多等 maxWait。
+	 *
+	 * @return 验证码
+	 * @throws RequestFrequencyException 如果等待之后池子还是空的
+	 */
+	public Captcha take() {
+		Captcha captcha;
+		try {
+			captcha = queue.poll(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			captcha = null;
+		}
+		if (captcha != null) {
+			hits.increment();
+			return captcha;
+		}
+		misses.increment();
+		logger.debug("验证码池已空，拒绝请求");
+		throw new RequestFrequencyException("验证码请求过于频繁", RETRY_AFTER);
+	}
+
+	/**
+	 * 启动后台的填充任务，每隔 interval 生成一个。
+	 *
+	 * @param interval 生成的间隔
+	 */
+	public void startRefill(Duration interval) {
+		var factory = Thread.ofPlatform().name("captcha-refill").daemon().factory();
+		refiller = Executors.newSingleThreadScheduledExecutor(factory);
+		refiller.scheduleAtFixedRate(() -> {
+			try {
+				refill();
+			} catch (RuntimeException e) {
+				logger.error("生成验证码失败", e); // 抛出异常会让定时任务停止
+			}
+		}, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void close() {
+		if (refiller != null) {
+			refiller.shutdownNow();
+		}
+	}
+
+	/**
+	 * 生成一个验证码放入池子，如果已经满了则什么也不做。由填充任务调用。
+	 */
+	public void refill() {
+		if (queue.remainingCapacity() > 0) {
+			queue.offer(generator.generate());
+		}
+	}
+
+	/** 池中剩余的验证码数量 */
+	public int size() {
+		return queue.size();
+	}
+
+	/** 从池中取到的次数 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/** 池子为空而拒绝的次数 */
+	public long getMisses() {
+		return misses.sum();
+	}
+}
@@ -0,0 +1,20 @@
+package com.kaciras.blog.api.misc;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@RequiredArgsConstructor
+@ConfigurationProperties("app.captcha")
+public final class CaptchaProperties {
+
+	/** 最多预先生成多少个验证码 */
+	public final int poolSize;
+
+	/** 后台每秒最多生成多少个验证码 */
+	public final double refillRate;
+
+	/** 池子为空时请求最多等待多久，超时返回 429 */
+	public final Duration maxWait;
+}
@@ -3,21 +3,47 @@ package com.kaciras.blog.api.misc;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaciras.blog.api.RedisKeys;
+import com.kaciras.blog.infra.codec.CodecUtils;
 import com.kaciras.blog.infra.principal.RequirePermission;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
-@RequiredArgsConstructor
+/**
+ * 推荐卡片的 API。
+ *
+ * <h2>直接返回存储的 JSON</h2>
+ * Redis 里存的就是卡片列表的 JSON，跟响应一模一样，所以读取时不反序列化，
+ * 直接把字节写回去，再加上内容的哈希作为 ETag。
+ * <p>
+ * 卡片很少改，本地保存一份副本，更新时刷新，并通过发布/订阅把新的列表发给其它节点，
+ * 这样读取时既不访问 Redis 也不处理 JSON。
+ * <p>
+ * Redis 重连期间的消息会丢失，所以副本最多只用 TTL 这么久，过期后重新从 Redis 加载。
+ * 加载的过程中可能收到了消息，此时以消息为准，丢弃加载的结果。
+ */
 @RestController
 @RequestMapping("/cards")
-class CardController {
+class CardController implements MessageListener {
+
+	private static final String CHANNEL = RedisKeys.CHANNEL.of("cards");
+
+	private static final byte[] EMPTY = "[]".getBytes(StandardCharsets.UTF_8);
+
+	private static final Duration TTL = Duration.ofMinutes(1);
 
 	/**
 	 * 卡片需要保证次序，并且支持删除、插入到任意位置，
@@ -27,14 +53,29 @@ class CardController {
 
 	private final ObjectMapper objectMapper;
 
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+	CardController(RedisTemplate<String, byte[]> redisTemplate,
+				   ObjectMapper objectMapper,
+				   RedisMessageListenerContainer container) {
+		this.redisTemplate = redisTemplate;
+		this.objectMapper = objectMapper;
+		container.addMessageListener(this, new ChannelTopic(CHANNEL));
+	}
+
+	/**
+	 * ETag 由 HttpEntityMethodProcessor 检查，匹配时自动返回 304。
+	 */
 	@GetMapping
-	public List<Card> getAll() throws IOException {
-		var json = redisTemplate.opsForValue().get(RedisKeys.CARD_LIST.value());
-		if (json == null) {
-			return Collections.emptyList();
+	public ResponseEntity<byte[]> getAll() {
+		var current = snapshot.get();
+		if (current == null || current.isExpired()) {
+			current = refresh();
 		}
-		return objectMapper.readValue(json, objectMapper.getTypeFactory()
-				.constructCollectionType(List.class, Card.class));
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.eTag(current.etag)
+				.body(current.json);
 	}
 
 	/**
@@ -46,7 +87,56 @@ class CardController {
 	@RequirePermission
 	@PutMapping
 	public ResponseEntity<Void> update(@RequestBody @Valid List<Card> cards) throws Exception {
-		redisTemplate.opsForValue().set(RedisKeys.CARD_LIST.value(), objectMapper.writeValueAsBytes(cards));
+		var json = objectMapper.writeValueAsBytes(cards);
+		redisTemplate.opsForValue().set(RedisKeys.CARD_LIST.value(), json);
+		snapshot.set(new Snapshot(json));
+		redisTemplate.convertAndSend(CHANNEL, json);
 		return ResponseEntity.noContent().build();
 	}
+
+	/**
+	 * 从 Redis 重新加载卡片列表到本地，如果期间副本被消息或更新替换了，则保留新的那个。
+	 *
+	 * @return 当前的副本
+	 */
+	Snapshot refresh() {
+		var previous = snapshot.get();
+		var json = redisTemplate.opsForValue().get(RedisKeys.CARD_LIST.value());
+		var loaded = new Snapshot(json == null ? EMPTY : json);
+		return snapshot.compareAndSet(previous, loaded) ? loaded : snapshot.get();
+	}
+
+	/**
+	 * 消息的内容就是新的卡片列表，卡片不多直接带上，省得再去 Redis 读一次。
+	 * 自己发的消息也会收到，内容是一样的。
+	 */
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		snapshot.set(new Snapshot(message.getBody()));
+	}
+
+	/**
+	 * @param json   卡片列表的 JSON
+	 * @param etag   内容的哈希
+	 * @param loaded 创建时的 System.nanoTime()，用于判断是否过期
+	 */
+	record Snapshot(byte[] json, String etag, long loaded) {
+
+		Snapshot(byte[] json) {
+			this(json, hash(json), System.nanoTime());
+		}
+
+		boolean isExpired() {
+			return System.nanoTime() - loaded > TTL.toNanos();
+		}
+
+		private static String hash(byte[] json) {
+			try {
+				var digest = MessageDigest.getInstance("SHA-256").digest(json);
+				return CodecUtils.encodeHex(digest, 0, 16);
+			} catch (NoSuchAlgorithmException e) {
+				throw new Error("JDK 必须支持 SHA-256", e);
+			}
+		}
+	}
 }
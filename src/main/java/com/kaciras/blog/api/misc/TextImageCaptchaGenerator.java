@@ -3,14 +3,22 @@ package com.kaciras.blog.api.misc;
 import lombok.Cleanup;
 import org.springframework.stereotype.Component;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.stream.IntStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 验证码生成工具，使用AWT绘制字符验证码，并能够添加噪点，干扰线，扭曲，随机颜色等干扰。
@@ -18,10 +26,28 @@ import java.util.stream.IntStream;
  *
  * <h2>资源消耗</h2>
  * 为统一不同系统而自带了一个字体，另外由于用了 AWT 会启动一个 java2d Disposer 线程。
+ * 生成一张大约要一毫秒，所以不在请求里调用，而是由 CaptchaPool 在后台预先生成。
+ *
+ * <h2>性能</h2>
+ * 背景、扭曲和噪点直接读写图片底层的 int 数组，只有干扰线和文字用 Graphics2D 画，
+ * 且关闭了抗锯齿，文字的旋转角度也只取有限的几个值以便利用字形缓存。
+ * 以前逐像素调用 setRGB、每行每列一次 copyArea 的写法要慢得多，对比见 CaptchaRasterPerf。
+ * <p>
+ * 随机数用 ThreadLocalRandom。JPEG 编码器放在一个小池子里复用，避免每次都去查找和创建，
+ * 不用 ThreadLocal 是因为虚拟线程不会复用，每次都会新建一个而且不会 dispose。
+ * 现在 JPEG 编码占了大部分时间。
  */
 @Component
 public final class TextImageCaptchaGenerator {
 
+	/**
+	 * 生成的验证码。
+	 *
+	 * @param text  验证码字符串，已转为小写
+	 * @param image JPEG 格式的图片
+	 */
+	public record Captcha(String text, byte[] image) {}
+
 	// 字符集
 	private static final char[] CAPTCHA_TEXT =
 			"0123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
@@ -29,7 +55,10 @@ public final class TextImageCaptchaGenerator {
 	private static final int CAPTCHA_WIDTH = 150; // 图片宽度
 	private static final int CAPTCHA_HEIGHT = 40; // 图片高度
 
-	private final Random random;
+	private static final int BORDER_COLOR = Color.GRAY.getRGB() & 0xFFFFFF;
+
+	private final BlockingQueue<ImageWriter> writers = new ArrayBlockingQueue<>(4);
+
 	private final Font font;
 
 	/*
@@ -39,9 +68,7 @@ public final class TextImageCaptchaGenerator {
 	 * 一些没安装字体功能的Linux系统会报错：IOException: Problem reading font data.
 	 * 此时可以尝试安装 fontconfig 包：`apt install fontconfig`
 	 */
-	public TextImageCaptchaGenerator(Random random) throws IOException, FontFormatException {
-		this.random = random;
-
+	public TextImageCaptchaGenerator() throws IOException, FontFormatException {
 		var fontFile = TextImageCaptchaGenerator.class.getClassLoader().getResource("CENTURY.TTF");
 		if (fontFile == null) {
 			throw new Error("找不到验证码字体文件：CENTURY.TTF");
@@ -51,19 +78,42 @@ public final class TextImageCaptchaGenerator {
 	}
 
 	/**
-	 * 将生成的图片写入到输出流中,并返回验证码字符串
+	 * 生成一个验证码，图片编码为 JPEG。该方法是线程安全的。
 	 *
-	 * @param output 输出流
-	 * @return 验证码字符串
-	 * @throws IOException 如果发生IO错误
+	 * @return 验证码字符串和图片
 	 */
-	public String generate(OutputStream output) throws IOException {
-		var text = randomCaptchaText(5);
-		ImageIO.write(createCaptcha(CAPTCHA_WIDTH, CAPTCHA_HEIGHT, text), "jpg", output);
-		return text.toLowerCase();
+	public Captcha generate() {
+		var random = ThreadLocalRandom.current();
+		var text = randomCaptchaText(random, 5);
+		var image = createCaptcha(random, CAPTCHA_WIDTH, CAPTCHA_HEIGHT, text);
+		return new Captcha(text.toLowerCase(), encode(image));
 	}
 
-	private String randomCaptchaText(int length) {
+	/**
+	 * 把图片编码为 JPEG，从池里借一个编码器，用完放回去，池满了就销毁。
+	 */
+	byte[] encode(BufferedImage image) {
+		var writer = writers.poll();
+		if (writer == null) {
+			writer = ImageIO.getImageWritersByFormatName("jpg").next();
+		}
+
+		var output = new ByteArrayOutputStream(4096);
+		try (var stream = new MemoryCacheImageOutputStream(output)) {
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, null), null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // 写入内存不会出错
+		} finally {
+			writer.reset();
+			if (!writers.offer(writer)) {
+				writer.dispose();
+			}
+		}
+		return output.toByteArray();
+	}
+
+	private String randomCaptchaText(Random random, int length) {
 		var text = new StringBuilder(length);
 		for (int i = 0; i < length; i++) {
 			text.append(CAPTCHA_TEXT[random.nextInt(CAPTCHA_TEXT.length)]);
@@ -71,24 +121,26 @@ public final class TextImageCaptchaGenerator {
 		return text.toString();
 	}
 
-	private BufferedImage createCaptcha(int w, int h, String text) {
+	private BufferedImage createCaptcha(Random random, int w, int h, String text) {
 		var verifySize = text.length();
 		var image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-		var g2 = image.createGraphics();
+		var pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		g2.setColor(Color.GRAY); // 边框色
-		g2.fillRect(0, 0, w, h);
+		// 上下各 2 像素的边框，中间是背景色
+		var background = randomColorValue(random, 200, 250);
+		Arrays.fill(pixels, 0, w * 2, BORDER_COLOR);
+		Arrays.fill(pixels, w * 2, w * (h - 2), background);
+		Arrays.fill(pixels, w * (h - 2), w * h, BORDER_COLOR);
 
-		var c = randomColor(200, 250);
-		g2.setColor(c); // 设置背景色
-		g2.fillRect(0, 2, w, h - 4);
+		shearX(random, pixels, w, h, background); // 扭曲
+		shearY(random, pixels, w, h, background);
 
-		shearX(g2, w, h, c); // 扭曲
-		shearY(g2, w, h, c);
+		var g2 = image.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
 
 		// 干扰线
-		g2.setColor(randomColor(160, 200)); // 线条的颜色
+		g2.setColor(new Color(randomColorValue(random, 160, 200))); // 线条的颜色
 		for (int i = 0; i < 20; i++) {
 			var x = random.nextInt(w - 1);
 			var y = random.nextInt(h - 1);
@@ -97,22 +149,18 @@ public final class TextImageCaptchaGenerator {
 			g2.drawLine(x, y, x + xl + 40, y + yl + 20);
 		}
 
-		// 噪点
-		var yawpRate = 0.08f; // 噪声率
-		var area = (int) (yawpRate * w * h);
-		for (var i = 0; i < area; i++) {
-			image.setRGB(random.nextInt(w), random.nextInt(h), randomColorValue(0, 0xFF));
-		}
+		noise(random, pixels); // 噪点
 
 		g2.setFont(font);
 		var chars = text.toCharArray();
 
 		for (var i = 0; i < verifySize; i++) {
 			var affine = new AffineTransform();
-			var angle = Math.PI / 4 * random.nextDouble() * (random.nextBoolean() ? 1 : -1);
+			// 角度取 5 的倍数，这样旋转后的字形能命中 AWT 的缓存，随机的角度每次都要重新光栅化。
+			var angle = Math.toRadians(random.nextInt(-9, 10) * 5);
 
 			affine.setToRotation(angle, ((double) w / verifySize) * i + font.getSize() / 2D, h / 2D);
-			g2.setColor(randomColor(50, 140));
+			g2.setColor(new Color(randomColorValue(random, 50, 140)));
 			g2.setTransform(affine);
 			g2.drawChars(chars, i, 1, ((w - 10) / verifySize) * i + 5, h / 2 + font.getSize() / 2 - 10);
 		}
@@ -121,49 +169,78 @@ public final class TextImageCaptchaGenerator {
 		return image;
 	}
 
-	private Color randomColor(int lo, int hi) {
-		return new Color(randomColorValue(lo, hi));
-	}
-
 	/**
-	 * 随机生成一个颜色的整数表示，其RGB每通道都是在[lo, hi]区间的随机值。
+	 * 随机生成一个颜色的整数表示，其RGB每通道都是在[lo, hi)区间的随机值。
 	 *
 	 * @param lo 单通道下限，不能为负，未检查
 	 * @param hi 单通道上限，不能大于255，未检查
-	 * @return 颜色值ARGB
+	 * @return 颜色值RGB
 	 */
-	@SuppressWarnings("OptionalGetWithoutIsPresent")
-	private int randomColorValue(int lo, int hi) {
-		return IntStream.range(0, 3)
-				.map(i -> lo + random.nextInt(hi - lo))
-				.reduce((rgb, channel) -> rgb << 8 | channel)
-				.getAsInt();
+	private static int randomColorValue(Random random, int lo, int hi) {
+		var range = hi - lo;
+		var r = lo + random.nextInt(range);
+		var g = lo + random.nextInt(range);
+		var b = lo + random.nextInt(range);
+		return r << 16 | g << 8 | b;
 	}
 
-	private void shearX(Graphics g, int w1, int h1, Color color) {
+	/**
+	 * 把一部分像素替换为随机的颜色。
+	 */
+	static void noise(Random random, int[] pixels) {
+		var yawpRate = 0.08f; // 噪声率
+		var area = (int) (yawpRate * pixels.length);
+		for (var i = 0; i < area; i++) {
+			pixels[random.nextInt(pixels.length)] = randomColorValue(random, 0, 0xFF);
+		}
+	}
+
+	/**
+	 * 每一行左右平移一点，空出来的部分用背景色填充。
+	 */
+	static void shearX(Random random, int[] pixels, int w, int h, int color) {
 		var period = random.nextInt(3);
 		var frames = 1;
 		var phase = random.nextInt(2);
 
-		for (var i = 0; i < h1; i++) {
-			var d = (period >> 1) * Math.sin(i / (double) period + Math.PI * 2 * phase / frames);
-			g.copyArea(0, i, w1, 1, (int) d, 0);
-			g.setColor(color);
-			g.drawLine((int) d, i, 0, i);
-			g.drawLine((int) d + w1, i, w1, i);
+		for (var i = 0; i < h; i++) {
+			var d = (int) ((period >> 1) * Math.sin(i / (double) period + Math.PI * 2 * phase / frames));
+			var row = i * w;
+			if (d > 0) {
+				System.arraycopy(pixels, row, pixels, row + d, w - d);
+				Arrays.fill(pixels, row, row + d, color);
+			} else if (d < 0) {
+				System.arraycopy(pixels, row - d, pixels, row, w + d);
+				Arrays.fill(pixels, row + w + d, row + w, color);
+			}
 		}
 	}
 
-	private void shearY(Graphics g, int w1, int h1, Color color) {
+	/**
+	 * 每一列上下平移一点，空出来的部分用背景色填充。
+	 */
+	static void shearY(Random random, int[] pixels, int w, int h, int color) {
 		var period = random.nextInt(40) + 10; // 50;
 		var frames = 20;
 		var phase = 7;
-		for (var i = 0; i < w1; i++) {
-			var d = (period >> 1) * Math.sin(i / (double) period + Math.PI * 2 * phase / frames);
-			g.copyArea(i, 0, 1, h1, 0, (int) d);
-			g.setColor(color);
-			g.drawLine(i, (int) d, i, 0);
-			g.drawLine(i, (int) d + h1, i, h1);
+
+		for (var i = 0; i < w; i++) {
+			var d = (int) ((period >> 1) * Math.sin(i / (double) period + Math.PI * 2 * phase / frames));
+			if (d > 0) {
+				for (var y = h - 1; y >= d; y--) {
+					pixels[y * w + i] = pixels[(y - d) * w + i];
+				}
+				for (var y = 0; y < d; y++) {
+					pixels[y * w + i] = color;
+				}
+			} else if (d < 0) {
+				for (var y = 0; y < h + d; y++) {
+					pixels[y * w + i] = pixels[(y - d) * w + i];
+				}
+				for (var y = Math.max(0, h + d); y < h; y++) {
+					pixels[y * w + i] = color;
+				}
+			}
 		}
 	}
 }
@@ -3,6 +3,8 @@ package com.kaciras.blog.api.notice;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @RequiredArgsConstructor
 @ConfigurationProperties("app.notice.mail")
 public final class MailNotifyProperties {
@@ -16,4 +18,29 @@ public final class MailNotifyProperties {
 	 * 接收全站消息提醒的邮箱，如果为 null 则不发送邮件
 	 */
 	public final String admin;
+
+	/**
+	 * 发件箱每隔多久发送一批
+	 */
+	public final Duration interval;
+
+	/**
+	 * 每批最多发送几封，同一批共用一个 SMTP 连接
+	 */
+	public final int batchSize;
+
+	/**
+	 * 一封邮件最多尝试发送几次，超过就放弃
+	 */
+	public final int maxAttempts;
+
+	/**
+	 * 第一次重试前等待的时间，之后每次翻倍
+	 */
+	public final Duration retryDelay;
+
+	/**
+	 * 给博主的通知攒多久合并成一封
+	 */
+	public final Duration digestDelay;
 }
@@ -0,0 +1,357 @@
+package com.kaciras.blog.api.notice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaciras.blog.api.RedisKeys;
+import com.kaciras.blog.infra.codec.CodecUtils;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 保存在 Redis 里的发件箱，MailService 只是把邮件放进来，由定时任务调用 drain 分批发送。
+ * <p>
+ * 以前是在 @Async 的线程里直接发，失败了只能打个日志，每封邮件还要单独建立一次 SMTP 连接。
+ *
+ * <h2>存储</h2>
+ * 邮件的内容存在 HASH 里，键是内容的摘要；待发送的队列是一个 ZSET，分数为可以发送的时间。
+ * 取出时用脚本把分数改为租约到期的时间，多个节点不会重复发送，发送中途崩溃的也会在租约到期后重发。
+ *
+ * <h2>去重</h2>
+ * 内容完全相同的邮件在发出之前只会保存一份，发出之后再加入则是新的邮件。
+ * <p>
+ * 取出时邮件会改名（摘要后面加上这次取出的随机标记），所以发送期间加入的相同邮件是新的一份，
+ * 不会被当作重复合并掉，然后随着这批发完一起删除。
+ *
+ * <h2>重试</h2>
+ * 一批邮件共用一个 SMTP 连接，失败的等待 retryDelay * 2^n 后重试，超过 maxAttempts 次就放弃。
+ * 无法生成的邮件（比如地址格式错误）直接丢弃。
+ *
+ * <h2>摘要</h2>
+ * 给博主的通知先放在另一个列表里，从第一条开始等待 digestDelay，然后合并成一封发送，相同的通知只保留一条。
+ */
+@Slf4j
+public class MailOutbox {
+
+	/** 取出的邮件在这段时间内不会被再次取出，要比发送一批邮件的时间长 */
+	private static final Duration LEASE = Duration.ofMinutes(5);
+
+	private static final String QUEUE_KEY = RedisKeys.MAIL.of("outbox");
+	private static final String DATA_KEY = RedisKeys.MAIL.of("data");
+	private static final String DIGEST_KEY = RedisKeys.MAIL.of("digest");
+	private static final String DIGEST_SINCE_KEY = RedisKeys.MAIL.of("digest-since");
+
+	private static final DefaultRedisScript<List> CLAIM_DUE;
+	private static final DefaultRedisScript<List> TAKE_DIGEST;
+
+	static {
+		CLAIM_DUE = new DefaultRedisScript<>();
+		CLAIM_DUE.setResultType(List.class);
+		CLAIM_DUE.setLocation(new ClassPathResource("ClaimDue.lua"));
+
+		TAKE_DIGEST = new DefaultRedisScript<>();
+		TAKE_DIGEST.setResultType(List.class);
+		TAKE_DIGEST.setLocation(new ClassPathResource("TakeDigest.lua"));
+	}
+
+	/**
+	 * 发件箱里的一封邮件。
+	 *
+	 * @param to       收件人
+	 * @param title    标题
+	 * @param html     内容，HTML格式
+	 * @param attempts 已经失败的次数
+	 */
+	record OutboxMail(String to, String title, String html, int attempts) {}
+
+	private record Pending(String id, OutboxMail mail, MimeMessage message) {}
+
+	private final JavaMailSender mailSender;
+	private final StringRedisTemplate redis;
+	private final ObjectMapper objectMapper;
+	private final Clock clock;
+	private final MailNotifyProperties properties;
+	private final String name;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	public MailOutbox(JavaMailSender mailSender,
+					  StringRedisTemplate redis,
+					  ObjectMapper objectMapper,
+					  Clock clock,
+					  MailNotifyProperties properties,
+					  String name) {
+		this.mailSender = mailSender;
+		this.redis = redis;
+		this.objectMapper = objectMapper;
+		this.clock = clock;
+		this.properties = properties;
+		this.name = name;
+	}
+
+	/**
+	 * 把一封邮件放入发件箱，如果已有相同的邮件在等待发送则忽略。
+	 *
+	 * @param to    邮件发到哪
+	 * @param title 标题
+	 * @param html  内容，HTML格式
+	 */
+	public void add(String to, String title, String html) {
+		var mail = new OutboxMail(to, title, html, 0);
+		var id = idOf(mail);
+		var json = toJson(mail);
+		var now = clock.millis();
+
+		// 两个命令都是幂等的，中途失败了再加一次就行，所以不需要事务。
+		var results = redis.executePipelined((RedisCallback<?>) conn -> {
+			var c = (StringRedisConnection) conn;
+			c.hSetNX(DATA_KEY, id, json);
+			c.zAdd(QUEUE_KEY, now, id, ZAddArgs.ifNotExists());
+			return null;
+		});
+
+		if (!((Boolean) results.getFirst())) {
+			logger.debug("发件箱里已有相同的邮件，To = {}，Title = {}", to, title);
+		}
+	}
+
+	/**
+	 * 把一条给博主的通知加入摘要，稍后与其它通知合并发送。
+	 *
+	 * @param to    博主的邮箱
+	 * @param title 标题
+	 * @param html  内容，HTML格式
+	 */
+	public void addToDigest(String to, String title, String html) {
+		var json = toJson(new OutboxMail(to, title, html, 0));
+		var now = Long.toString(clock.millis());
+
+		redis.executePipelined((RedisCallback<?>) conn -> {
+			var c = (StringRedisConnection) conn;
+			c.rPush(DIGEST_KEY, json);
+			c.setNX(DIGEST_SINCE_KEY, now);
+			return null;
+		});
+	}
+
+	/**
+	 * 处理到期的摘要，然后发送一批到期的邮件。
+	 */
+	@SuppressWarnings("unchecked")
+	public void drain() {
+		var now = clock.millis();
+		flushDigest(now);
+
+		List<String> ids = redis.execute(CLAIM_DUE, List.of(QUEUE_KEY, DATA_KEY),
+				Long.toString(now),
+				Long.toString(now + LEASE.toMillis()),
+				Integer.toString(properties.batchSize),
+				Long.toHexString(ThreadLocalRandom.current().nextLong()));
+
+		if (ids == null || ids.isEmpty()) {
+			return;
+		}
+
+		var values = redis.<String, String>opsForHash().multiGet(DATA_KEY, ids);
+		var batch = new ArrayList<Pending>(ids.size());
+		var finished = new ArrayList<String>();
+
+		for (var i = 0; i < ids.size(); i++) {
+			var id = ids.get(i);
+			if (values.get(i) == null) {
+				finished.add(id); // 内容丢失，无法发送
+				continue;
+			}
+			var mail = fromJson(values.get(i));
+			try {
+				batch.add(new Pending(id, mail, createMessage(mail)));
+			} catch (IOException | MessagingException e) {
+				logger.error("无法生成邮件，已丢弃，To = {}，Title = {}", mail.to(), mail.title(), e);
+				dropped.increment();
+				finished.add(id);
+			}
+		}
+
+		var failures = sendBatch(batch);
+		for (var pending : batch) {
+			var error = failures.get(pending.message);
+			if (error == null) {
+				sent.increment();
+				finished.add(pending.id);
+			} else if (!retry(pending, error, now)) {
+				finished.add(pending.id);
+			}
+		}
+
+		if (!finished.isEmpty()) {
+			redis.opsForZSet().remove(QUEUE_KEY, finished.toArray());
+			redis.opsForHash().delete(DATA_KEY, finished.toArray());
+		}
+	}
+
+	/**
+	 * 用一个 SMTP 连接发送整批邮件。
+	 *
+	 * @return 发送失败的邮件和对应的异常
+	 */
+	private Map<Object, Exception> sendBatch(List<Pending> batch) {
+		if (batch.isEmpty()) {
+			return Map.of();
+		}
+		var messages = batch.stream().map(Pending::message).toArray(MimeMessage[]::new);
+		try {
+			mailSender.send(messages);
+			return Map.of();
+		} catch (MailSendException e) {
+			if (!e.getFailedMessages().isEmpty()) {
+				return e.getFailedMessages();
+			}
+			return allFailed(batch, e); // 连接失败时 FailedMessages 是空的
+		} catch (MailException e) {
+			return allFailed(batch, e);
+		}
+	}
+
+	private static Map<Object, Exception> allFailed(List<Pending> batch, Exception error) {
+		var failures = new HashMap<Object, Exception>();
+		batch.forEach(pending -> failures.put(pending.message, error));
+		return failures;
+	}
+
+	/**
+	 * 安排一封发送失败的邮件稍后重试。
+	 *
+	 * @return 如果还会重试返回 true，超过次数放弃了返回 false
+	 */
+	private boolean retry(Pending pending, Exception error, long now) {
+		var mail = pending.mail;
+		var attempts = mail.attempts() + 1;
+
+		if (attempts >= properties.maxAttempts) {
+			logger.error("邮件发送失败 {} 次，已放弃，To = {}，Title = {}", attempts, mail.to(), mail.title(), error);
+			dropped.increment();
+			return false;
+		}
+
+		var delay = properties.retryDelay.toMillis() << (attempts - 1);
+		logger.warn("邮件发送失败，{}s 后重试，To = {}，Title = {}：{}",
+				delay / 1000, mail.to(), mail.title(), error.getMessage());
+
+		var updated = new OutboxMail(mail.to(), mail.title(), mail.html(), attempts);
+		redis.opsForHash().put(DATA_KEY, pending.id, toJson(updated));
+		redis.opsForZSet().add(QUEUE_KEY, pending.id, now + delay);
+		return true;
+	}
+
+	/**
+	 * 如果摘要里最早的通知已经等了 digestDelay，就把它们合并成一封放入发件箱。
+	 */
+	@SuppressWarnings("unchecked")
+	private void flushDigest(long now) {
+		var cutoff = now - properties.digestDelay.toMillis();
+		List<String> items = redis.execute(TAKE_DIGEST,
+				List.of(DIGEST_KEY, DIGEST_SINCE_KEY), Long.toString(cutoff));
+
+		if (items == null || items.isEmpty()) {
+			return;
+		}
+
+		var mails = new LinkedHashSet<OutboxMail>();
+		items.forEach(json -> mails.add(fromJson(json)));
+
+		var first = mails.getFirst();
+		if (mails.size() == 1) {
+			add(first.to(), first.title(), first.html());
+			return;
+		}
+
+		var html = new StringBuilder();
+		for (var mail : mails) {
+			html.append("<h2>").append(mail.title()).append("</h2>").append(mail.html()).append("<hr>");
+		}
+		add(first.to(), "你有 " + mails.size() + " 条新通知", html.toString());
+	}
+
+	private MimeMessage createMessage(OutboxMail mail) throws IOException, MessagingException {
+		var message = mailSender.createMimeMessage();
+		var helper = new MimeMessageHelper(message);
+
+		helper.setFrom(properties.from, name);
+		helper.setTo(mail.to());
+		helper.setSubject(mail.title() + " - " + name);
+		helper.setText(mail.html(), true);
+		return message;
+	}
+
+	private static String idOf(OutboxMail mail) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(mail.to().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(mail.title().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(mail.html().getBytes(StandardCharsets.UTF_8));
+			return CodecUtils.encodeHex(digest.digest(), 0, 16);
+		} catch (NoSuchAlgorithmException e) {
+			throw new Error("JDK 必须支持 SHA-256", e);
+		}
+	}
+
+	private String toJson(OutboxMail mail) {
+		try {
+			return objectMapper.writeValueAsString(mail);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private OutboxMail fromJson(String json) {
+		try {
+			return objectMapper.readValue(json, OutboxMail.class);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** 发送成功的邮件数 */
+	public long getSent() {
+		return sent.sum();
+	}
+
+	/** 因无法生成或失败次数过多而放弃的邮件数 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/** 发件箱里等待发送的邮件数，包括等待重试的 */
+	public long getPending() {
+		var size = redis.opsForZSet().zCard(QUEUE_KEY);
+		return size == null ? 0 : size;
+	}
+}
@@ -1,42 +1,33 @@
 package com.kaciras.blog.api.notice;
 
-import jakarta.mail.MessagingException;
-import lombok.AccessLevel;
-import lombok.Cleanup;
-import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-
-import java.io.IOException;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * 可选的发邮件服务，如果没有配置邮件则该 Bean 不存在。
  *
  * <h2>安全性</h2>
  * 给别人发邮件前一定要先验证地址，否则可能被利用作为邮件轰炸机之类的导致被拉黑。
+ *
+ * <h2>发送</h2>
+ * 邮件只是放入 {@link MailOutbox}，由后台分批发送，所以这里的方法都很快，也不会抛出发送的异常。
  */
-@RequiredArgsConstructor(access = AccessLevel.PROTECTED)
-@Slf4j
 public class MailService {
 
-	private final Pattern placeholder = Pattern.compile("%(\\w+)%");
-
-	private final JavaMailSender mailSender;
-	private final String from;
+	private final MailOutbox outbox;
 	private final String adminAddress;
 
-	@Value("${app.name}")
-	private String name;
+	/** 模板名 -> 编译后的模板，在创建时全部加载 */
+	private final Map<String, MailTemplate> templates;
+
+	protected MailService(MailOutbox outbox, String adminAddress) {
+		this.outbox = outbox;
+		this.adminAddress = adminAddress;
+		this.templates = MailTemplate.loadAll("mail");
+	}
 
 	/**
 	 * 通过填充模板来生成 HTML，目前的邮件都比较简单，就不上专门的模板引擎了。
-	 * ……好像简单的 if 功能也挺有用的。
+	 * 支持简单的 if，语法见 {@link MailTemplate}。
 	 *
 	 * <h2>未来的想法</h2>
 	 * 如果用 Node 做同构应用，这玩意也能用 SSR 生成。
@@ -44,30 +35,26 @@ public class MailService {
 	 * @param name  模板名，位于 resources/mail 下，扩展名省略。
 	 * @param model 填充参数
 	 * @return 填充后的 HTML，可作为邮件内容。
+	 * @throws IllegalArgumentException 如果模板不存在或缺少参数
 	 */
-	@SneakyThrows
 	public String interpolate(String name, Map<String, Object> model) {
-		var resource = new ClassPathResource("mail/" + name + ".html");
-
-		/*
-		 * 不能用 Files.readString(Path.of(...))，否则打包后运行出错。
-		 * https://stackoverflow.com/a/25033217/7065321
-		 */
-		@Cleanup var stream = resource.getInputStream();
-		var template = new String(stream.readAllBytes());
-		return placeholder.matcher(template)
-				.replaceAll(m -> model.get(m.group(1)).toString());
+		var template = templates.get(name);
+		if (template == null) {
+			throw new IllegalArgumentException("邮件模板不存在：" + name);
+		}
+		return template.render(model);
 	}
 
 	/**
 	 * 发送一封邮件给博主，如果博主没有设置自己的邮件地址则什么也不做。
+	 * 一段时间内的多条通知会合并成一封。
 	 *
 	 * @param title 标题
 	 * @param html  内容，HTML格式
 	 */
 	public void sendToAdmin(String title, String html) {
 		if (adminAddress != null) {
-			send(adminAddress, title, html);
+			outbox.addToDigest(adminAddress, title, html);
 		}
 	}
 
@@ -79,18 +66,6 @@ public class MailService {
 	 * @param html  内容，HTML格式
 	 */
 	public void send(String to, String title, String html) {
-		var message = mailSender.createMimeMessage();
-		var helper = new MimeMessageHelper(message);
-
-		try {
-			helper.setFrom(from, name);
-			helper.setTo(to);
-			helper.setSubject(title + " - " + name);
-			helper.setText(html, true);
-
-			mailSender.send(message);
-		} catch (IOException | MessagingException e) {
-			logger.error("邮件发送失败，To = {}，Title = {}", to, title, e);
-		}
+		outbox.add(to, title, html);
 	}
 }
@@ -0,0 +1,170 @@
+package com.kaciras.blog.api.notice;
+
+import lombok.SneakyThrows;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的邮件模板，启动时解析一次，之后每次渲染只需要拼接字符串。
+ *
+ * <h2>语法</h2>
+ * <ul>
+ *     <li>{@code %name%} 插入参数 name 的值，参数不存在则抛出异常。</li>
+ *     <li>{@code %if name%...%else%...%end%} 参数 name 为真时渲染第一部分，否则渲染 else 部分，
+ *     else 可以省略，可以嵌套。null、false 和空字符串为假，参数不存在也算假。</li>
+ * </ul>
+ * 其它的 % 原样输出，所以 CSS 里的 100% 不用转义，但 else 和 end 不能再用作参数名。
+ *
+ * <h2>性能</h2>
+ * 以前每次都要读取资源文件，再对整个模板跑一遍正则。
+ * 现在模板被拆成文本片段和参数的列表，渲染时用一个预估好大小的 StringBuilder 依次拼接，
+ * 对比见 MailTemplatePerf。
+ */
+public final class MailTemplate {
+
+	private static final Pattern TAG = Pattern.compile("%(?:(\\w+)|if (\\w+))%");
+
+	private sealed interface Segment {}
+
+	private record Literal(String text) implements Segment {}
+
+	private record Placeholder(String name) implements Segment {}
+
+	private record Condition(String name, List<Segment> then, List<Segment> otherwise) implements Segment {}
+
+	private final List<Segment> segments;
+
+	/** 预估的输出长度，等于文本的长度加上每个参数 32 个字符 */
+	private final int estimatedSize;
+
+	private MailTemplate(List<Segment> segments, int estimatedSize) {
+		this.segments = segments;
+		this.estimatedSize = estimatedSize;
+	}
+
+	/**
+	 * 解析模板。
+	 *
+	 * @param text 模板的内容
+	 * @return 编译后的模板
+	 * @throws IllegalArgumentException 如果 if、else、end 不匹配
+	 */
+	public static MailTemplate compile(String text) {
+		var stack = new ArrayDeque<Block>();
+		var block = new Block(null);
+		var matcher = TAG.matcher(text);
+		var position = 0;
+		var size = 0;
+
+		while (matcher.find()) {
+			if (matcher.start() > position) {
+				block.current.add(new Literal(text.substring(position, matcher.start())));
+				size += matcher.start() - position;
+			}
+			position = matcher.end();
+
+			var name = matcher.group(1);
+			if (name == null) {
+				stack.push(block);
+				block = new Block(matcher.group(2));
+			} else if (name.equals("else")) {
+				if (block.condition == null || block.current == block.otherwise) {
+					throw new IllegalArgumentException("多余的 %else%，位置：" + matcher.start());
+				}
+				block.current = block.otherwise;
+			} else if (name.equals("end")) {
+				if (block.condition == null) {
+					throw new IllegalArgumentException("多余的 %end%，位置：" + matcher.start());
+				}
+				var node = new Condition(block.condition, List.copyOf(block.then), List.copyOf(block.otherwise));
+				block = stack.pop();
+				block.current.add(node);
+			} else {
+				block.current.add(new Placeholder(name));
+				size += 32;
+			}
+		}
+
+		if (block.condition != null) {
+			throw new IllegalArgumentException("%if " + block.condition + "% 缺少对应的 %end%");
+		}
+		if (position < text.length()) {
+			block.current.add(new Literal(text.substring(position)));
+			size += text.length() - position;
+		}
+		return new MailTemplate(List.copyOf(block.then), size);
+	}
+
+	/**
+	 * 加载并编译指定目录下所有的 .html 模板，包括 jar 里的。
+	 *
+	 * @param directory 类路径下的目录，例如 "mail"
+	 * @return 模板名（去掉扩展名的文件名）到模板的映射
+	 */
+	@SneakyThrows
+	public static Map<String, MailTemplate> loadAll(String directory) {
+		var resolver = new PathMatchingResourcePatternResolver();
+		var templates = new HashMap<String, MailTemplate>();
+
+		for (var resource : resolver.getResources("classpath*:" + directory + "/*.html")) {
+			var filename = Objects.requireNonNull(resource.getFilename());
+			var name = filename.substring(0, filename.length() - ".html".length());
+			templates.put(name, compile(resource.getContentAsString(StandardCharsets.UTF_8)));
+		}
+		return templates;
+	}
+
+	/**
+	 * 用参数填充模板。
+	 *
+	 * @param model 参数
+	 * @return 填充后的文本
+	 * @throws IllegalArgumentException 如果缺少参数
+	 */
+	public String render(Map<String, ?> model) {
+		var output = new StringBuilder(estimatedSize);
+		render(segments, model, output);
+		return output.toString();
+	}
+
+	private static void render(List<Segment> segments, Map<String, ?> model, StringBuilder output) {
+		for (var segment : segments) {
+			switch (segment) {
+				case Literal literal -> output.append(literal.text);
+				case Placeholder placeholder -> {
+					var value = model.get(placeholder.name);
+					if (value == null) {
+						throw new IllegalArgumentException("缺少模板参数：" + placeholder.name);
+					}
+					output.append(value);
+				}
+				case Condition condition -> {
+					var value = model.get(condition.name);
+					var truthy = value != null && !Boolean.FALSE.equals(value) && !"".equals(value);
+					render(truthy ? condition.then : condition.otherwise, model, output);
+				}
+			}
+		}
+	}
+
+	private static final class Block {
+
+		private final String condition;
+		private final List<Segment> then = new ArrayList<>();
+		private final List<Segment> otherwise = new ArrayList<>();
+
+		private List<Segment> current = then;
+
+		private Block(String condition) {
+			this.condition = condition;
+		}
+	}
+}
@@ -1,13 +1,20 @@
 package com.kaciras.blog.api.notice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaciras.blog.infra.RedisOperationsBuilder;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.BoundListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Clock;
 
 /*
  * 通知一般用 Notification，但这词太长也不好看，于是就改成 Notice 反正个人项目意思差不多就行了。
@@ -19,14 +26,35 @@ class NoticeConfiguration {
 
 	private final MailNotifyProperties properties;
 
+	/**
+	 * 创建发件箱并启动发送任务。
+	 */
+	@ConditionalOnProperty(prefix = "app.notice.mail", name = "from")
+	@Bean
+	public MailOutbox mailOutbox(JavaMailSender mailSender,
+								 StringRedisTemplate redis,
+								 ObjectMapper objectMapper,
+								 Clock clock,
+								 TaskScheduler taskScheduler,
+								 @Value("${app.name}") String name) {
+		var outbox = new MailOutbox(mailSender, redis, objectMapper, clock, properties, name);
+		taskScheduler.scheduleWithFixedDelay(outbox::drain, properties.interval);
+		return outbox;
+	}
+
 	@ConditionalOnProperty(prefix = "app.notice.mail", name = "from")
 	@Bean
-	public MailService mailService(JavaMailSender mailSender) {
-		return new MailService(mailSender, properties.from, properties.admin);
+	public MailService mailService(MailOutbox outbox) {
+		return new MailService(outbox, properties.admin);
 	}
 
 	@Bean
 	public BoundListOperations<String, Notice> noticeRedisList(RedisOperationsBuilder redis) {
 		return redis.bindList("notice", Notice.class);
 	}
+
+	@Bean
+	public BoundHashOperations<String, String, String> noticeTimeIndex(StringRedisTemplate redis) {
+		return redis.boundHashOps("notice:last");
+	}
 }
@@ -2,6 +2,8 @@ package com.kaciras.blog.api.notice;
 
 import com.kaciras.blog.infra.principal.RequirePermission;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,9 +20,10 @@ class NoticeController {
 
 	private final NoticeService service;
 
+	// 默认大小等于列表的上限，不分页的请求仍然能拿到全部。
 	@GetMapping
-	public List<Notice> getAll() {
-		return service.getAll();
+	public List<Notice> getAll(@PageableDefault(size = 500) Pageable pageable) {
+		return service.getAll(pageable);
 	}
 
 	@DeleteMapping
@@ -3,6 +3,8 @@ package com.kaciras.blog.api.notice;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.lang.Nullable;
 import org.springframework.scheduling.annotation.Async;
@@ -11,7 +13,6 @@ import org.springframework.stereotype.Service;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -28,9 +29,19 @@ public class NoticeService {
 	 *
 	 * 这些特性决定了不会有复杂的查询和大量的数据，所以可以简化存储，
 	 * 直接一个 Redis List 即可无需关系型数据库。
+	 *
+	 * 为防止长期不清理导致无限增长，列表只保留最新的 MAX_SIZE 条。
 	 */
+	private static final int MAX_SIZE = 500;
+
 	private final BoundListOperations<String, Notice> redis;
 
+	/**
+	 * 每种类型的通知最后一次加入列表的时间，类型名 -> Instant，跟列表一起清空。
+	 * 发通知时只需要查这个而不用读取整个列表。
+	 */
+	private final BoundHashOperations<String, String, String> lastNotified;
+
 	private final Clock clock;
 	private final ObjectMapper objectMapper;
 
@@ -40,12 +51,23 @@ public class NoticeService {
 	@Nullable
 	private final MailService mailService;
 
-	List<Notice> getAll() {
-		return redis.range(0, -1);
+	/**
+	 * 按加入的顺序分页获取通知，旧的在前。
+	 * 与其它列表接口一样，页号（start 参数）是行的偏移而不是第几页。
+	 *
+	 * @param pageable 分页参数，不支持排序
+	 * @return 通知列表
+	 */
+	List<Notice> getAll(Pageable pageable) {
+		if (pageable.isUnpaged()) {
+			return redis.range(0, -1);
+		}
+		var start = pageable.getPageNumber();
+		return redis.range(start, start + pageable.getPageSize() - 1);
 	}
 
 	public void clear() {
-		redis.getOperations().unlink(redis.getKey());
+		redis.getOperations().unlink(List.of(redis.getKey(), lastNotified.getKey()));
 	}
 
 	// 加上异步以便不干扰调用方的流程，如果出了异常也只限于本模块。
@@ -61,20 +83,19 @@ public class NoticeService {
 		 *
 		 * 在控制台里清空所有通知表示全部处理完等待新消息，此时可以发送邮件。
 		 * 另外为防止漏看，7 天之后也能再次邮件提醒。
-		 * 这里查看一下同类消息的数量来判断是否清空过，相当于 SQL 的 SELECT COUNT(*) WHERE type=?。
+		 * 以前是读取整个列表找同类消息的最后时间，现在改为查 lastNotified 索引，跟通知的数量无关了。
 		 *
 		 * 【其它方案】
 		 * 把这个逻辑转移到前端，发送完邮件设置一个标识阻止再发，清空后发一个请求重置该标识。
 		 */
-		var mailAdmin = getAll().stream()
-				.filter(n -> n.getType() == notice.getType())
-				.map(Notice::getTime)
-				.max(Comparator.naturalOrder())
-				.orElse(Instant.MIN)
-				.isBefore(now.minus(Duration.ofDays(7)));
+		var type = notice.getType().name();
+		var last = lastNotified.get(type);
+		var mailAdmin = last == null || Instant.parse(last).isBefore(now.minus(Duration.ofDays(7)));
 
 		if (activity.isAdminMessage()) {
 			redis.rightPush(notice);
+			redis.trim(-MAX_SIZE, -1);
+			lastNotified.put(type, now.toString());
 		}
 
 		if (mailService != null) {
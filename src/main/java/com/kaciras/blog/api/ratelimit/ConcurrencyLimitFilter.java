@@ -0,0 +1,88 @@
+package com.kaciras.blog.api.ratelimit;
+
+import com.kaciras.blog.api.SessionValue;
+import com.kaciras.blog.infra.RequestUtils;
+import com.kaciras.blog.infra.principal.WebPrincipal;
+import com.kaciras.blog.infra.ratelimit.GradientConcurrencyLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 负载保护过滤器，同时处理的请求超过上限时直接返回 503，而不是让它们都去等数据库连接。
+ * <p>
+ * 上限由 GradientConcurrencyLimiter 根据响应时间自动调整，数据库变慢时上限随之降低。
+ * 启用了虚拟线程后请求几乎不会在线程池里排队，没有这个过滤器的话它们将一直堆积到连接池超时。
+ *
+ * <h2>优先级</h2>
+ * 有副作用的请求和管理员的请求可以使用预留的名额，过载时优先拒绝匿名的读请求。
+ * 判断管理员需要读取会话，所以只在达到普通请求的上限后才去检查。
+ *
+ * <h2>顺序</h2>
+ * 要读取会话就必须在 SessionRepositoryFilter（Integer.MIN_VALUE + 50）之后，
+ * 同时也要在 RateLimitFilter 之后，被限流的请求不应该占用名额。
+ */
+@Order(Integer.MIN_VALUE + 60)
+@Slf4j
+@RequiredArgsConstructor
+final class ConcurrencyLimitFilter extends HttpFilter {
+
+	private static final byte[] BODY = "{\"type\":\"about:blank\",\"status\":503}".getBytes();
+
+	private final GradientConcurrencyLimiter limiter;
+
+	/** 建议客户端多少秒后重试 */
+	private final long retryAfter;
+
+	private final LongAdder shedCount = new LongAdder();
+
+	@Override
+	protected void doFilter(HttpServletRequest request, HttpServletResponse response,
+							FilterChain chain) throws IOException, ServletException {
+		var acquired = limiter.tryAcquire(false)
+				|| isImportant(request) && limiter.tryAcquire(true);
+
+		if (!acquired) {
+			shedCount.increment();
+			logger.debug("并发数达到上限 {}，拒绝请求 {}", limiter.getLimit(), request.getRequestURI());
+			response.setStatus(503);
+			response.setHeader("Retry-After", Long.toString(retryAfter));
+			response.setContentType("application/problem+json");
+			response.getOutputStream().write(BODY);
+			return;
+		}
+
+		var start = System.nanoTime();
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			limiter.release(System.nanoTime() - start);
+		}
+	}
+
+	private boolean isImportant(HttpServletRequest request) {
+		if (!RequestUtils.isSafeRequest(request)) {
+			return true;
+		}
+		var session = request.getSession(false);
+		if (session == null) {
+			return false;
+		}
+		var id = SessionValue.USER_ID.getFrom(session);
+		return Objects.equals(id, WebPrincipal.ADMIN_ID);
+	}
+
+	/** 因过载而拒绝的请求数 */
+	public long getShedCount() {
+		return shedCount.sum();
+	}
+}
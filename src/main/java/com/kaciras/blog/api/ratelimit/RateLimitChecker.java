@@ -2,8 +2,6 @@ package com.kaciras.blog.api.ratelimit;
 
 import jakarta.servlet.http.HttpServletRequest;
 
-import java.net.InetAddress;
-
 @FunctionalInterface
 public interface RateLimitChecker {
 
@@ -14,9 +12,13 @@ public interface RateLimitChecker {
 	 * 负数的等待时间没有意义，如果是其它情况禁止的话请用 Filter 而不是该接口。
 	 * 所以不要返回负数，如果返回则后续的处理是未定义的。
 	 *
+	 * <h2>地址的格式</h2>
+	 * 地址是 16 字节的数组（IPv4 为 IPv4-mapped 格式），可以直接作为限流器的 ID。
+	 * 如果开启了 IPv6 聚合，同一个 /64 前缀的地址会被视为同一个访问者，此时后 8 个字节全为 0。
+	 *
 	 * @param address 访问者的地址
 	 * @param request 请求
 	 * @return 等待的时间，零表示无需等待正常通过
 	 */
-	long check(InetAddress address, HttpServletRequest request);
+	long check(byte[] address, HttpServletRequest request);
 }
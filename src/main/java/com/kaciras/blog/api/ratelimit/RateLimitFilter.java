@@ -1,16 +1,19 @@
 package com.kaciras.blog.api.ratelimit;
 
 import com.kaciras.blog.infra.RequestUtils;
+import com.kaciras.blog.infra.codec.CodecUtils;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpFilter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.annotation.Order;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -21,6 +24,9 @@ import java.util.List;
  * 这要求该过滤器在 CorsFilter 之后，请用 Order 来改变顺序。
  * 不合规范的 OPTIONS 请求视为非正常行为，一样进行速率限制，故这里不检查请求的方法。
  *
+ * <h2>性能</h2>
+ * 每个请求都要经过这里，所以地址直接解析为字节数组，不创建 InetAddress 也不拼接字符串。
+ *
  * @see org.springframework.web.filter.CorsFilter#doFilterInternal
  */
 @Order(Integer.MIN_VALUE + 20)
@@ -34,29 +40,37 @@ final class RateLimitFilter extends HttpFilter {
 
 	private final List<RateLimitChecker> checkers;
 
+	/** 是否把同一个 /64 前缀的 IPv6 地址视为同一个访问者 */
+	@Setter
+	private boolean ipv6Aggregation;
+
 	@Override
 	protected void doFilter(HttpServletRequest request, HttpServletResponse response,
 							FilterChain chain) throws IOException, ServletException {
-		var ip = RequestUtils.addressFrom(request);
+		var ip = RequestUtils.addressBytesFrom(request);
 
 		if (RequestUtils.isLocalNetwork(ip)) {
 			chain.doFilter(request, response);
+			return;
+		}
+		if (ipv6Aggregation && !CodecUtils.isIPv4Mapped(ip)) {
+			Arrays.fill(ip, 8, 16, (byte) 0);
+		}
+
+		var waitTime = 0L;
+		for (var checker : checkers) {
+			waitTime = checker.check(ip, request);
+			if (waitTime != 0) break;
+		}
+
+		if (waitTime == 0) {
+			chain.doFilter(request, response);
 		} else {
-			var wait = checkers.stream()
-					.map(c -> c.check(ip, request))
-					.filter(time -> time != 0)
-					.findFirst();
-
-			if (wait.isEmpty()) {
-				chain.doFilter(request, response);
-			} else {
-				var waitTime = wait.get();
-				logger.warn("{} 被限流 {} 秒", ip, waitTime);
-				response.setStatus(429);
-				response.setHeader(RATE_LIMIT_HEADER, Long.toString(waitTime));
-				response.setContentType("application/problem+json");
-				response.getOutputStream().write(BODY);
-			}
+			logger.warn("{} 被限流 {} 秒", request.getRemoteAddr(), waitTime);
+			response.setStatus(429);
+			response.setHeader(RATE_LIMIT_HEADER, Long.toString(waitTime));
+			response.setContentType("application/problem+json");
+			response.getOutputStream().write(BODY);
 		}
 	}
 }
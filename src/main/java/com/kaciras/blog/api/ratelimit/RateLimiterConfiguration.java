@@ -1,6 +1,10 @@
 package com.kaciras.blog.api.ratelimit;
 
 import com.kaciras.blog.api.RedisKeys;
+import com.kaciras.blog.infra.ratelimit.CircuitBreakerLimiter;
+import com.kaciras.blog.infra.ratelimit.GradientConcurrencyLimiter;
+import com.kaciras.blog.infra.ratelimit.MemoryTokenBucket;
+import com.kaciras.blog.infra.ratelimit.RateLimiter;
 import com.kaciras.blog.infra.ratelimit.RedisBlockingLimiter;
 import com.kaciras.blog.infra.ratelimit.RedisTokenBucket;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -25,7 +29,7 @@ public class RateLimiterConfiguration {
 	private final RedisConnectionFactory factory;
 	private final Clock clock;
 
-	private final RedisTemplate<String, Object> redis;
+	private final RedisTemplate<byte[], Object> redis;
 
 	public RateLimiterConfiguration(RateLimiterProperties properties, RedisConnectionFactory factory, Clock clock) {
 		this.properties = properties;
@@ -35,7 +39,7 @@ public class RateLimiterConfiguration {
 		redis = new RedisTemplate<>();
 		redis.setConnectionFactory(factory);
 		redis.setEnableDefaultSerializer(false);
-		redis.setKeySerializer(RedisSerializer.string());
+		redis.setKeySerializer(RedisSerializer.byteArray());
 		redis.setValueSerializer(new GenericToStringSerializer<>(Object.class));
 		redis.afterPropertiesSet();
 	}
@@ -46,10 +50,14 @@ public class RateLimiterConfiguration {
 	@Bean
 	RateLimitChecker genericRateChecker() {
 		var bucket = properties.generic;
-		var limiter = new RedisTokenBucket(RedisKeys.RATE_LIMIT.value(), redis, clock);
-		limiter.addBucket(bucket.size, bucket.rate);
+		var inner = new RedisTokenBucket(RedisKeys.RATE_LIMIT.value(), redis, clock);
+		inner.addBucket(bucket.size, bucket.rate);
 
-		return (ip, request) -> limiter.acquire(ip.toString(), 1);
+		var fallback = new MemoryTokenBucket(clock);
+		addScaledBucket(fallback, bucket.size, bucket.rate);
+		var limiter = withCircuitBreaker("generic", inner, fallback);
+
+		return (ip, request) -> limiter.acquire(ip, 1);
 	}
 
 	@ConditionalOnProperty(prefix = "app.rate-limiter.effective", name = "block-times")
@@ -57,23 +65,61 @@ public class RateLimiterConfiguration {
 	EffectRateChecker effectRateChecker() {
 		var config = properties.effective;
 		var inner = new RedisTokenBucket(RedisKeys.EFFECT_RATE.value(), redis, clock);
+		var fallback = new MemoryTokenBucket(clock);
 
 		for (var limit : config.limits) {
 			var rate = limit.permits / (double) limit.time.toSeconds();
 			inner.addBucket(limit.permits, rate);
+			addScaledBucket(fallback, limit.permits, rate);
 		}
 
 		var wrapper = new RedisBlockingLimiter(RedisKeys.EFFECT_BLOCKING.value(), inner, factory, clock);
 		wrapper.setBlockTimes(config.blockTimes);
 		wrapper.setRefreshOnReject(config.refreshOnReject);
 
-		return new EffectRateChecker(wrapper);
+		return new EffectRateChecker(withCircuitBreaker("effective", wrapper, fallback));
+	}
+
+	/**
+	 * 如果配置了熔断，则给限流器套上一层，否则原样返回。
+	 * 降级的限流器只有令牌桶，没有封禁功能，毕竟只是临时用一下。
+	 */
+	private RateLimiter withCircuitBreaker(String name, RateLimiter limiter, RateLimiter fallback) {
+		var config = properties.circuitBreaker;
+		if (config == null) {
+			return limiter;
+		}
+		var breaker = new CircuitBreakerLimiter(name, limiter, fallback, clock);
+		breaker.setFailureThreshold(config.failureThreshold);
+		breaker.setSlowCallThreshold(config.slowCall);
+		breaker.setOpenDuration(config.openTime);
+		return breaker;
+	}
+
+	// 降级限流器是单机的，多个节点时实际的限制会宽松些，所以用比例把它调低点。
+	private void addScaledBucket(MemoryTokenBucket bucket, int size, double rate) {
+		var config = properties.circuitBreaker;
+		if (config != null) {
+			var scale = config.fallbackScale;
+			bucket.addBucket(Math.max(1, (int) (size * scale)), rate * scale);
+		}
+	}
+
+	@ConditionalOnProperty(prefix = "app.rate-limiter.concurrency", name = "max-limit")
+	@Bean
+	ConcurrencyLimitFilter concurrencyLimitFilter() {
+		var config = properties.concurrency;
+		var limiter = new GradientConcurrencyLimiter(config.initialLimit, config.minLimit, config.maxLimit);
+		limiter.setReserveRatio(config.reserveRatio);
+		return new ConcurrencyLimitFilter(limiter, config.retryAfter.toSeconds());
 	}
 
 	// ConditionalOnBean 需要指定的 bean 先注册，所以这个必须放到最下面
 	@ConditionalOnBean(value = RateLimitChecker.class)
 	@Bean
 	RateLimitFilter rateLimitFilter(List<RateLimitChecker> checkers) {
-		return new RateLimitFilter(checkers);
+		var filter = new RateLimitFilter(checkers);
+		filter.setIpv6Aggregation(properties.ipv6Aggregation);
+		return filter;
 	}
 }
@@ -16,6 +16,18 @@ public final class RateLimiterProperties {
 	/** 针对有副作用的请求（POST,PUT等）的限流，防刷评论 */
 	public final EffectiveLimiterConfig effective;
 
+	/** Redis 出故障时的熔断降级，为 null 则不启用 */
+	public final CircuitBreakerConfig circuitBreaker;
+
+	/**
+	 * 把同一个 /64 前缀的 IPv6 地址视为一个访问者。
+	 * 运营商一般给用户分配整个 /64 段，不聚合的话换个地址就能绕过限流。
+	 */
+	public final boolean ipv6Aggregation;
+
+	/** 根据响应时间自动调整的并发限制，超出的请求返回 503，为 null 则不启用 */
+	public final ConcurrencyLimitConfig concurrency;
+
 	@RequiredArgsConstructor
 	public static final class TokenBucket {
 
@@ -51,4 +63,39 @@ public final class RateLimiterProperties {
 		/** 针对副作用请求，在限流的基础上进一步增加封禁措施，封禁时间根据该列表依次递增 */
 		public final List<Duration> blockTimes;
 	}
+
+	@RequiredArgsConstructor
+	public static final class CircuitBreakerConfig {
+
+		/** 连续失败（出错或慢调用）多少次后熔断 */
+		public final int failureThreshold;
+
+		/** 访问 Redis 的耗时超过该值视为失败 */
+		public final Duration slowCall;
+
+		/** 熔断持续的时间，之后将探测 Redis 是否恢复 */
+		public final Duration openTime;
+
+		/** 降级后本地限流器的令牌桶相对于原配置的比例，小于 1 则比原来更严格 */
+		public final double fallbackScale;
+	}
+
+	@RequiredArgsConstructor
+	public static final class ConcurrencyLimitConfig {
+
+		/** 启动时的并发上限 */
+		public final int initialLimit;
+
+		/** 并发上限不会低于该值 */
+		public final int minLimit;
+
+		/** 并发上限不会超过该值 */
+		public final int maxLimit;
+
+		/** 为有副作用的请求和管理员预留的比例 */
+		public final double reserveRatio;
+
+		/** 拒绝时 Retry-After 头的值 */
+		public final Duration retryAfter;
+	}
 }
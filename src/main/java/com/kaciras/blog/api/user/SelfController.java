@@ -1,6 +1,7 @@
 package com.kaciras.blog.api.user;
 
 import com.kaciras.blog.api.SessionValue;
+import com.kaciras.blog.api.account.HttpSessionTable;
 import com.kaciras.blog.infra.principal.SecurityContext;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
@@ -21,6 +22,7 @@ class SelfController {
 
 	private final UserRepository repository;
 	private final UserMapper mapper;
+	private final HttpSessionTable sessionTable;
 
 	@GetMapping
 	public UserVO get() {
@@ -30,6 +32,7 @@ class SelfController {
 	@DeleteMapping
 	public ResponseEntity<Void> logout(HttpSession session) {
 		SessionValue.USER_ID.removeFrom(session);
+		sessionTable.invalidatePrincipal(session.getId());
 		return ResponseEntity.status(HttpStatus.RESET_CONTENT).build();
 	}
 
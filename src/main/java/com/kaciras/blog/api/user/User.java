@@ -33,4 +33,17 @@ public final class User {
 		this.name = name;
 		this.avatar = avatar;
 	}
+
+	/**
+	 * 复制一份，缓存里的对象不能被外面修改。字段的类型都是不可变的，所以浅复制就够了。
+	 */
+	User copy() {
+		var copy = new User(id, name, avatar);
+		copy.email = email;
+		copy.deleted = deleted;
+		copy.auth = auth;
+		copy.createTime = createTime;
+		copy.createIP = createIP;
+		return copy;
+	}
 }
@@ -0,0 +1,128 @@
+package com.kaciras.blog.api.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.kaciras.blog.api.RedisKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户信息的本地缓存，每条评论都要显示用户，不缓存的话每次都得查数据库。
+ * <p>
+ * 缓存里存的是副本，取出时也返回副本，调用方随便改都不会影响缓存。
+ *
+ * <h2>多节点</h2>
+ * 更新用户后通过 Redis 的发布/订阅通知所有节点（包括自己）删除对应的缓存，
+ * 万一消息丢了也有过期时间兜底，最多旧一会。
+ *
+ * <h2>并发</h2>
+ * 读者未命中后去数据库加载，如果加载期间用户被更新并失效了缓存，
+ * 读者随后放入的就是旧数据，而且要到过期才会消失。
+ * 所以加载前先用 {@link #stamp()} 取一个版本号，放入时若期间发生过失效则丢弃，
+ * 检查和放入与失效互斥，不会交错。版本号是全局的，其它用户的更新也会让这次放入作废，
+ * 不过更新很少，最多多查一次数据库。
+ *
+ * <h2>统计</h2>
+ * 命中率可以通过 getHitRate 获取。
+ */
+@Slf4j
+@Component
+final class UserCache implements MessageListener {
+
+	private static final String CHANNEL = RedisKeys.CHANNEL.of("user");
+
+	private final Cache<Integer, User> cache = CacheBuilder.newBuilder()
+			.maximumSize(10_000)
+			.expireAfterWrite(Duration.ofMinutes(10))
+			.recordStats()
+			.build();
+
+	private final StringRedisTemplate redis;
+
+	/** 失效次数，用作放入时的版本号，读写都在 this 的锁内 */
+	private long generation;
+
+	UserCache(StringRedisTemplate redis, RedisMessageListenerContainer container) {
+		this.redis = redis;
+		container.addMessageListener(this, new ChannelTopic(CHANNEL));
+	}
+
+	public User get(int id) {
+		var user = cache.getIfPresent(id);
+		return user == null ? null : user.copy();
+	}
+
+	/**
+	 * 批量获取，只返回缓存里有的。
+	 *
+	 * @param ids 用户 ID 列表
+	 * @return ID 到用户的映射
+	 */
+	public Map<Integer, User> getAll(Collection<Integer> ids) {
+		var result = cache.getAllPresent(ids);
+		var copies = new HashMap<Integer, User>(result.size());
+		result.forEach((id, user) -> copies.put(id, user.copy()));
+		return copies;
+	}
+
+	/**
+	 * 获取当前的版本号，必须在从数据库加载之前调用。
+	 *
+	 * @return 版本号，传给 put 方法
+	 */
+	public synchronized long stamp() {
+		return generation;
+	}
+
+	/**
+	 * 放入缓存，如果取得版本号之后有过失效则什么也不做。
+	 *
+	 * @param user  用户
+	 * @param stamp 加载前由 {@link #stamp()} 返回的版本号
+	 */
+	public synchronized void put(User user, long stamp) {
+		if (stamp == generation) {
+			cache.put(user.getId(), user.copy());
+		}
+	}
+
+	/**
+	 * 删除本地的缓存，并通知其它节点也删除。
+	 *
+	 * @param id 用户 ID
+	 */
+	public void invalidate(int id) {
+		invalidateLocal(id);
+		redis.convertAndSend(CHANNEL, Integer.toString(id));
+	}
+
+	private synchronized void invalidateLocal(int id) {
+		generation++;
+		cache.invalidate(id);
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		var id = new String(message.getBody(), StandardCharsets.UTF_8);
+		try {
+			invalidateLocal(Integer.parseInt(id));
+		} catch (NumberFormatException e) {
+			logger.warn("收到无效的用户缓存失效消息：{}", id);
+		}
+	}
+
+	public double getHitRate() {
+		return cache.stats().hitRate();
+	}
+}
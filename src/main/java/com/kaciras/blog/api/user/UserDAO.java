@@ -1,7 +1,11 @@
 package com.kaciras.blog.api.user;
 
+import com.kaciras.blog.infra.MybatisInlineScriptDriver;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 interface UserDAO {
 
@@ -13,6 +17,10 @@ interface UserDAO {
 	@Select("SELECT * FROM `user` WHERE id=#{id}")
 	User select(int id);
 
+	@Lang(MybatisInlineScriptDriver.class)
+	@Select("SELECT * FROM `user` WHERE id IN (#{ids})")
+	List<User> selectAll(Collection<Integer> ids);
+
 	@Delete("UPDATE `user` SET deleted=1 WHERE id=#{id}")
 	int delete(int id);
 
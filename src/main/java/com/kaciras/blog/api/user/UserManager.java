@@ -6,6 +6,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.net.InetAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Service
@@ -28,6 +31,18 @@ public class UserManager {
 		return mapper.toUserVo(user);
 	}
 
+	/**
+	 * 批量获取用户的信息，不存在的用户不包含在结果中。
+	 *
+	 * @param ids 用户ID列表
+	 * @return ID 到用户信息的映射
+	 */
+	public Map<Integer, UserVO> getUsers(Collection<Integer> ids) {
+		var result = new HashMap<Integer, UserVO>();
+		repository.getAll(ids).forEach((id, user) -> result.put(id, mapper.toUserVo(user)));
+		return result;
+	}
+
 	public int createNew(String name, AuthType authType, InetAddress ip) {
 		var user = new User();
 		user.setName(name);
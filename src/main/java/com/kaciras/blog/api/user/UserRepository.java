@@ -7,6 +7,10 @@ import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 
 import java.time.Clock;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 用户存储，也没啥复杂的逻辑就是增改查，连删都没有，因为其它地方都在用，删了很难保证完整性。
@@ -14,12 +18,16 @@ import java.time.Clock;
  * <h2>内置用户</h2>
  * 如果用 null 来表示匿名用户，虽然前端判断代码能少点字，但需要做判断的地方反而更多；
  * 另外 null 这个特殊值却只有一个，如果有多个特殊用户需要本地化，则无法实现。
+ *
+ * <h2>缓存</h2>
+ * 用户信息读多写少，查询先走 {@link UserCache}，更新时让所有节点的缓存失效。
  */
 @RequiredArgsConstructor(access = AccessLevel.PROTECTED)
 @Repository
 public class UserRepository {
 
 	private final UserDAO userDAO;
+	private final UserCache cache;
 	private final Clock clock;
 
 	public void add(@NonNull User user) {
@@ -31,10 +39,45 @@ public class UserRepository {
 		if (id == 0) {
 			return User.GUEST;
 		}
-		return userDAO.select(id);
+		var user = cache.get(id);
+		if (user == null) {
+			var stamp = cache.stamp();
+			user = userDAO.select(id);
+			if (user != null) {
+				cache.put(user, stamp);
+			}
+		}
+		return user;
+	}
+
+	/**
+	 * 批量获取用户，缓存里没有的一次性从数据库查出。
+	 *
+	 * @param ids 用户 ID 列表
+	 * @return ID 到用户的映射，不存在的用户不包含在内
+	 */
+	public Map<Integer, User> getAll(Collection<Integer> ids) {
+		var result = cache.getAll(ids);
+
+		var missing = ids.stream()
+				.filter(id -> !result.containsKey(id))
+				.collect(Collectors.toSet());
+
+		if (missing.remove(0)) {
+			result.put(0, User.GUEST);
+		}
+		if (!missing.isEmpty()) {
+			var stamp = cache.stamp();
+			var loaded = userDAO.selectAll(missing);
+			loaded.forEach(user -> cache.put(user, stamp));
+			result.putAll(loaded.stream().collect(Collectors.toMap(User::getId, Function.identity())));
+		}
+
+		return result;
 	}
 
 	public void update(User user) {
 		Utils.checkEffective(userDAO.updateProfile(user));
+		cache.invalidate(user.getId());
 	}
 }
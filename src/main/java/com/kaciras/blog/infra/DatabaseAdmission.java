@@ -0,0 +1,172 @@
+package com.kaciras.blog.infra;
+
+import com.kaciras.blog.infra.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库的准入控制，用一个公平的信号量限制同时使用数据库的调用数，许可数一般等于连接池的大小。
+ * <p>
+ * 启用虚拟线程后，成千上万的请求可以同时阻塞在 getConnection() 上，最后一起超时。
+ * 在这之前先排队，并限制队列的长度和等待时间，过载时就表现为可控的延迟和快速的失败。
+ *
+ * <h2>分类排队</h2>
+ * 调用按 {@link Lane} 分类，每类有自己的队列长度和最长等待时间，
+ * 例如给读请求设置较短的队列，这样大量的读请求不会把写请求挤出去。
+ *
+ * <h2>重入</h2>
+ * 同一个线程在持有许可时再次进入（比如事务里调用 Mapper）不能重复获取，否则许可数等于连接数时会死锁，
+ * 调用方需要先用 isHolding 检查。
+ *
+ * <h2>统计</h2>
+ * 每类的等待时间、通过和拒绝的次数可以通过 getter 获取。
+ */
+@Slf4j
+public final class DatabaseAdmission {
+
+	public enum Lane {
+
+		/** 有副作用的请求和管理员的请求 */
+		PRIORITY,
+
+		/** 普通的读请求 */
+		READ,
+
+		/** 不在请求中的调用，比如定时任务 */
+		BACKGROUND,
+	}
+
+	private final Semaphore semaphore;
+	private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+	private final ThreadLocal<Boolean> holding = new ThreadLocal<>();
+
+	/**
+	 * 创建 DatabaseAdmission 的新实例，各类的队列长度默认不限，最长等待 30 秒。
+	 *
+	 * @param permits 许可数，即最多同时使用数据库的调用数
+	 */
+	public DatabaseAdmission(int permits) {
+		semaphore = new Semaphore(permits, true);
+		for (var lane : Lane.values()) {
+			lanes.put(lane, new LaneState(Integer.MAX_VALUE, Duration.ofSeconds(30)));
+		}
+	}
+
+	/**
+	 * 设置一类调用的排队限制。
+	 *
+	 * @param lane     调用的类别
+	 * @param maxQueue 最多有多少个调用在等待，超出的直接拒绝
+	 * @param maxWait  最长等待时间，超时则拒绝
+	 */
+	public void configure(Lane lane, int maxQueue, Duration maxWait) {
+		lanes.put(lane, new LaneState(maxQueue, maxWait));
+	}
+
+	/** 当前线程是否已经持有许可 */
+	public boolean isHolding() {
+		return holding.get() != null;
+	}
+
+	/**
+	 * 获取一个许可，成功后必须调用 release。调用前请先用 isHolding 检查是否已持有。
+	 *
+	 * @param lane 调用的类别
+	 * @throws ServiceUnavailableException 如果队列已满或等待超时
+	 */
+	public void acquire(Lane lane) {
+		var state = lanes.get(lane);
+		var start = System.nanoTime();
+
+		if (state.waiting.incrementAndGet() > state.maxQueue) {
+			state.waiting.decrementAndGet();
+			state.rejected.increment();
+			throw new ServiceUnavailableException("数据库繁忙，请稍后再试");
+		}
+
+		try {
+			if (!semaphore.tryAcquire(state.maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+				state.rejected.increment();
+				logger.warn("{} 类调用等待数据库超过 {}，已拒绝", lane, state.maxWait);
+				throw new ServiceUnavailableException("数据库繁忙，请稍后再试");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceUnavailableException();
+		} finally {
+			state.waiting.decrementAndGet();
+		}
+
+		var waited = System.nanoTime() - start;
+		state.admitted.increment();
+		state.totalWait.add(waited);
+		state.maxWaitSeen.accumulate(waited);
+
+		holding.set(Boolean.TRUE);
+	}
+
+	/**
+	 * 释放当前线程持有的许可。
+	 */
+	public void release() {
+		holding.remove();
+		semaphore.release();
+	}
+
+	/** 空闲的许可数 */
+	public int getAvailable() {
+		return semaphore.availablePermits();
+	}
+
+	/** 正在排队的调用数 */
+	public int getWaiting(Lane lane) {
+		return lanes.get(lane).waiting.get();
+	}
+
+	/** 获得了许可的次数 */
+	public long getAdmitted(Lane lane) {
+		return lanes.get(lane).admitted.sum();
+	}
+
+	/** 因排队已满或超时而拒绝的次数 */
+	public long getRejected(Lane lane) {
+		return lanes.get(lane).rejected.sum();
+	}
+
+	/** 获得许可的平均等待时间 */
+	public Duration getAverageWait(Lane lane) {
+		var state = lanes.get(lane);
+		var count = state.admitted.sum();
+		return count == 0 ? Duration.ZERO : Duration.ofNanos(state.totalWait.sum() / count);
+	}
+
+	/** 获得许可的最长等待时间 */
+	public Duration getMaxWait(Lane lane) {
+		return Duration.ofNanos(lanes.get(lane).maxWaitSeen.get());
+	}
+
+	private static final class LaneState {
+
+		private final int maxQueue;
+		private final Duration maxWait;
+
+		private final AtomicInteger waiting = new AtomicInteger();
+		private final LongAdder admitted = new LongAdder();
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder totalWait = new LongAdder();
+		private final LongAccumulator maxWaitSeen = new LongAccumulator(Math::max, 0);
+
+		private LaneState(int maxQueue, Duration maxWait) {
+			this.maxQueue = maxQueue;
+			this.maxWait = maxWait;
+		}
+	}
+}
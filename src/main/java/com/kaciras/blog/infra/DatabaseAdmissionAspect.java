@@ -0,0 +1,52 @@
+package com.kaciras.blog.infra;
+
+import com.kaciras.blog.infra.DatabaseAdmission.Lane;
+import com.kaciras.blog.infra.principal.SecurityContext;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 在 Mapper 和事务方法的入口处做准入控制，先排队再去拿连接。
+ * <p>
+ * 必须在事务的切面之外，否则事务开始时就已经拿了连接，排队就没有意义了，所以优先级设为最高。
+ *
+ * @see DatabaseAdmission
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public final class DatabaseAdmissionAspect {
+
+	private final DatabaseAdmission admission;
+
+	@Around("@within(org.apache.ibatis.annotations.Mapper) " +
+			"|| @annotation(org.springframework.transaction.annotation.Transactional)")
+	public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+		if (admission.isHolding()) {
+			return joinPoint.proceed();
+		}
+		admission.acquire(classify());
+		try {
+			return joinPoint.proceed();
+		} finally {
+			admission.release();
+		}
+	}
+
+	private Lane classify() {
+		if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs)) {
+			return Lane.BACKGROUND;
+		}
+		if (!RequestUtils.isSafeRequest(attrs.getRequest())) {
+			return Lane.PRIORITY;
+		}
+		var principal = SecurityContext.getPrincipal();
+		return principal != null && principal.isAdminister() ? Lane.PRIORITY : Lane.READ;
+	}
+}
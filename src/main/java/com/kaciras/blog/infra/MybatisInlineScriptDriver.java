@@ -8,7 +8,11 @@ import java.util.regex.Pattern;
 
 /**
  * 扩展 Mybatis 的解析器，让注解中的 SQL 也支持集合参数。
- * 新增的规则会将 (#{xxx}) 这样的字符串将其转换为 foreach 块。
+ * <ul>
+ *     <li>(#{xxx}) 这样的字符串将其转换为 foreach 块，用于 IN 查询。</li>
+ *     <li>括号里带有 #{xxx[]} 的会把整个括号对集合里的每个元素重复一次，用于多行插入，
+ *     例如 VALUES (#{id}, #{values[]}) 会生成 VALUES (?, ?),(?, ?)...</li>
+ * </ul>
  * <a href="https://stackoverflow.com/a/29076097">参考</a>
  *
  * @see org.apache.ibatis.annotations.Lang
@@ -17,11 +21,16 @@ public final class MybatisInlineScriptDriver extends XMLLanguageDriver {
 
 	private final Pattern regex = Pattern.compile("\\(#\\{(\\w+)}\\)");
 
+	private final Pattern rowRegex = Pattern.compile("\\(([^()]*)#\\{(\\w+)\\[]}([^()]*)\\)");
+
 	public SqlSource createSqlSource(Configuration configuration, String script, Class<?> parameterType) {
-		var matcher = regex.matcher(script);
-		if (matcher.find()) {
-			script = matcher.replaceAll("(<foreach collection=\"$1\" item=\"__item\" separator=\",\" >#{__item}</foreach>)");
-			script = "<script>" + script + "</script>";
+		var expanded = regex.matcher(script)
+				.replaceAll("(<foreach collection=\"$1\" item=\"__item\" separator=\",\" >#{__item}</foreach>)");
+		expanded = rowRegex.matcher(expanded)
+				.replaceAll("<foreach collection=\"$2\" item=\"__item\" separator=\",\" >($1#{__item}$3)</foreach>");
+
+		if (!expanded.equals(script)) {
+			script = "<script>" + expanded + "</script>";
 		}
 		return super.createSqlSource(configuration, script, parameterType);
 	}
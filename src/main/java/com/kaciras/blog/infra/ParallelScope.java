@@ -0,0 +1,89 @@
+package com.kaciras.blog.infra;
+
+import com.kaciras.blog.infra.principal.SecurityContext;
+import com.kaciras.blog.infra.principal.WebPrincipal;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 简易的结构化并发，把互不依赖的子任务放到虚拟线程里同时执行，耗时从各部分之和变为其中最大的。
+ * <pre>
+ * try (var scope = new ParallelScope()) {
+ *     var items = scope.fork(() -> repository.findAll(query));
+ *     var total = scope.fork(() -> repository.count(query));
+ *     return new ListQueryView<>(total.get(), items.get());
+ * }
+ * </pre>
+ * 离开 try 块时会等待全部子任务结束，它们不会比创建它的方法活得更久。
+ *
+ * <h2>为什么不用 StructuredTaskScope</h2>
+ * JDK 的 StructuredTaskScope 目前还是预览功能，本项目没有开启 --enable-preview，
+ * 所以用 ExecutorService 实现了一个够用的版本，以后转正了再换掉。
+ *
+ * <h2>线程本地变量</h2>
+ * 子任务会继承创建该对象的线程的 SecurityContext 和 RequestAttributes，
+ * 所以在子任务里可以照常鉴权。其它的线程本地变量（包括事务）不会传递，不要在事务里使用。
+ *
+ * <h2>异常</h2>
+ * 子任务抛出的异常在调用 get 时原样抛出，同时取消其它还在执行的子任务。
+ */
+public final class ParallelScope implements AutoCloseable {
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final WebPrincipal principal = SecurityContext.getPrincipal();
+	private final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+	/**
+	 * 在新的虚拟线程里执行任务。
+	 *
+	 * @param task 任务
+	 * @return 用于获取结果的 Supplier，调用 get 时将等待任务完成
+	 */
+	public <T> Supplier<T> fork(Callable<T> task) {
+		var future = executor.submit(() -> {
+			SecurityContext.setPrincipal(principal);
+			RequestContextHolder.setRequestAttributes(attributes);
+			try {
+				return task.call();
+			} finally {
+				RequestContextHolder.resetRequestAttributes();
+				SecurityContext.setPrincipal(null);
+			}
+		});
+
+		return () -> {
+			try {
+				return future.get();
+			} catch (ExecutionException e) {
+				executor.shutdownNow();
+				throw rethrow(e.getCause());
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for subtask", e);
+			}
+		};
+	}
+
+	private static RuntimeException rethrow(Throwable cause) {
+		if (cause instanceof RuntimeException e) {
+			return e;
+		}
+		if (cause instanceof Error e) {
+			throw e;
+		}
+		return new IllegalStateException(cause);
+	}
+
+	@Override
+	public void close() {
+		executor.close();
+	}
+}
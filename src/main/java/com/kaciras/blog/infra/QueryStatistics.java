@@ -0,0 +1,85 @@
+package com.kaciras.blog.infra;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 一个请求里执行过的 SQL 语句的统计，由 QueryStatisticsFilter 创建并放入请求的属性，
+ * QueryStatisticsInterceptor 在每次执行语句后记录。
+ * <p>
+ * 语句以 Mapper 方法的 ID（如 com.kaciras.blog.api.article.KeywordDAO.select）区分，
+ * 同一个语句在一个请求里执行了很多次，通常就是在循环里查询关联数据的 N+1 问题。
+ *
+ * <h2>线程安全</h2>
+ * ParallelScope 的子任务会继承请求的属性，所以可能有多个线程同时记录，方法都加了锁。
+ */
+public final class QueryStatistics {
+
+	/** 在请求属性里的名字 */
+	public static final String ATTRIBUTE = QueryStatistics.class.getName();
+
+	private final Map<String, Integer> executions = new HashMap<>();
+
+	private int count;
+	private long nanos;
+
+	/**
+	 * 获取当前请求的统计，如果不在请求中或者没有启用则返回 null。
+	 */
+	@Nullable
+	public static QueryStatistics current() {
+		var attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return null;
+		}
+		return (QueryStatistics) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+	}
+
+	/**
+	 * 记录一次语句的执行。
+	 *
+	 * @param statement Mapper 方法的 ID
+	 * @param nanos     耗时（纳秒）
+	 */
+	public synchronized void record(String statement, long nanos) {
+		this.count++;
+		this.nanos += nanos;
+		executions.merge(statement, 1, Integer::sum);
+	}
+
+	/** 执行语句的总次数 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/** 执行语句的总耗时，包括获取连接和映射结果 */
+	public synchronized Duration getTotalTime() {
+		return Duration.ofNanos(nanos);
+	}
+
+	/**
+	 * 获取重复执行的语句。
+	 *
+	 * @param threshold 至少执行多少次才算
+	 * @return 语句 ID 到执行次数的映射
+	 */
+	public synchronized Map<String, Integer> getRepeated(int threshold) {
+		return executions.entrySet().stream()
+				.filter(e -> e.getValue() >= threshold)
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+	}
+
+	/**
+	 * 转换为 Server-Timing 头的一项，例如 {@code db;dur=3.25;desc="12 queries"}。
+	 */
+	public synchronized String toServerTiming() {
+		return String.format(Locale.ROOT, "db;dur=%.2f;desc=\"%d queries\"", nanos / 1e6, count);
+	}
+}
@@ -0,0 +1,129 @@
+package com.kaciras.blog.infra;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为每个请求创建 QueryStatistics，请求结束后检查是否有 N+1 查询。
+ * <p>
+ * 同一个语句执行了 repeatThreshold 次以上就打印警告，例如文章列表逐个查询关键词、
+ * 评论列表逐个查询用户，这类问题平时看不出来，数据多了才会变慢。
+ *
+ * <h2>Server-Timing</h2>
+ * 启用后在响应头里加上语句数和耗时，浏览器的开发者工具里可以直接看到。
+ * 响应头必须在提交之前写入，所以包装了响应，在第一次获取输出流时添加，此时控制器已经返回了。
+ *
+ * <h2>统计</h2>
+ * 请求数、语句数和发现 N+1 的次数可以通过 getter 获取。
+ */
+@Slf4j
+public final class QueryStatisticsFilter extends HttpFilter {
+
+	public static final String HEADER = "Server-Timing";
+
+	private final int repeatThreshold;
+	private final boolean serverTiming;
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder repeated = new LongAdder();
+
+	/**
+	 * @param repeatThreshold 同一个语句执行多少次算作 N+1
+	 * @param serverTiming    是否添加 Server-Timing 响应头
+	 */
+	public QueryStatisticsFilter(int repeatThreshold, boolean serverTiming) {
+		this.repeatThreshold = repeatThreshold;
+		this.serverTiming = serverTiming;
+	}
+
+	@Override
+	protected void doFilter(HttpServletRequest request,
+							HttpServletResponse response,
+							FilterChain chain)
+			throws IOException, ServletException {
+
+		var statistics = new QueryStatistics();
+		request.setAttribute(QueryStatistics.ATTRIBUTE, statistics);
+
+		if (serverTiming) {
+			var wrapper = new TimingResponse(response, statistics);
+			chain.doFilter(request, wrapper);
+			wrapper.addTimingHeader();
+		} else {
+			chain.doFilter(request, response);
+		}
+
+		requests.increment();
+		queries.add(statistics.getCount());
+
+		var suspects = statistics.getRepeated(repeatThreshold);
+		if (!suspects.isEmpty()) {
+			repeated.increment();
+			logger.warn("可能存在 N+1 查询，{} {}：{}", request.getMethod(), request.getRequestURI(), suspects);
+		}
+	}
+
+	/** 经过的请求数 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/** 这些请求执行的语句总数 */
+	public long getQueries() {
+		return queries.sum();
+	}
+
+	/** 发现 N+1 查询的请求数 */
+	public long getRepeated() {
+		return repeated.sum();
+	}
+
+	private static final class TimingResponse extends HttpServletResponseWrapper {
+
+		private final QueryStatistics statistics;
+
+		private boolean written;
+
+		private TimingResponse(HttpServletResponse response, QueryStatistics statistics) {
+			super(response);
+			this.statistics = statistics;
+		}
+
+		void addTimingHeader() {
+			if (written || isCommitted()) {
+				return;
+			}
+			written = true;
+			addHeader(HEADER, statistics.toServerTiming());
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			addTimingHeader();
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			addTimingHeader();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			addTimingHeader();
+			super.flushBuffer();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.kaciras.blog.infra;
+
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.sql.Statement;
+
+/**
+ * 记录每个请求执行的语句，结果保存在 QueryStatistics 里，不在请求中的调用不记录。
+ * <p>
+ * 拦截的是 StatementHandler 而不是 Executor，因为 resultMap 里的嵌套查询（如文章的关键词）
+ * 使用的是内部的 Executor，不经过插件。这样统计的就是真正发到数据库的语句，命中一级缓存的不算。
+ * 语句以 Mapper 方法的 ID 区分，取不到时使用 SQL 文本。
+ */
+@Intercepts({
+		@Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+		@Signature(type = StatementHandler.class, method = "queryCursor", args = {Statement.class}),
+		@Signature(type = StatementHandler.class, method = "update", args = {Statement.class}),
+		@Signature(type = StatementHandler.class, method = "batch", args = {Statement.class}),
+})
+public final class QueryStatisticsInterceptor implements Interceptor {
+
+	@Override
+	public Object intercept(Invocation invocation) throws Throwable {
+		var statistics = QueryStatistics.current();
+		if (statistics == null) {
+			return invocation.proceed();
+		}
+		var handler = (StatementHandler) invocation.getTarget();
+		var start = System.nanoTime();
+		try {
+			return invocation.proceed();
+		} finally {
+			statistics.record(getStatementId(handler), System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Mybatis 创建的是 RoutingStatementHandler，MappedStatement 在它的 delegate 里。
+	 */
+	private static String getStatementId(StatementHandler handler) {
+		if (handler instanceof RoutingStatementHandler) {
+			var meta = SystemMetaObject.forObject(handler);
+			return ((MappedStatement) meta.getValue("delegate.mappedStatement")).getId();
+		}
+		return handler.getBoundSql().getSql();
+	}
+}
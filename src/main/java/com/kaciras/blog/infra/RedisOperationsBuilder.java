@@ -1,26 +1,45 @@
 package com.kaciras.blog.infra;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.Nullable;
 
 /**
  * 鉴于 RedisTemplate 包含的太多，而实际使用时序列化方式与被存储对象高度相关，
  * 几乎每个地方都要创建自己的 RedisTemplate，所以搞了这个工具类来快速创建。
+ * <p>
+ * 对象值的序列化格式由 RedisValueFormat 决定，各处的存储统一切换。
+ * 使用 Smile 格式时，创建存储的同时会把里面以前的 JSON 值转换过来，见 {@link SmileUpgrader}。
  */
-@RequiredArgsConstructor
 public final class RedisOperationsBuilder {
 
 	private final RedisConnectionFactory factory;
 	private final ObjectMapper objectMapper;
+	private final RedisValueFormat format;
 
-	private <T> Jackson2JsonRedisSerializer<T> jsonSerializer(Class<T> type) {
-		return new Jackson2JsonRedisSerializer<>(objectMapper, type);
+	@Nullable
+	private final SmileUpgrader upgrader;
+
+	public RedisOperationsBuilder(RedisConnectionFactory factory, ObjectMapper objectMapper, RedisValueFormat format) {
+		this.factory = factory;
+		this.objectMapper = objectMapper;
+		this.format = format;
+		this.upgrader = format == RedisValueFormat.SMILE ? new SmileUpgrader(objectMapper) : null;
+	}
+
+	/**
+	 * 使用 JSON 格式序列化值，与以前的行为相同。
+	 */
+	public RedisOperationsBuilder(RedisConnectionFactory factory, ObjectMapper objectMapper) {
+		this(factory, objectMapper, RedisValueFormat.JSON);
+	}
+
+	private <T> RedisSerializer<T> valueSerializer(Class<T> type) {
+		return format.create(objectMapper, type);
 	}
 
 	private <V> RedisTemplate<String, V> newTemplate() {
@@ -31,7 +50,7 @@ public final class RedisOperationsBuilder {
 	}
 
 	/**
-	 * 创建一个 HASH 类型的存储，使用字符串作为 HASH 的键，值使用 JSON 序列化。
+	 * 创建一个 HASH 类型的存储，使用字符串作为 HASH 的键，值使用 format 指定的格式序列化。
 	 *
 	 * @param key  存储名
 	 * @param type HASH 值的类型
@@ -39,20 +58,27 @@ public final class RedisOperationsBuilder {
 	 */
 	public <V> BoundHashOperations<String, String, V> bindHash(String key, Class<V> type) {
 		var template = this.<V>newTemplate();
-		template.setHashValueSerializer(jsonSerializer(type));
+		template.setHashValueSerializer(valueSerializer(type));
 		template.afterPropertiesSet();
+		if (upgrader != null) {
+			upgrader.upgradeHash(template, key);
+		}
 		return template.boundHashOps(key);
 	}
 
 	/**
-	 * 创建一个 LIST 类型的存储，其中的元素使用 JSON 序列化。
+	 * 创建一个 LIST 类型的存储，其中的元素使用 format 指定的格式序列化。
 	 *
 	 * @param key  存储名
 	 * @param type 元素的类型
 	 * @param <V>  元素的类型
 	 */
 	public <V> BoundListOperations<String, V> bindList(String key, Class<V> type) {
-		return bindList(key, jsonSerializer(type));
+		var operations = bindList(key, valueSerializer(type));
+		if (upgrader != null) {
+			upgrader.upgradeList(operations.getOperations(), key);
+		}
+		return operations;
 	}
 
 	/**
@@ -0,0 +1,36 @@
+package com.kaciras.blog.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * RedisOperationsBuilder 创建的存储里，对象值的序列化格式。
+ */
+public enum RedisValueFormat {
+
+	/** 与以前一样的 JSON，便于在 redis-cli 里直接查看 */
+	JSON {
+		@Override
+		public <T> RedisSerializer<T> create(ObjectMapper objectMapper, Class<T> type) {
+			return new Jackson2JsonRedisSerializer<>(objectMapper, type);
+		}
+	},
+
+	/** 二进制的 Smile 格式，更小也更快，能读取以前保存的 JSON，详见 SmileRedisSerializer */
+	SMILE {
+		@Override
+		public <T> RedisSerializer<T> create(ObjectMapper objectMapper, Class<T> type) {
+			return new SmileRedisSerializer<>(objectMapper, type);
+		}
+	};
+
+	/**
+	 * 创建该格式的序列化器。
+	 *
+	 * @param objectMapper 应用的 ObjectMapper，其配置和注册的模块对两种格式都有效
+	 * @param type         值的类型
+	 * @param <T>          值的类型
+	 */
+	public abstract <T> RedisSerializer<T> create(ObjectMapper objectMapper, Class<T> type);
+}
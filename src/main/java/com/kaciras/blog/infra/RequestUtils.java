@@ -1,5 +1,6 @@
 package com.kaciras.blog.infra;
 
+import com.kaciras.blog.infra.codec.CodecUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.lang.NonNull;
 
@@ -46,15 +47,59 @@ public final class RequestUtils {
 	 */
 	@NonNull
 	public static InetAddress addressFrom(HttpServletRequest request) {
-		var address = request.getRemoteAddr();
 		try {
-			return InetAddress.getByName(address);
+			return InetAddress.getByAddress(addressBytesFrom(request));
 		} catch (UnknownHostException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
+	/**
+	 * 获取HttpServletRequest的远程地址，结果是 16 字节的数组，格式见 {@link CodecUtils#toIPv6Bytes}。
+	 * <p>
+	 * 远程地址总是 IP 字面量，所以这里直接解析不走 InetAddress.getByName，
+	 * 在过滤器之类每个请求都要调用的地方应该用这个方法。
+	 *
+	 * @param request 请求
+	 * @return IP 地址的字节数组，不会为 null
+	 * @throws UncheckedIOException 如果远程地址不是合法的 IP
+	 */
+	@NonNull
+	public static byte[] addressBytesFrom(HttpServletRequest request) {
+		var address = request.getRemoteAddr();
+		var bytes = CodecUtils.parseIPv6Bytes(address);
+		if (bytes == null) {
+			throw new UncheckedIOException(new UnknownHostException(address));
+		}
+		return bytes;
+	}
+
 	public static boolean isLocalNetwork(InetAddress address) {
 		return address.isLoopbackAddress() || address.isSiteLocalAddress();
 	}
+
+	/**
+	 * 与 isLocalNetwork(InetAddress) 相同，但参数是 16 字节的地址，判断规则也跟 InetAddress 一致。
+	 *
+	 * @param ipv6 16 字节的地址
+	 * @return 如果是本机或局域网地址则为 true
+	 */
+	public static boolean isLocalNetwork(byte[] ipv6) {
+		if (CodecUtils.isIPv4Mapped(ipv6)) {
+			var b0 = ipv6[12] & 0xFF;
+			var b1 = ipv6[13] & 0xFF;
+			return b0 == 127 || b0 == 10
+					|| (b0 == 172 && (b1 & 0xF0) == 16)
+					|| (b0 == 192 && b1 == 168);
+		}
+
+		// fec0::/10 是已废弃的 IPv6 站点本地地址，InetAddress.isSiteLocalAddress 仍然认它
+		if ((ipv6[0] & 0xFF) == 0xFE && (ipv6[1] & 0xC0) == 0xC0) {
+			return true;
+		}
+		for (var i = 0; i < 15; i++) {
+			if (ipv6[i] != 0) return false;
+		}
+		return ipv6[15] == 1;
+	}
 }
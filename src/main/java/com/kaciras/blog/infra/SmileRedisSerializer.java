@@ -0,0 +1,71 @@
+package com.kaciras.blog.infra;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+
+/**
+ * 使用 Smile（二进制的 JSON）序列化值，数据模型与 JSON 完全相同，所以现有的类不需要任何修改。
+ * <p>
+ * Smile 的数据以 ":)\n" 开头，而 JSON 不可能以冒号开头，读取时据此区分两种格式，
+ * 以前存的 JSON 照常读取，不需要停机迁移。RedisOperationsBuilder 创建存储时还会用 SmileUpgrader
+ * 把里面的 JSON 一次性转换过来，很少修改的值也不会一直留在 JSON 格式。
+ * 反过来切回 JSON 格式时则读不了 Smile，要先清掉相关的键。
+ *
+ * @param <T> 值的类型
+ */
+public final class SmileRedisSerializer<T> implements RedisSerializer<T> {
+
+	private static final byte[] HEADER = {':', ')', '\n'};
+
+	private final ObjectMapper smileMapper;
+	private final ObjectMapper jsonMapper;
+	private final JavaType type;
+
+	public SmileRedisSerializer(ObjectMapper objectMapper, Class<T> type) {
+		this.smileMapper = objectMapper.copyWith(new SmileFactory());
+		this.jsonMapper = objectMapper;
+		this.type = objectMapper.constructType(type);
+	}
+
+	/**
+	 * 判断数据是否为 Smile 格式。
+	 */
+	static boolean isSmile(byte[] bytes) {
+		return bytes.length >= HEADER.length
+				&& bytes[0] == HEADER[0]
+				&& bytes[1] == HEADER[1]
+				&& bytes[2] == HEADER[2];
+	}
+
+	@Override
+	public byte[] serialize(@Nullable T value) {
+		if (value == null) {
+			return new byte[0];
+		}
+		try {
+			return smileMapper.writeValueAsBytes(value);
+		} catch (IOException e) {
+			throw new SerializationException("无法序列化为 Smile", e);
+		}
+	}
+
+	@Nullable
+	@Override
+	public T deserialize(@Nullable byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		var mapper = isSmile(bytes) ? smileMapper : jsonMapper;
+		try {
+			return mapper.readValue(bytes, type);
+		} catch (IOException e) {
+			throw new SerializationException("无法反序列化 Redis 中的值", e);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.kaciras.blog.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把存储里以前保存的 JSON 值转换为 Smile，由 RedisOperationsBuilder 在创建存储时调用一次。
+ * <p>
+ * SmileRedisSerializer 虽然能读 JSON，但值只有再次写入才会变成 Smile，很少修改的数据就一直是 JSON。
+ * 转换只涉及数据模型，不需要知道值的类型，把 JSON 解析成树再写成 Smile 即可。
+ *
+ * <h2>并发</h2>
+ * 每个值用脚本比较后再替换，其它节点同时写入了新值的话就跳过，不会覆盖。
+ * 已经是 Smile 的值也会跳过，所以每次启动都执行也没关系，没转完的下次接着转。
+ */
+@Slf4j
+final class SmileUpgrader {
+
+	private static final DefaultRedisScript<Long> REPLACE_IF_EQUALS;
+
+	private static final byte[] HASH = "hash".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LIST = "list".getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		REPLACE_IF_EQUALS = new DefaultRedisScript<>();
+		REPLACE_IF_EQUALS.setResultType(Long.class);
+		REPLACE_IF_EQUALS.setLocation(new ClassPathResource("ReplaceIfEquals.lua"));
+	}
+
+	private final ObjectMapper jsonMapper;
+	private final ObjectMapper smileMapper;
+
+	SmileUpgrader(ObjectMapper objectMapper) {
+		this.jsonMapper = objectMapper;
+		this.smileMapper = objectMapper.copyWith(new SmileFactory());
+	}
+
+	/**
+	 * 转换 HASH 里所有的值。
+	 *
+	 * @param template 存储使用的 RedisOperations，键必须是字符串
+	 * @param key      HASH 的键
+	 */
+	public void upgradeHash(RedisOperations<String, ?> template, String key) {
+		var raw = key.getBytes(StandardCharsets.UTF_8);
+		try {
+			var entries = template.execute((RedisCallback<Map<byte[], byte[]>>) c -> c.hashCommands().hGetAll(raw));
+			var count = 0;
+			for (var entry : entries.entrySet()) {
+				count += replace(template, key, HASH, entry.getKey(), entry.getValue());
+			}
+			log(key, count);
+		} catch (RuntimeException e) {
+			logger.warn("转换 {} 为 Smile 格式失败，下次启动再试", key, e);
+		}
+	}
+
+	/**
+	 * 转换 LIST 里所有的元素。
+	 *
+	 * @param template 存储使用的 RedisOperations，键必须是字符串
+	 * @param key      LIST 的键
+	 */
+	public void upgradeList(RedisOperations<String, ?> template, String key) {
+		var raw = key.getBytes(StandardCharsets.UTF_8);
+		try {
+			var values = template.execute((RedisCallback<List<byte[]>>) c -> c.listCommands().lRange(raw, 0, -1));
+			var count = 0;
+			for (var i = 0; i < values.size(); i++) {
+				var index = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+				count += replace(template, key, LIST, index, values.get(i));
+			}
+			log(key, count);
+		} catch (RuntimeException e) {
+			logger.warn("转换 {} 为 Smile 格式失败，下次启动再试", key, e);
+		}
+	}
+
+	private int replace(RedisOperations<String, ?> template, String key, byte[] type, byte[] field, byte[] value) {
+		if (SmileRedisSerializer.isSmile(value)) {
+			return 0;
+		}
+		byte[] smile;
+		try {
+			smile = smileMapper.writeValueAsBytes(jsonMapper.readTree(value));
+		} catch (IOException e) {
+			logger.warn("{} 里有无法解析的值，保持原样", key);
+			return 0;
+		}
+		var replaced = template.execute(REPLACE_IF_EQUALS,
+				(RedisSerializer<?>) null, (RedisSerializer<Long>) null, List.of(key), type, field, value, smile);
+		return replaced != null && replaced == 1 ? 1 : 0;
+	}
+
+	private static void log(String key, int count) {
+		if (count > 0) {
+			logger.info("已将 {} 里的 {} 个值转换为 Smile 格式", key, count);
+		}
+	}
+}
@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @ConfigurationProperties("app.authorization")
 @Getter
 @Setter
@@ -11,4 +13,13 @@ public final class AuthorizationProperties {
 
 	/** 所有用户的身份都设为管理员，在调试时有用. */
 	private boolean adminPrincipal;
+
+	/**
+	 * 在本地缓存会话中的用户身份多长时间，同时也是会话刷新过期时间的最小间隔，为 0 则不缓存。
+	 * 登出和删除会话时缓存会立即失效，但会话自然过期后身份最多还能多保持这么久。
+	 */
+	private Duration sessionCache = Duration.ofMinutes(1);
+
+	/** 最多缓存多少个会话的身份 */
+	private long sessionCacheSize = 100_000;
 }
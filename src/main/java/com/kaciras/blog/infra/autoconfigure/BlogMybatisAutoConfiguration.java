@@ -1,14 +1,24 @@
 package com.kaciras.blog.infra.autoconfigure;
 
+import com.kaciras.blog.infra.DatabaseAdmission;
+import com.kaciras.blog.infra.DatabaseAdmissionAspect;
 import com.kaciras.blog.infra.MybatisMapperAspect;
+import com.kaciras.blog.infra.QueryStatisticsFilter;
+import com.kaciras.blog.infra.QueryStatisticsInterceptor;
 import com.kaciras.blog.infra.codec.ImageReferenceTypeHandler;
 import com.kaciras.blog.infra.codec.InetAddressTypeHandler;
+import com.zaxxer.hikari.HikariDataSource;
 import org.mybatis.spring.boot.autoconfigure.ConfigurationCustomizer;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 
+import javax.sql.DataSource;
+
 @ConditionalOnClass(ConfigurationCustomizer.class)
+@EnableConfigurationProperties({DatabaseAdmissionProperties.class, QueryStatisticsProperties.class})
 @AutoConfiguration
 public class BlogMybatisAutoConfiguration {
 
@@ -25,4 +35,43 @@ public class BlogMybatisAutoConfiguration {
 			registry.register(InetAddressTypeHandler.class);
 		};
 	}
+
+	@ConditionalOnProperty(prefix = "app.db-admission", name = "enabled", havingValue = "true")
+	@Bean
+	public DatabaseAdmission databaseAdmission(DatabaseAdmissionProperties properties, DataSource dataSource) {
+		var permits = properties.permits;
+		if (permits == 0) {
+			if (!(dataSource instanceof HikariDataSource hikari)) {
+				throw new IllegalStateException("无法获取连接池的大小，请设置 app.db-admission.permits");
+			}
+			permits = hikari.getMaximumPoolSize();
+		}
+
+		var admission = new DatabaseAdmission(permits);
+		if (properties.lanes != null) {
+			properties.lanes.forEach((lane, c) -> admission.configure(lane, c.maxQueue, c.maxWait));
+		}
+		return admission;
+	}
+
+	@ConditionalOnProperty(prefix = "app.db-admission", name = "enabled", havingValue = "true")
+	@Bean
+	public DatabaseAdmissionAspect databaseAdmissionAspect(DatabaseAdmission admission) {
+		return new DatabaseAdmissionAspect(admission);
+	}
+
+	/**
+	 * Interceptor 类型的 Bean 会被 MybatisAutoConfiguration 自动添加到 Mybatis 的配置里。
+	 */
+	@ConditionalOnProperty(prefix = "app.query-stats", name = "enabled", havingValue = "true")
+	@Bean
+	public QueryStatisticsInterceptor queryStatisticsInterceptor() {
+		return new QueryStatisticsInterceptor();
+	}
+
+	@ConditionalOnProperty(prefix = "app.query-stats", name = "enabled", havingValue = "true")
+	@Bean
+	public QueryStatisticsFilter queryStatisticsFilter(QueryStatisticsProperties properties) {
+		return new QueryStatisticsFilter(properties.repeatThreshold, properties.serverTiming);
+	}
 }
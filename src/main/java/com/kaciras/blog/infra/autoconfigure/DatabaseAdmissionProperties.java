@@ -0,0 +1,32 @@
+package com.kaciras.blog.infra.autoconfigure;
+
+import com.kaciras.blog.infra.DatabaseAdmission;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties("app.db-admission")
+@RequiredArgsConstructor
+public final class DatabaseAdmissionProperties {
+
+	/** 是否启用数据库的准入控制 */
+	public final boolean enabled;
+
+	/** 最多同时使用数据库的调用数，为 0 则使用连接池的大小 */
+	public final int permits;
+
+	/** 每类调用的排队限制，没有配置的类别不限队列长度，最长等待 30 秒 */
+	public final Map<DatabaseAdmission.Lane, LaneConfig> lanes;
+
+	@RequiredArgsConstructor
+	public static final class LaneConfig {
+
+		/** 最多有多少个调用在等待 */
+		public final int maxQueue;
+
+		/** 最长等待时间 */
+		public final Duration maxWait;
+	}
+}
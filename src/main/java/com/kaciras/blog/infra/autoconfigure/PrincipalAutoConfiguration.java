@@ -4,7 +4,9 @@ import com.kaciras.blog.infra.principal.AuthorizeAspect;
 import com.kaciras.blog.infra.principal.PrincipalFilter;
 import com.kaciras.blog.infra.principal.RequirePermission;
 import com.kaciras.blog.infra.principal.SecurityContextFilter;
+import com.kaciras.blog.infra.principal.SessionPrincipalCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -19,9 +21,25 @@ public class PrincipalAutoConfiguration {
 
 	private final AuthorizationProperties authProps;
 
+	/**
+	 * 即使禁用了缓存也注册该 bean，这样使用方在让缓存失效时就不用判断它是否存在。
+	 */
+	@Bean
+	public SessionPrincipalCache sessionPrincipalCache() {
+		return new SessionPrincipalCache(authProps.getSessionCache(), authProps.getSessionCacheSize());
+	}
+
 	@Bean
-	public PrincipalFilter servletPrincipalFilter() {
-		return new PrincipalFilter(authProps.isAdminPrincipal());
+	public PrincipalFilter servletPrincipalFilter(
+			SessionPrincipalCache cache,
+			@Value("${server.servlet.session.cookie.name:SESSION}") String cookieName
+	) {
+		var filter = new PrincipalFilter(authProps.isAdminPrincipal());
+		if (authProps.getSessionCache().isPositive()) {
+			filter.setCache(cache);
+			filter.setCookieName(cookieName);
+		}
+		return filter;
 	}
 
 	/**
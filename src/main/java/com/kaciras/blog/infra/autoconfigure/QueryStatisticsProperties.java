@@ -0,0 +1,18 @@
+package com.kaciras.blog.infra.autoconfigure;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("app.query-stats")
+@RequiredArgsConstructor
+public final class QueryStatisticsProperties {
+
+	/** 是否统计每个请求执行的 SQL 语句 */
+	public final boolean enabled;
+
+	/** 同一个语句在一个请求里执行多少次算作 N+1 查询 */
+	public final int repeatThreshold;
+
+	/** 是否在响应头 Server-Timing 里输出语句数和耗时 */
+	public final boolean serverTiming;
+}
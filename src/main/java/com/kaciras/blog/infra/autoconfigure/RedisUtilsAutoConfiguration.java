@@ -2,16 +2,23 @@ package com.kaciras.blog.infra.autoconfigure;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaciras.blog.infra.RedisOperationsBuilder;
+import com.kaciras.blog.infra.RedisValueFormat;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.util.Objects;
+
 @AutoConfiguration(after = {JacksonAutoConfiguration.class, RedisAutoConfiguration.class})
+@EnableConfigurationProperties(RedisUtilsProperties.class)
 public class RedisUtilsAutoConfiguration {
 
 	@Bean
@@ -26,7 +33,21 @@ public class RedisUtilsAutoConfiguration {
 
 	@ConditionalOnClass({ObjectMapper.class, RedisConnectionFactory.class})
 	@Bean
-	RedisOperationsBuilder redisOperationsBuilder(ObjectMapper mapper, RedisConnectionFactory factory) {
-		return new RedisOperationsBuilder(factory, mapper);
+	RedisOperationsBuilder redisOperationsBuilder(ObjectMapper mapper,
+												  RedisConnectionFactory factory,
+												  RedisUtilsProperties properties) {
+		var format = Objects.requireNonNullElse(properties.valueFormat, RedisValueFormat.JSON);
+		return new RedisOperationsBuilder(factory, mapper, format);
+	}
+
+	/**
+	 * 发布/订阅共用的监听容器，多个地方订阅也只占用一个连接。
+	 */
+	@ConditionalOnMissingBean
+	@Bean
+	RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory) {
+		var container = new RedisMessageListenerContainer();
+		container.setConnectionFactory(factory);
+		return container;
 	}
 }
@@ -0,0 +1,15 @@
+package com.kaciras.blog.infra.autoconfigure;
+
+import com.kaciras.blog.infra.RedisValueFormat;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("app.redis")
+@RequiredArgsConstructor
+public final class RedisUtilsProperties {
+
+	/**
+	 * RedisOperationsBuilder 创建的存储使用的序列化格式，为 null 则使用 JSON。
+	 */
+	public final RedisValueFormat valueFormat;
+}
@@ -1,7 +1,10 @@
 package com.kaciras.blog.infra.codec;
 
+import org.springframework.lang.Nullable;
+
 import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.util.Arrays;
 
 public final class CodecUtils {
 
@@ -113,6 +116,176 @@ public final class CodecUtils {
 		return -1;
 	}
 
+	/**
+	 * 把两个字节数组拼接成一个新的数组。
+	 *
+	 * @param head 在前面的数组
+	 * @param tail 在后面的数组
+	 * @return 拼接后的新数组
+	 */
+	public static byte[] concatBytes(byte[] head, byte[] tail) {
+		var result = new byte[head.length + tail.length];
+		System.arraycopy(head, 0, result, 0, head.length);
+		System.arraycopy(tail, 0, result, head.length, tail.length);
+		return result;
+	}
+
+	/**
+	 * 解析 IP 地址的字面量，返回与 toIPv6Bytes 相同格式的 16 字节数组，IPv4 地址使用 IPv4-mapped 格式。
+	 * <p>
+	 * 跟 InetAddress.getByName 不同，该方法只处理字面量，绝不会访问 DNS，
+	 * 除了结果数组外也不创建其它对象，适合在每个请求都要执行的地方使用。
+	 * <p>
+	 * 支持方括号包裹的 IPv6 地址，以及 IPv6 的 Zone ID（会被忽略）。
+	 *
+	 * @param text 地址字符串
+	 * @return 字节数组，如果不是合法的 IP 地址则返回 null
+	 * @see com.kaciras.blog.infra.IPAddressParsePerf
+	 */
+	@Nullable
+	public static byte[] parseIPv6Bytes(String text) {
+		var start = 0;
+		var end = text.length();
+
+		if (end > 1 && text.charAt(0) == '[' && text.charAt(end - 1) == ']') {
+			start = 1;
+			end -= 1;
+		}
+
+		var isIPv6 = false;
+		for (var i = start; i < end; i++) {
+			var c = text.charAt(i);
+			if (c == '%') {
+				end = i;
+				break;
+			}
+			isIPv6 |= c == ':';
+		}
+		if (start == end) {
+			return null;
+		}
+
+		var bytes = new byte[16];
+		if (isIPv6) {
+			return parseIPv6(text, start, end, bytes) ? bytes : null;
+		}
+		bytes[10] = bytes[11] = (byte) 0xFF;
+		return parseIPv4(text, start, end, bytes, 12) ? bytes : null;
+	}
+
+	/**
+	 * 解析点分十进制的 IPv4 地址，每段最多 3 位数字，不支持 inet_aton 里的那些奇怪的简写。
+	 */
+	private static boolean parseIPv4(String text, int start, int end, byte[] out, int offset) {
+		int octets = 0, value = 0, digits = 0;
+
+		for (var i = start; i < end; i++) {
+			var c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				if (++digits > 3 || value > 255) {
+					return false;
+				}
+			} else if (c == '.' && digits > 0 && octets < 3) {
+				out[offset + octets++] = (byte) value;
+				value = digits = 0;
+			} else {
+				return false;
+			}
+		}
+
+		if (digits == 0 || octets != 3) {
+			return false;
+		}
+		out[offset + 3] = (byte) value;
+		return true;
+	}
+
+	/**
+	 * 解析 IPv6 地址，算法跟 JDK 里的 sun.net.util.IPAddressUtil#textToNumericFormatV6 一样。
+	 */
+	private static boolean parseIPv6(String text, int start, int end, byte[] out) {
+		var i = start;
+		var j = 0;
+		var gap = -1;
+		var value = 0;
+		var digits = 0;
+		var groupStart = i;
+
+		// 开头的 :: 需要特殊处理，跳过第一个冒号
+		if (text.charAt(i) == ':' && (++i == end || text.charAt(i) != ':')) {
+			return false;
+		}
+
+		while (i < end) {
+			var c = text.charAt(i++);
+			var digit = Character.digit(c, 16);
+
+			if (digit != -1) {
+				value = value << 4 | digit;
+				if (++digits > 4) {
+					return false;
+				}
+			} else if (c == ':') {
+				groupStart = i;
+				if (digits == 0) {
+					if (gap != -1) {
+						return false;
+					}
+					gap = j;
+					continue;
+				}
+				if (i == end || j + 2 > 16) {
+					return false;
+				}
+				out[j++] = (byte) (value >> 8);
+				out[j++] = (byte) value;
+				value = digits = 0;
+			} else if (c == '.' && j + 4 <= 16) {
+				if (!parseIPv4(text, groupStart, end, out, j)) {
+					return false;
+				}
+				j += 4;
+				digits = 0;
+				break;
+			} else {
+				return false;
+			}
+		}
+
+		if (digits > 0) {
+			if (j + 2 > 16) {
+				return false;
+			}
+			out[j++] = (byte) (value >> 8);
+			out[j++] = (byte) value;
+		}
+
+		if (gap != -1) {
+			if (j == 16) {
+				return false;
+			}
+			var n = j - gap;
+			System.arraycopy(out, gap, out, 16 - n, n);
+			Arrays.fill(out, gap, 16 - n, (byte) 0);
+			j = 16;
+		}
+		return j == 16;
+	}
+
+	/**
+	 * 判断 16 字节的地址是否是 IPv4-mapped 地址。
+	 *
+	 * @param ipv6 16 字节的地址
+	 * @return 如果是则为 true
+	 */
+	public static boolean isIPv4Mapped(byte[] ipv6) {
+		for (var i = 0; i < 10; i++) {
+			if (ipv6[i] != 0) return false;
+		}
+		return ipv6[10] == (byte) 0xFF && ipv6[11] == (byte) 0xFF;
+	}
+
 	/**
 	 * 把 InetAddress 转换为 16 字节的数组
 	 *
@@ -1,15 +1,42 @@
 package com.kaciras.blog.infra.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+
 public final class RequestFrequencyException extends ResponseStatusException {
 
+	@Nullable
+	private final Duration retryAfter;
+
 	public RequestFrequencyException() {
 		super(HttpStatus.TOO_MANY_REQUESTS);
+		this.retryAfter = null;
 	}
 
 	public RequestFrequencyException(String detail) {
+		this(detail, null);
+	}
+
+	/**
+	 * @param detail     错误信息
+	 * @param retryAfter 多久之后可以重试，会设置到 Retry-After 响应头，不足一秒按一秒算
+	 */
+	public RequestFrequencyException(String detail, @Nullable Duration retryAfter) {
 		super(HttpStatus.TOO_MANY_REQUESTS, detail, null, null, null);
+		this.retryAfter = retryAfter;
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		if (retryAfter == null) {
+			return super.getHeaders();
+		}
+		var headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, retryAfter.toSeconds())));
+		return headers;
 	}
 }
@@ -0,0 +1,15 @@
+package com.kaciras.blog.infra.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public final class ServiceUnavailableException extends ResponseStatusException {
+
+	public ServiceUnavailableException() {
+		super(HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
+	public ServiceUnavailableException(String detail) {
+		super(HttpStatus.SERVICE_UNAVAILABLE, detail, null, null, null);
+	}
+}
@@ -6,16 +6,27 @@ import jakarta.servlet.http.HttpFilter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.annotation.Order;
+import org.springframework.lang.Nullable;
+import org.springframework.web.util.WebUtils;
 
 import java.io.IOException;
 import java.security.Principal;
 import java.util.Optional;
 
 /**
+ * <h2>会话缓存</h2>
+ * 设置了 cache 后，将直接从 Cookie 里取会话 ID 去查缓存，命中则不加载会话，
+ * 避免每个请求都去 Redis 读一次会话再写回访问时间，详见 {@link SessionPrincipalCache}。
+ * <p>
+ * 只有 Cookie 对应的会话确实存在时才放入缓存。Cookie 是客户端随便填的，
+ * 如果查不到会话也缓存，大量随机的 Cookie 就能把真实会话的缓存挤出去。
+ * 会话 ID 还必须与 Cookie 相同，本次请求新建的会话不能记在旧 Cookie 名下。
+ *
  * <h2>关于 CSRF 的问题</h2>
  * 现代的浏览器都支持 SameSite Cookie，无需再自己设计 CSRF token 机制。
  * 不支持 SameSite 一律视为自己的浏览器不安全，本项目不管。
@@ -28,6 +39,12 @@ public final class PrincipalFilter extends HttpFilter {
 
 	private final boolean debugAdmin;
 
+	/** 会话 ID 到身份的缓存，为 null 则每次都读取会话 */
+	private SessionPrincipalCache cache;
+
+	/** 保存会话 ID 的 Cookie 名，需要跟 Spring Session 的一致 */
+	private String cookieName = "SESSION";
+
 	@Override
 	protected void doFilter(HttpServletRequest request,
 							HttpServletResponse response,
@@ -48,10 +65,33 @@ public final class PrincipalFilter extends HttpFilter {
 				return new WebPrincipal(WebPrincipal.ADMIN_ID);
 			}
 
+			// 没有 Cookie 时会话要么不存在，要么是本次请求新建的，读取它不需要访问 Redis。
+			var cookie = cache == null ? null : WebUtils.getCookie(this, cookieName);
+			if (cookie == null) {
+				return loadFromSession();
+			}
+
+			var sessionId = cookie.getValue();
+			var principal = cache.get(sessionId);
+			if (principal == null) {
+				var session = getSession(false);
+				principal = principalOf(session);
+				if (session != null && sessionId.equals(session.getId())) {
+					cache.put(sessionId, principal);
+				}
+			}
+			return principal;
+		}
+
+		private WebPrincipal loadFromSession() {
 			// 会话不一定存在，比如内部调用，如果没有就创建则会产生大量无用的会话
-			// TODO: UserId 这一信息属于 infra 层吗？
+			return principalOf(getSession(false));
+		}
+
+		// TODO: UserId 这一信息属于 infra 层吗？
+		private WebPrincipal principalOf(@Nullable HttpSession session) {
 			return Optional
-					.ofNullable(getSession(false))
+					.ofNullable(session)
 					.map(s -> s.getAttribute("UserId"))
 					.map(id -> new WebPrincipal((Integer) id))
 					.orElse(WebPrincipal.ANONYMOUS);
@@ -0,0 +1,53 @@
+package com.kaciras.blog.infra.principal;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.time.Duration;
+
+/**
+ * 会话 ID 到用户身份的本地缓存，给 PrincipalFilter 用。
+ * <p>
+ * 使用 Spring Session Redis 时，每次 getSession 都要从 Redis 读取整个会话，
+ * 请求结束后还要写回最后访问时间，而大多数请求只需要其中的 UserId。
+ * 命中缓存时完全不碰会话，所以也顺带合并了刷新过期时间的写入：
+ * 同一个会话在每个缓存周期内最多被加载并刷新一次。
+ *
+ * <h2>失效</h2>
+ * 登出、删除会话等操作之后必须调用 invalidate，否则在缓存过期前旧的身份仍然有效。
+ * 多节点的情况需要由调用方负责通知其它节点。
+ */
+public final class SessionPrincipalCache {
+
+	private final Cache<String, WebPrincipal> cache;
+
+	/**
+	 * 创建缓存，过期时间同时也是会话刷新过期时间的最小间隔，不能太长。
+	 *
+	 * @param expire  缓存的有效期
+	 * @param maxSize 最多缓存多少个会话
+	 */
+	public SessionPrincipalCache(Duration expire, long maxSize) {
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(expire)
+				.recordStats()
+				.build();
+	}
+
+	public WebPrincipal get(String sessionId) {
+		return cache.getIfPresent(sessionId);
+	}
+
+	public void put(String sessionId, WebPrincipal principal) {
+		cache.put(sessionId, principal);
+	}
+
+	public void invalidate(String sessionId) {
+		cache.invalidate(sessionId);
+	}
+
+	public double getHitRate() {
+		return cache.stats().hitRate();
+	}
+}
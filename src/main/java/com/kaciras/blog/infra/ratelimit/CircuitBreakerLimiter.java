@@ -0,0 +1,153 @@
+package com.kaciras.blog.infra.ratelimit;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RateLimiter 的装饰类，给依赖外部存储（Redis）的限流器加上熔断，防止限流器本身变成故障点。
+ * <p>
+ * 内层限流器连续出错或者响应过慢达到一定次数后熔断，之后的请求改用本地的降级限流器；
+ * 熔断一段时间后放一个请求去探测内层，成功则恢复，失败则继续熔断。
+ *
+ * <h2>超时</h2>
+ * 该类只能在调用返回后才知道耗时，无法打断正在阻塞的调用，所以 Redis 客户端的命令超时不能太长，
+ * 否则在熔断之前的那几个请求仍然要等很久。
+ *
+ * <h2>统计</h2>
+ * 熔断和恢复都会打日志，次数可以通过 getter 获取。
+ */
+@Slf4j
+public final class CircuitBreakerLimiter implements RateLimiter {
+
+	private final String name;
+	private final RateLimiter inner;
+	private final RateLimiter fallback;
+	private final Clock clock;
+
+	/** 连续失败多少次后熔断 */
+	@Setter
+	private int failureThreshold = 5;
+
+	/** 调用内层的耗时超过该值视为一次失败 */
+	@Setter
+	private Duration slowCallThreshold = Duration.ofMillis(500);
+
+	/** 熔断持续的时间，过了这段时间才会探测内层是否恢复 */
+	@Setter
+	private Duration openDuration = Duration.ofSeconds(30);
+
+	private final AtomicInteger failures = new AtomicInteger();
+	private final AtomicBoolean probing = new AtomicBoolean();
+
+	private final LongAdder tripCount = new LongAdder();
+	private final LongAdder recoveryCount = new LongAdder();
+	private final LongAdder fallbackCount = new LongAdder();
+
+	private volatile boolean open;
+	private volatile long openedAt;
+
+	/**
+	 * 创建 CircuitBreakerLimiter 的新实例。
+	 *
+	 * @param name     名字，仅用于日志
+	 * @param inner    被保护的限流器
+	 * @param fallback 熔断期间使用的限流器，不能依赖跟内层一样的外部存储
+	 * @param clock    用于计时，可以Mock该参数以便测试
+	 */
+	public CircuitBreakerLimiter(String name, RateLimiter inner, RateLimiter fallback, Clock clock) {
+		this.name = name;
+		this.inner = inner;
+		this.fallback = fallback;
+		this.clock = clock;
+	}
+
+	@Override
+	public long acquire(@NonNull byte[] id, int permits) {
+		if (!open) {
+			return callInner(id, permits);
+		}
+		var elapsed = clock.millis() - openedAt;
+		if (elapsed < openDuration.toMillis() || !probing.compareAndSet(false, true)) {
+			fallbackCount.increment();
+			return fallback.acquire(id, permits);
+		}
+		try {
+			return callInner(id, permits);
+		} finally {
+			probing.set(false);
+		}
+	}
+
+	/*
+	 * 出异常时不再往外抛，而是交给降级限流器，宁可放宽限制也不能让请求全部失败。
+	 */
+	private long callInner(byte[] id, int permits) {
+		var start = clock.millis();
+		try {
+			var result = inner.acquire(id, permits);
+			if (clock.millis() - start > slowCallThreshold.toMillis()) {
+				onFailure(null);
+			} else {
+				onSuccess();
+			}
+			return result;
+		} catch (RuntimeException e) {
+			onFailure(e);
+			fallbackCount.increment();
+			return fallback.acquire(id, permits);
+		}
+	}
+
+	private void onSuccess() {
+		failures.set(0);
+		if (open) {
+			open = false;
+			recoveryCount.increment();
+			logger.info("限流器 {} 已恢复，熔断期间降级处理了 {} 次", name, fallbackCount.sum());
+		}
+	}
+
+	private void onFailure(Exception cause) {
+		if (open) {
+			openedAt = clock.millis(); // 探测失败，继续熔断
+		} else if (failures.incrementAndGet() >= failureThreshold) {
+			trip(cause);
+		}
+	}
+
+	private synchronized void trip(Exception cause) {
+		if (open) {
+			return;
+		}
+		openedAt = clock.millis();
+		open = true;
+		tripCount.increment();
+		logger.warn("限流器 {} 连续 {} 次失败或超时，熔断 {}", name, failures.get(), openDuration, cause);
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	/** 熔断的次数 */
+	public long getTripCount() {
+		return tripCount.sum();
+	}
+
+	/** 从熔断中恢复的次数 */
+	public long getRecoveryCount() {
+		return recoveryCount.sum();
+	}
+
+	/** 使用降级限流器处理的请求数 */
+	public long getFallbackCount() {
+		return fallbackCount.sum();
+	}
+}
@@ -0,0 +1,132 @@
+package com.kaciras.blog.infra.ratelimit;
+
+import lombok.Setter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 根据响应时间自动调整的并发限制，算法参考了 Netflix concurrency-limits 里的 Gradient2。
+ * <p>
+ * 分别用快、慢两个指数移动平均来记录最近和长期的响应时间，两者的比值（梯度）小于 1 说明开始排队了，
+ * 此时按比例缩小并发上限；反之则在当前上限的基础上加一点余量，让上限慢慢增长。
+ * <p>
+ * 跟 RateLimiter 不同，这里限制的是同时处理的请求数而不是速率，它保护的是后端（数据库等）的处理能力，
+ * 当后端变慢时请求数会自动减少，而不是无限地堆积直到超时。
+ *
+ * <h2>优先级</h2>
+ * 普通的请求只能用上限的一部分（见 reserveRatio），剩下的留给重要的请求，
+ * 这样在过载时先拒绝的是普通请求。
+ *
+ * <h2>用法</h2>
+ * 调用 tryAcquire 成功后必须调用 release，一般写在 finally 里。
+ */
+public final class GradientConcurrencyLimiter {
+
+	private final AtomicInteger inflight = new AtomicInteger();
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private volatile double limit;
+
+	private double shortRtt;
+	private double longRtt;
+
+	/** 给重要请求预留的比例，普通请求最多只能用 (1 - reserveRatio) * limit */
+	@Setter
+	private double reserveRatio = 0.2;
+
+	/** 允许响应时间超出长期平均的倍数，在此范围内不减小上限 */
+	@Setter
+	private double tolerance = 1.5;
+
+	/** 每次调整时新值所占的权重，越大调整越快 */
+	@Setter
+	private double smoothing = 0.2;
+
+	/**
+	 * 创建 GradientConcurrencyLimiter 的新实例。
+	 *
+	 * @param initialLimit 初始的并发上限
+	 * @param minLimit     并发上限的最小值，必须大于0
+	 * @param maxLimit     并发上限的最大值
+	 * @throws IllegalArgumentException 如果参数的取值范围错误
+	 */
+	public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		if (minLimit <= 0) {
+			throw new IllegalArgumentException("minLimit must be greater than 0");
+		}
+		if (initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("initialLimit must between minLimit and maxLimit");
+		}
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * 尝试占用一个并发名额。
+	 *
+	 * @param important 是否是重要的请求，重要的请求可以使用预留的名额
+	 * @return 成功则为 true，此时必须在处理完后调用 release
+	 */
+	public boolean tryAcquire(boolean important) {
+		var current = limit;
+		var max = important ? current : Math.max(1, current * (1 - reserveRatio));
+
+		for (var n = inflight.get(); n < max; n = inflight.get()) {
+			if (inflight.compareAndSet(n, n + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 释放一个并发名额，并用该请求的处理时间来调整上限。
+	 *
+	 * @param rttNanos 请求的处理时间（纳秒）
+	 */
+	public void release(long rttNanos) {
+		var n = inflight.getAndDecrement();
+		if (rttNanos > 0) {
+			update(rttNanos, n);
+		}
+	}
+
+	private synchronized void update(double rtt, int inflight) {
+		if (longRtt == 0) {
+			shortRtt = longRtt = rtt;
+		} else {
+			shortRtt += (rtt - shortRtt) / 10;
+			longRtt += (rtt - longRtt) / 600;
+		}
+
+		// 长期平均比最近的大很多说明负载降下来了，让它更快地跟上
+		if (longRtt / shortRtt > 2) {
+			longRtt *= 0.95;
+		}
+
+		// 使用量不到一半时的响应时间不能说明上限是否合适，不调整
+		var current = limit;
+		if (inflight < current / 2) {
+			return;
+		}
+
+		var gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+		var newLimit = current * gradient + Math.sqrt(current);
+		newLimit = current * (1 - smoothing) + newLimit * smoothing;
+
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+
+	/** 当前的并发上限 */
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	/** 正在处理的请求数 */
+	public int getInflight() {
+		return inflight.get();
+	}
+}
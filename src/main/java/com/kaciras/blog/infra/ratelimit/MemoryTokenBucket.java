@@ -0,0 +1,150 @@
+package com.kaciras.blog.infra.ratelimit;
+
+import lombok.Setter;
+import org.springframework.lang.NonNull;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 保存在本机内存中的多级令牌桶，算法与 {@link RedisTokenBucket} 的 Lua 脚本一致。
+ * <p>
+ * 记录只在当前进程内有效，多个节点之间不共享，主要用作 Redis 不可用时的降级。
+ * <p>
+ * ID 用 ByteBuffer 包装后作为 Map 的键，它的 equals 和 hashCode 是按内容计算的。
+ *
+ * <h2>内存占用</h2>
+ * 记录数超过上限时清理掉空闲已久（令牌已经回满）的桶，这种桶删了跟没删一样。
+ * <p>
+ * 清理要遍历整个表，如果大部分记录都还活跃，删不掉多少，表会一直处于满的状态，
+ * 每次 acquire 都遍历就太慢了。时间的精度是秒，同一秒内不会有新的记录变为空闲，
+ * 所以每秒最多清理一次，并发时也只由抢到锁的那个线程去做，其它线程不等待。
+ */
+public final class MemoryTokenBucket implements RateLimiter {
+
+	private final Map<ByteBuffer, Record> records = new ConcurrentHashMap<>();
+	private final Clock clock;
+
+	private double[] sizes = new double[0];
+	private double[] rates = new double[0];
+
+	/** 记录的存活时间，跟 Redis 版一样由容量和速率来计算 */
+	private long ttl;
+
+	/** 最小的一个桶的容量 */
+	private int minSize = Integer.MAX_VALUE;
+
+	/** 记录数达到此值后将尝试清理 */
+	@Setter
+	private int maxRecords = 65536;
+
+	private final ReentrantLock sweepLock = new ReentrantLock();
+
+	/** 上次清理的时间（秒），只在 sweepLock 内修改 */
+	private volatile long lastSweep = Long.MIN_VALUE;
+
+	public MemoryTokenBucket(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * 添加一个令牌桶，该桶具有指定的容量和填充速率。
+	 *
+	 * @param size 桶容量
+	 * @param rate 填充速率（令牌/秒）
+	 * @throws IllegalArgumentException 如果 size 或 rate 的取值范围错误
+	 */
+	public void addBucket(int size, double rate) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size cannot be negative");
+		}
+		if (rate <= 0) {
+			throw new IllegalArgumentException("rate must be greater than 0");
+		}
+
+		sizes = Arrays.copyOf(sizes, sizes.length + 1);
+		rates = Arrays.copyOf(rates, rates.length + 1);
+		sizes[sizes.length - 1] = size;
+		rates[rates.length - 1] = rate;
+
+		ttl = Math.max(ttl, (long) Math.ceil(size / rate));
+		minSize = Math.min(minSize, size);
+	}
+
+	@Override
+	public long acquire(@NonNull byte[] id, int permits) {
+		if (permits > minSize) {
+			return -1;
+		}
+		var now = clock.instant().getEpochSecond();
+
+		if (records.size() >= maxRecords && now > lastSweep) {
+			sweep(now);
+		}
+
+		var record = records.computeIfAbsent(ByteBuffer.wrap(id), __ -> new Record(now, sizes.clone()));
+		synchronized (record) {
+			return record.acquire(permits, now);
+		}
+	}
+
+	private void sweep(long now) {
+		if (!sweepLock.tryLock()) {
+			return;
+		}
+		try {
+			if (now > lastSweep) {
+				lastSweep = now;
+				records.values().removeIf(r -> now - r.lastAcquire >= ttl);
+			}
+		} finally {
+			sweepLock.unlock();
+		}
+	}
+
+	/**
+	 * 当前保存的记录数，仅用于测试。
+	 */
+	int size() {
+		return records.size();
+	}
+
+	private final class Record {
+
+		private long lastAcquire;
+		private final double[] permits;
+
+		private Record(long lastAcquire, double[] permits) {
+			this.lastAcquire = lastAcquire;
+			this.permits = permits;
+		}
+
+		/**
+		 * 跟 Lua 脚本一样，只要有一个桶的令牌不足就不修改任何桶。
+		 */
+		private long acquire(int requirement, long now) {
+			var current = new double[permits.length];
+			var timeToWait = 0L;
+
+			for (var i = 0; i < permits.length; i++) {
+				current[i] = Math.min(sizes[i], permits[i] + (now - lastAcquire) * rates[i]);
+				if (requirement > current[i]) {
+					var wait = (long) Math.ceil((requirement - current[i]) / rates[i]);
+					timeToWait = Math.max(timeToWait, wait);
+				}
+			}
+
+			if (timeToWait == 0) {
+				for (var i = 0; i < permits.length; i++) {
+					permits[i] = current[i] - requirement;
+				}
+				lastAcquire = now;
+			}
+			return timeToWait;
+		}
+	}
+}
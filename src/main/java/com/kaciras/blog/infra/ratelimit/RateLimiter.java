@@ -19,9 +19,9 @@ public interface RateLimiter {
 	 * 如果其它地方也以同样的ID获取了资源，则这里的请求方等待的时间也能会延长。
 	 * 如果返回了一个负的时间，表明该请求无论如何都无法通过。
 	 *
-	 * @param id      标识获取者的身份，一般是对方的IP之类的
+	 * @param id      标识获取者的身份，一般是对方的IP之类的，使用二进制以便直接作为 Redis 的键
 	 * @param permits 要获取的令牌数量
 	 * @return 需要等待的时间（秒），0表示成功，负值表示永远无法完成
 	 */
-	long acquire(@NonNull String id, int permits);
+	long acquire(@NonNull byte[] id, int permits);
 }
@@ -1,7 +1,7 @@
 package com.kaciras.blog.infra.ratelimit;
 
+import com.kaciras.blog.infra.codec.CodecUtils;
 import lombok.AllArgsConstructor;
-import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -23,10 +23,9 @@ import java.util.List;
  * </ul>
  * 该类不会改变最大访问速率，因为它取决于内部的限流器。但它可以治那些完全不懂得限速的自动访问软件。
  */
-@RequiredArgsConstructor
 public final class RedisBlockingLimiter implements RateLimiter {
 
-	private final String namespace;
+	private final byte[] namespace;
 	private final RateLimiter inner;
 	private final RedisConnectionFactory redisFactory;
 	private final Clock clock;
@@ -47,6 +46,13 @@ public final class RedisBlockingLimiter implements RateLimiter {
 	@Setter
 	private boolean refreshOnReject;
 
+	public RedisBlockingLimiter(String namespace, RateLimiter inner, RedisConnectionFactory redisFactory, Clock clock) {
+		this.namespace = namespace.getBytes(StandardCharsets.UTF_8);
+		this.inner = inner;
+		this.redisFactory = redisFactory;
+		this.clock = clock;
+	}
+
 	/**
 	 * 设置封禁时间列表，列表中从前到后的等级逐渐升高，后面的时长必须大于前面的，时间都不能为负。
 	 *
@@ -71,7 +77,7 @@ public final class RedisBlockingLimiter implements RateLimiter {
 	 * 以在其内部自己实现，或是做个异步装饰器类。
 	 */
 	@Override
-	public long acquire(@NonNull String id, int permits) {
+	public long acquire(@NonNull byte[] id, int permits) {
 		if (blockTimes.isEmpty()) {
 			return inner.acquire(id, permits);
 		}
@@ -87,12 +93,12 @@ public final class RedisBlockingLimiter implements RateLimiter {
 	 *
 	 * 目前因为没什么访问量不要紧，所以没有解决此问题。
 	 */
-	private long doAcquire(RedisConnection connection, String id, int permits) {
+	private long doAcquire(RedisConnection connection, byte[] id, int permits) {
 
 		// 32 位秒数最大 2038 年，本代码肯定用不到那么久
 		var now = (int) clock.instant().getEpochSecond();
 
-		var blockKey = (namespace + id).getBytes(StandardCharsets.UTF_8);
+		var blockKey = CodecUtils.concatBytes(namespace, id);
 		var record = deserialize(connection.stringCommands().get(blockKey));
 
 		if (record != null) {
@@ -1,10 +1,12 @@
 package com.kaciras.blog.infra.ratelimit;
 
+import com.kaciras.blog.infra.codec.CodecUtils;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.lang.NonNull;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.util.Arrays;
 import java.util.Collections;
@@ -13,7 +15,8 @@ import java.util.Collections;
  * 使用 Redis 存储的多级令牌桶，该类仅作为 Java 层的接口，算法的实现在 Lua 脚本里。
  *
  * <h2>关于 Redis 操作类</h2>
- * Spring Data Redis 里的 ScriptExecutor 跟 RedisTemplate 绑死了，很难直接基于 Connection 实现
+ * Spring Data Redis 里的 ScriptExecutor 跟 RedisTemplate 绑死了，很难直接基于 Connection 实现。
+ * 键是二进制的，所以 RedisTemplate 的键序列化器需要是 {@code RedisSerializer.byteArray()}。
  */
 public final class RedisTokenBucket implements RateLimiter {
 
@@ -32,9 +35,9 @@ public final class RedisTokenBucket implements RateLimiter {
 	 *   3.如果使用装饰模式来扩展，则必须要在实例里对命名空间做区分
 	 *   4.对于其他限流算法如简单计数等，不存在命名空间，要求在调用方对id做处理是多余的
 	 */
-	private final String namespace;
+	private final byte[] namespace;
 	private final Clock clock;
-	private final RedisOperations<String, Object> redis;
+	private final RedisOperations<byte[], Object> redis;
 
 	private Object[] bArgs = new Object[0];
 
@@ -51,8 +54,8 @@ public final class RedisTokenBucket implements RateLimiter {
 	 * @param redis     Redis配置
 	 * @param clock     用于获取当前时间，可以Mock该参数以便测试
 	 */
-	public RedisTokenBucket(String namespace, RedisOperations<String, Object> redis, Clock clock) {
-		this.namespace = namespace;
+	public RedisTokenBucket(String namespace, RedisOperations<byte[], Object> redis, Clock clock) {
+		this.namespace = namespace.getBytes(StandardCharsets.UTF_8);
 		this.redis = redis;
 		this.clock = clock;
 	}
@@ -89,13 +92,13 @@ public final class RedisTokenBucket implements RateLimiter {
 	 * <p>
 	 * permits 小于等于0的情况没有处理，调用方自己考虑其意义
 	 */
-	public long acquire(@NonNull String id, int permits) {
+	public long acquire(@NonNull byte[] id, int permits) {
 		if (permits > minSize) {
 			return -1;
 		}
 
 		// id 已用 @NonNull，不再做运行期检查
-		var keys = Collections.singletonList(namespace + id);
+		var keys = Collections.singletonList(CodecUtils.concatBytes(namespace, id));
 
 		var args = new Object[3 + bArgs.length];
 		args[0] = permits;
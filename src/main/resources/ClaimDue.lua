@@ -0,0 +1,25 @@
+---
+--- 从有序集合里取出最多 count 个分数不大于 now 的成员，并把它们的分数改为 leaseUntil。
+--- 分数是到期时间，取出的成员在租约期内不会被其它节点重复取出，处理者崩溃的话租约过期后会被再次取出。
+---
+--- 取出的成员会改名为 "原名:token"，HASH 里对应的字段也一起改，这样处理期间再加入同名的成员
+--- 就是新的一个，不会跟正在处理的合并，然后被处理完的删除掉。再次取出时只保留冒号前的部分。
+---
+--- 调用方式：EVALSHA (sha1) 2 zset hash now leaseUntil count token
+--- 返回值：{ 改名后的成员... }
+---
+local members = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[3])
+local claimed = {}
+for i, member in ipairs(members) do
+	local name = string.match(member, '^[^:]*') .. ':' .. ARGV[4]
+	redis.call('ZREM', KEYS[1], member)
+	redis.call('ZADD', KEYS[1], ARGV[2], name)
+
+	local data = redis.call('HGET', KEYS[2], member)
+	if data then
+		redis.call('HSET', KEYS[2], name, data)
+		redis.call('HDEL', KEYS[2], member)
+	end
+	claimed[i] = name
+end
+return claimed
@@ -0,0 +1,12 @@
+---
+--- 如果键的值与给定的相同则删除它，同时从 ZSET 里移除对应的成员。
+--- 用于写回缓冲区，写入数据库期间如果值被修改了就不能删。
+---
+--- 调用方式：EVALSHA (sha1) 2 (key) (zset) value member
+---
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+	redis.call('DEL', KEYS[1])
+	redis.call('ZREM', KEYS[2], ARGV[2])
+	return 1
+end
+return 0
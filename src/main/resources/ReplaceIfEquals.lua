@@ -0,0 +1,23 @@
+---
+--- 如果 HASH 的字段或 LIST 的元素与给定的旧值相同，就替换为新值，否则无动作。
+--- 用于转换存储格式，期间其它节点写入了新值的话不会被覆盖。
+---
+--- 调用方式：EVALSHA (sha1) 1 (key) hash|list field-or-index old new
+---
+local current
+if ARGV[1] == 'hash' then
+	current = redis.call('HGET', KEYS[1], ARGV[2])
+else
+	current = redis.call('LINDEX', KEYS[1], ARGV[2])
+end
+
+if current ~= ARGV[3] then
+	return 0
+end
+
+if ARGV[1] == 'hash' then
+	redis.call('HSET', KEYS[1], ARGV[2], ARGV[4])
+else
+	redis.call('LSET', KEYS[1], ARGV[2], ARGV[4])
+end
+return 1
@@ -0,0 +1,12 @@
+---
+--- 保存配置并递增它的版本号，然后把新的配置发布给所有节点。
+--- 发布的消息格式为：配置名 \n 版本号 \n 配置的 JSON。
+---
+--- 调用方式：EVALSHA (sha1) 3 (key) (版本号 HASH) (频道) 配置名 JSON
+---
+--- @return 新的版本号
+---
+redis.call('SET', KEYS[1], ARGV[2])
+local version = redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+redis.call('PUBLISH', KEYS[3], ARGV[1] .. '\n' .. version .. '\n' .. ARGV[2])
+return version
@@ -0,0 +1,8 @@
+---
+--- 执行一次 SCAN，从指定的游标继续迭代。
+--- Spring Data Redis 的 scan 只能从头开始，没法接着上次的游标，所以用脚本包装一下。
+---
+--- 调用方式：EVALSHA (sha1) 0 cursor pattern count
+--- 返回值：{ 下一个游标, { 键... } }
+---
+return redis.call('SCAN', ARGV[1], 'MATCH', ARGV[2], 'COUNT', ARGV[3])
@@ -0,0 +1,14 @@
+---
+--- 如果列表里第一个元素加入的时间不晚于 cutoff，则取出并删除整个列表，否则什么也不做。
+--- 第一个元素的加入时间保存在另一个键里，由加入方用 SET NX 设置。
+---
+--- 调用方式：EVALSHA (sha1) 2 list since cutoff
+--- 返回值：{ 元素... }，没有到期则为空
+---
+local since = redis.call('GET', KEYS[2])
+if not since or tonumber(since) > tonumber(ARGV[1]) then
+	return {}
+end
+local items = redis.call('LRANGE', KEYS[1], 0, -1)
+redis.call('DEL', KEYS[1], KEYS[2])
+return items
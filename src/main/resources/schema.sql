@@ -84,6 +84,7 @@ CREATE TABLE IF NOT EXISTS `draft`
     `id`         int(11) unsigned NOT NULL AUTO_INCREMENT,
     `user_id`    int(11) unsigned NOT NULL,
     `article_id` int(11) unsigned          DEFAULT NULL,
+    `save_count` int(10) unsigned NOT NULL DEFAULT 0,
     `time`       datetime(6)      NOT NULL DEFAULT current_timestamp(6),
     PRIMARY KEY (`id`),
     KEY `user_id` (`user_id`)
@@ -93,14 +94,17 @@ CREATE TABLE IF NOT EXISTS `draft`
 CREATE TABLE IF NOT EXISTS `draft_history`
 (
     `id`         int(10) unsigned NOT NULL AUTO_INCREMENT,
+    `slot`       tinyint unsigned NOT NULL,
     `save_count` int(10) unsigned NOT NULL,
     `title`      tinytext         NOT NULL DEFAULT '',
     `summary`    text             NOT NULL DEFAULT '',
     `cover`      binary(16)                DEFAULT NULL,
     `keywords`   tinytext         NOT NULL DEFAULT '',
     `content`    mediumtext       NOT NULL DEFAULT '',
+    `word_count` int(10) unsigned NOT NULL DEFAULT 0,
+    `packed`     mediumblob                DEFAULT NULL,
     `time`       datetime(6)      NOT NULL DEFAULT current_timestamp(6) ON UPDATE current_timestamp(6),
-    PRIMARY KEY (`id`, `save_count`)
+    PRIMARY KEY (`id`, `slot`)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4;
 
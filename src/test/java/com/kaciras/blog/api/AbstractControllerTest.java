@@ -2,6 +2,8 @@ package com.kaciras.blog.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kaciras.blog.infra.QueryStatistics;
+import com.kaciras.blog.infra.QueryStatisticsFilter;
 import com.kaciras.blog.infra.principal.SecurityContextFilter;
 import com.kaciras.blog.infra.principal.WebPrincipal;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +14,7 @@ import org.springframework.context.annotation.EnableLoadTimeWeaving;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -40,6 +43,9 @@ public abstract class AbstractControllerTest {
 	@Autowired
 	protected SnapshotAssertion snapshot;
 
+	@Autowired
+	private QueryStatisticsFilter queryStatisticsFilter;
+
 	// 本类里的一些方法设置了 final 为了防止子类不小心给覆盖了，虽然我不觉得会出这种失误。
 	@BeforeEach
 	final void setup() {
@@ -50,11 +56,33 @@ public abstract class AbstractControllerTest {
 
 		mockMvc = MockMvcBuilders.webAppContextSetup(wac)
 				.defaultRequest(requestTemplate)
+				.addFilter(queryStatisticsFilter)
 				.addFilter(new SecurityContextFilter())
 				.alwaysDo(r -> r.getResponse().setCharacterEncoding("UTF-8"))
 				.build();
 	}
 
+	/**
+	 * 断言请求执行的 SQL 语句不超过 max 条，用于防止 N+1 查询。
+	 * <pre>
+	 * mockMvc.perform(get("/articles")).andExpect(assertMaxQueries(3));
+	 * </pre>
+	 *
+	 * @param max 最多执行的语句数
+	 */
+	protected static ResultMatcher assertMaxQueries(int max) {
+		return result -> {
+			var statistics = (QueryStatistics) result.getRequest().getAttribute(QueryStatistics.ATTRIBUTE);
+			if (statistics == null) {
+				throw new AssertionError("没有统计 SQL 语句，请检查 app.query-stats.enabled");
+			}
+			if (statistics.getCount() > max) {
+				throw new AssertionError("请求执行了 " + statistics.getCount()
+						+ " 条语句，超出了限制 " + max + "，重复的语句：" + statistics.getRepeated(2));
+			}
+		};
+	}
+
 	/**
 	 * 把对象序列化为 JSON 字符串，因为比较长所以提取单独一个方法。
 	 *
@@ -1,5 +1,7 @@
 package com.kaciras.blog.api.account;
 
+import com.kaciras.blog.infra.principal.SessionPrincipalCache;
+import com.kaciras.blog.infra.principal.WebPrincipal;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +29,9 @@ final class HttpSessionTableTest {
 	@Autowired
 	private RedisTemplate<String, String> redis;
 
+	@Autowired
+	private SessionPrincipalCache principalCache;
+
 	@BeforeEach
 	void flushDb() {
 		redis.getRequiredConnectionFactory().getConnection().serverCommands().flushDb();
@@ -45,9 +50,11 @@ final class HttpSessionTableTest {
 		session.setMaxInactiveInterval(Duration.ofDays(1));
 		repository.save(session);
 		table.add(1, session.getId());
+		principalCache.put(session.getId(), new WebPrincipal(1));
 
 		table.clearAll(1);
 
+		assertThat(principalCache.get(session.getId())).isNull();
 		session = repository.findById(session.getId());
 		assertThat(session).isNull();
 	}
@@ -64,5 +71,23 @@ final class HttpSessionTableTest {
 		table.cleanAccountRecords();
 
 		assertThat(redis.keys("*")).hasSize(0);
+		assertThat(table.getLastRemoved()).isEqualTo(1);
+	}
+
+	@Test
+	void cleanAccountRecordsKeepAlive() {
+		var session = repository.createSession();
+		session.setLastAccessedTime(Instant.now());
+		session.setMaxInactiveInterval(Duration.ofDays(1));
+		repository.save(session);
+		table.add(1, session.getId());
+		table.add(1, "expired_session");
+		table.add(2, "expired_session");
+
+		table.cleanAccountRecords();
+
+		assertThat(table.getLastRemoved()).isEqualTo(2);
+		assertThat(redis.opsForSet().members("ac:1")).containsExactly(session.getId());
+		assertThat(redis.hasKey("ac:2")).isFalse();
 	}
 }
@@ -0,0 +1,44 @@
+package com.kaciras.blog.api.article;
+
+import com.kaciras.blog.api.AbstractControllerTest;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.context.jdbc.Sql;
+
+import static org.springframework.test.context.jdbc.Sql.ExecutionPhase.AFTER_TEST_METHOD;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 检查文章列表执行的语句数不随文章数增长，使用真实的数据库。
+ * <p>
+ * 列表的查询和总数在不同的线程里执行，看不到测试的事务，所以数据要提交，测试后再删除。
+ */
+@Sql(statements = {
+		"INSERT INTO article(title, url_title, summary, content) VALUES " +
+				"('A', 'a', '', ''), ('B', 'b', '', ''), ('C', 'c', '', ''), " +
+				"('D', 'd', '', ''), ('E', 'e', '', ''), ('F', 'f', '', '')",
+		"INSERT INTO keyword(id, value) SELECT id, 'foo' FROM article",
+		"INSERT INTO keyword(id, value) SELECT id, 'bar' FROM article",
+})
+@Sql(executionPhase = AFTER_TEST_METHOD, statements = {
+		"DELETE FROM keyword",
+		"DELETE FROM article",
+		"ALTER TABLE article AUTO_INCREMENT = 1",
+})
+final class ArticleListQueriesTest extends AbstractControllerTest {
+
+	/**
+	 * 文章、关键词、总数、评论数、分类和分类路径各一条。
+	 */
+	@ParameterizedTest
+	@ValueSource(ints = {1, 3, 6})
+	void constantQueries(int count) throws Exception {
+		mockMvc.perform(get("/articles").param("count", Integer.toString(count)))
+				.andExpect(status().is(200))
+				.andExpect(jsonPath("$.items.length()").value(count))
+				.andExpect(jsonPath("$.items[0].keywords.length()").value(2))
+				.andExpect(assertMaxQueries(6));
+	}
+}
@@ -1,18 +1,25 @@
 package com.kaciras.blog.api.config;
 
+import com.kaciras.blog.api.config.ConfigRepository.ChangeHandler;
+import com.kaciras.blog.api.config.ConfigRepository.Stored;
 import jakarta.validation.ValidationException;
 import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ActiveProfiles("test")
 @SpringBootTest
@@ -114,4 +121,87 @@ class ConfigBindingManagerTest {
 
 		assertThat(value.getIntValue()).isEqualTo(4396);
 	}
+
+	private static TestBindingConfig configOf(int value) {
+		var config = new TestBindingConfig();
+		config.setIntValue(value);
+		return config;
+	}
+
+	@Test
+	void preload() {
+		var data = new byte[0];
+		var names = List.of("preloaded");
+		when(repository.loadAll(names)).thenReturn(Map.of("preloaded", new Stored(data, 3)));
+		when(repository.parse(data, TestBindingConfig.class)).thenReturn(configOf(7));
+
+		manager.preload(names);
+		manager.bind("preloaded", TestBindingConfig.class, v -> config = v);
+
+		assertThat(config.getIntValue()).isEqualTo(7);
+		verify(repository).loadAll(names); // 只有 preload 调用了
+	}
+
+	@Test
+	void changeFromOtherNode() {
+		var captor = ArgumentCaptor.forClass(ChangeHandler.class);
+		verify(repository, atLeastOnce()).subscribe(captor.capture(), any());
+		var handler = captor.getValue();
+
+		var newer = new byte[]{1};
+		var older = new byte[]{2};
+		when(repository.parse(newer, TestBindingConfig.class)).thenReturn(configOf(2));
+		when(repository.parse(older, TestBindingConfig.class)).thenReturn(configOf(1));
+
+		handler.onChange("test", new Stored(newer, 2));
+		assertThat(config.getIntValue()).isEqualTo(2);
+
+		// 晚到的旧版本不会覆盖新的。
+		handler.onChange("test", new Stored(older, 1));
+		assertThat(config.getIntValue()).isEqualTo(2);
+	}
+
+	@Test
+	void changeBeforeBind() {
+		var captor = ArgumentCaptor.forClass(ChangeHandler.class);
+		verify(repository, atLeastOnce()).subscribe(captor.capture(), any());
+
+		var data = new byte[]{1};
+		when(repository.parse(data, TestBindingConfig.class)).thenReturn(configOf(4));
+
+		// 消息比绑定先到，绑定时读到的还是旧的
+		captor.getValue().onChange("late", new Stored(data, 4));
+		manager.bind("late", TestBindingConfig.class, v -> config = v);
+
+		assertThat(config.getIntValue()).isEqualTo(4);
+	}
+
+	@Test
+	void resyncOnSubscribed() {
+		var captor = ArgumentCaptor.forClass(Runnable.class);
+		verify(repository, atLeastOnce()).subscribe(any(), captor.capture());
+
+		var data = new byte[]{1};
+		when(repository.parse(data, TestBindingConfig.class)).thenReturn(configOf(9));
+		when(repository.loadAll(List.of("test"))).thenReturn(Map.of("test", new Stored(data, 9)));
+
+		captor.getValue().run();
+		assertThat(config.getIntValue()).isEqualTo(9);
+
+		// 版本没变就不再应用
+		config = null;
+		manager.resync();
+		assertThat(config).isNull();
+	}
+
+	@Test
+	void localSetIsVersioned() {
+		when(repository.save(eq("test"), any())).thenReturn(5L);
+		manager.set("test", configOf(5));
+
+		when(repository.save(eq("test"), any())).thenReturn(4L);
+		manager.set("test", configOf(4));
+
+		assertThat(config.getIntValue()).isEqualTo(5);
+	}
 }
@@ -11,6 +11,9 @@ import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -62,6 +65,31 @@ final class ConfigRepositoryTest {
 		assertThat(loaded.flag).isTrue();
 	}
 
+	@Test
+	void loadAll() {
+		var value = new TestConfig();
+		value.flag = true;
+		assertThat(repository.save("test", value)).isEqualTo(1);
+		assertThat(repository.save("test", value)).isEqualTo(2);
+
+		var stored = repository.loadAll(List.of("test", "missing"));
+
+		assertThat(stored.get("test").version()).isEqualTo(2);
+		assertThat(repository.parse(stored.get("test").data(), TestConfig.class).flag).isTrue();
+		assertThat(stored.get("missing")).isEqualTo(new ConfigRepository.Stored(null, 0));
+	}
+
+	@Test
+	void publishOnSave() throws InterruptedException {
+		var received = new LinkedBlockingQueue<String>();
+		repository.subscribe((name, stored) -> received.add(name + "@" + stored.version()), () -> {});
+		Thread.sleep(100); // 等待订阅生效
+
+		repository.save("test", new TestConfig());
+
+		assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("test@1");
+	}
+
 	private static final class TestConfig {
 		public boolean flag;
 	}
@@ -21,9 +21,11 @@ import org.springframework.test.web.servlet.RequestBuilder;
 import java.net.InetAddress;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -60,6 +62,10 @@ final class DiscussionControllerTest extends AbstractControllerTest {
 		doReturn(topic).when(topics).get(anyInt(), anyInt());
 
 		doReturn(new UserVO()).when(userManager).getUser(anyInt());
+		doAnswer(i -> {
+			Collection<Integer> ids = i.getArgument(0);
+			return ids.stream().collect(Collectors.toMap(id -> id, id -> new UserVO()));
+		}).when(userManager).getUsers(anyCollection());
 	}
 
 	private static Stream<Arguments> invalidQueries() {
@@ -160,6 +166,10 @@ final class DiscussionControllerTest extends AbstractControllerTest {
 
 		verify(repository).get(eq(Set.of(4)));
 		verifyNoMoreInteractions(repository);
+
+		// 用户是每批评论查一次，而不是每条评论查一次
+		verify(userManager, times(2)).getUsers(anyCollection());
+		verify(userManager, never()).getUser(anyInt());
 	}
 
 	private static Stream<Arguments> invalidPostRequests() {
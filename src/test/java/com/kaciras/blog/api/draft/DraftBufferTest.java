@@ -0,0 +1,149 @@
+package com.kaciras.blog.api.draft;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaciras.blog.api.MinimumSpringTest;
+import com.kaciras.blog.api.UseBlogRedis;
+import com.kaciras.blog.infra.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@UseBlogRedis
+@MinimumSpringTest
+final class DraftBufferTest {
+
+	@Autowired
+	private StringRedisTemplate redis;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final HistoryDAO historyDAO = mock(HistoryDAO.class);
+	private final Clock clock = mock(Clock.class);
+
+	private DraftBuffer buffer;
+
+	@BeforeEach
+	void setUp() {
+		buffer = new DraftBuffer(redis, objectMapper, historyDAO, clock, Duration.ofSeconds(30));
+		setTime(Duration.ZERO);
+		when(historyDAO.selectLastSaveCount(1)).thenReturn(5);
+		when(historyDAO.updateLatest(anyInt(), anyInt(), any())).thenReturn(1);
+	}
+
+	private void setTime(Duration sinceEpoch) {
+		var instant = Instant.EPOCH.plus(sinceEpoch);
+		when(clock.instant()).thenReturn(instant);
+		when(clock.millis()).thenReturn(instant.toEpochMilli());
+	}
+
+	private static DraftContent content(String text) {
+		var value = new DraftContent();
+		value.setTitle("title");
+		value.setKeywords("");
+		value.setSummary("");
+		value.setContent(text);
+		return value;
+	}
+
+	@Test
+	void putAndGet() {
+		buffer.put(1, content("first"));
+		buffer.put(1, content("second"));
+
+		var buffered = buffer.get(1);
+		assertThat(buffered.saveCount()).isEqualTo(5);
+		assertThat(buffered.content().getContent()).isEqualTo("second");
+
+		// 缓冲区不为空时不再查询数据库，也没有写入。
+		verify(historyDAO, times(1)).selectLastSaveCount(1);
+		verify(historyDAO, never()).updateLatest(anyInt(), anyInt(), any());
+	}
+
+	@Test
+	void noHistory() {
+		assertThatThrownBy(() -> buffer.put(2, content("text")))
+				.isInstanceOf(ResourceNotFoundException.class);
+	}
+
+	@Test
+	void flushAfterIdle() {
+		buffer.put(1, content("first"));
+		setTime(Duration.ofSeconds(20));
+		buffer.put(1, content("second"));
+
+		// 每次保存都会推迟写入的时间。
+		setTime(Duration.ofSeconds(40));
+		buffer.flushIdle();
+		verify(historyDAO, never()).updateLatest(anyInt(), anyInt(), any());
+
+		setTime(Duration.ofSeconds(50));
+		buffer.flushIdle();
+		verify(historyDAO).updateLatest(eq(1), eq(5), argThat(c -> c.getContent().equals("second")));
+		assertThat(buffer.get(1)).isNull();
+	}
+
+	@Test
+	void modifiedDuringFlush() {
+		buffer.put(1, content("first"));
+
+		when(historyDAO.updateLatest(anyInt(), anyInt(), any())).then(invocation -> {
+			buffer.put(1, content("second"));
+			return 1;
+		});
+		buffer.flush(1);
+
+		assertThat(buffer.get(1).content().getContent()).isEqualTo("second");
+	}
+
+	@Test
+	void newHistoryBeforeFlush() {
+		buffer.put(1, content("autosave"));
+
+		// 期间有新的历史记录，缓冲区里的 save_count 过时了，应写入最新的那条。
+		when(historyDAO.updateLatest(eq(1), eq(5), any())).thenReturn(0);
+		when(historyDAO.selectLastSaveCount(1)).thenReturn(6);
+		buffer.flush(1);
+
+		verify(historyDAO).updateLatest(eq(1), eq(6), argThat(c -> c.getContent().equals("autosave")));
+		assertThat(buffer.get(1)).isNull();
+	}
+
+	@Test
+	void draftDeletedBeforeFlush() {
+		buffer.put(1, content("autosave"));
+
+		when(historyDAO.updateLatest(anyInt(), anyInt(), any())).thenReturn(0);
+		when(historyDAO.selectLastSaveCount(1)).thenReturn(null);
+		buffer.flush(1);
+
+		verify(historyDAO, times(1)).updateLatest(anyInt(), anyInt(), any());
+		assertThat(buffer.get(1)).isNull();
+	}
+
+	@Test
+	void flushAll() {
+		when(historyDAO.selectLastSaveCount(2)).thenReturn(0);
+		buffer.put(1, content("first"));
+		buffer.put(2, content("second"));
+
+		buffer.flushAll();
+
+		verify(historyDAO).updateLatest(eq(1), eq(5), any());
+		verify(historyDAO).updateLatest(eq(2), eq(0), any());
+		assertThat(buffer.get(1)).isNull();
+		assertThat(buffer.get(2)).isNull();
+	}
+}
@@ -0,0 +1,67 @@
+package com.kaciras.blog.api.draft;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class HistoryCodecTest {
+
+	private static String article(Random random, int length) {
+		var builder = new StringBuilder(length);
+		while (builder.length() < length) {
+			builder.append("第 ").append(random.nextInt(10000)).append(" 段，Markdown 文本 😀\n");
+		}
+		return builder.toString();
+	}
+
+	@Test
+	void base() {
+		var content = article(new Random(1), 10_000);
+		var packed = HistoryCodec.encodeBase(content);
+
+		assertThat(HistoryCodec.type(packed)).isEqualTo(HistoryCodec.BASE);
+		assertThat(HistoryCodec.decodeBase(packed)).isEqualTo(content);
+		assertThat(packed.length).isLessThan(content.length());
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"|",
+			"abc|",
+			"|abc",
+			"0123456789abcdef0123456789abcdef|0123456789abcdef0123456789abcdef",
+			"0123456789abcdefXXXX0123456789abcdef|0123456789abcdef0123456789abcdef",
+			"a😀0123456789abcdef0123456789abcdef|a😁0123456789abcdef0123456789abcdef",
+	})
+	void delta(String source, String target) {
+		source = source == null ? "" : source;
+		target = target == null ? "" : target;
+
+		var packed = HistoryCodec.encodeDelta(source, 42, target);
+
+		assertThat(HistoryCodec.type(packed)).isEqualTo(HistoryCodec.DELTA);
+		assertThat(HistoryCodec.reference(packed)).isEqualTo(42);
+		assertThat(HistoryCodec.decodeDelta(source, packed)).isEqualTo(target);
+	}
+
+	@Test
+	void scatteredEdits() {
+		var random = new Random(2);
+		var source = new StringBuilder(article(random, 100_000));
+		var target = new StringBuilder(source);
+		for (var i = 0; i < 20; i++) {
+			var position = random.nextInt(target.length() - 200);
+			target.insert(position, "新加的句子。");
+			target.delete(position + 100, position + 110);
+		}
+
+		var packed = HistoryCodec.encodeDelta(source.toString(), 1, target.toString());
+
+		assertThat(HistoryCodec.decodeDelta(source.toString(), packed)).isEqualTo(target.toString());
+		assertThat(packed.length).isLessThan(HistoryCodec.encodeBase(target.toString()).length / 4);
+	}
+}
@@ -0,0 +1,142 @@
+package com.kaciras.blog.api.draft;
+
+import com.kaciras.blog.api.MinimumSpringTest;
+import com.kaciras.blog.api.UseBlogMybatis;
+import com.kaciras.blog.api.draft.HistoryDAO.StoredContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@Import(HistoryCompressor.class)
+@UseBlogMybatis
+@MinimumSpringTest
+final class HistoryCompressorTest {
+
+	@MockitoSpyBean
+	private HistoryCompressor compressor;
+
+	@MockitoBean
+	private DraftBuffer buffer;
+
+	@Autowired
+	private DraftDAO draftDAO;
+
+	@Autowired
+	private HistoryDAO historyDAO;
+
+	@Autowired
+	private AutowireCapableBeanFactory beanFactory;
+
+	private int id;
+
+	@BeforeEach
+	void setUp() {
+		var draft = new Draft();
+		draft.setUserId(2);
+		draftDAO.insert(draft);
+		id = draft.getId();
+
+		// 后台线程看不到测试事务里的数据，改为同步压缩。
+		doAnswer(invocation -> {
+			compressor.compact(invocation.getArgument(0), invocation.getArgument(1));
+			return null;
+		}).when(compressor).compactAsync(anyInt(), anyInt());
+	}
+
+	/**
+	 * 生成第 version 次保存的内容，相邻的版本之间只有少量的修改。
+	 */
+	private static String text(int version) {
+		var lines = new ArrayList<String>();
+		for (var i = 0; i < 40; i++) {
+			lines.add("第 " + i + " 行，The quick brown fox jumps over the lazy dog.");
+		}
+		lines.set(version % 40, "在版本 " + version + " 中修改了这一行 🦊");
+		lines.add("追加的段落 " + version);
+		return String.join("\n", lines);
+	}
+
+	private static DraftContent content(String text) {
+		var value = new DraftContent();
+		value.setTitle("title");
+		value.setKeywords("");
+		value.setSummary("");
+		value.setContent(text);
+		return value;
+	}
+
+	private HistoryList historyList() {
+		var list = new HistoryList(id);
+		beanFactory.autowireBean(list);
+		return list;
+	}
+
+	private void assertRestored(HistoryList list, int from, int to) {
+		for (var i = from; i <= to; i++) {
+			assertThat(list.findBySaveCount(i).getContent()).isEqualTo(text(i));
+		}
+	}
+
+	@Test
+	void compactAndRestore() {
+		var list = historyList();
+		for (var i = 0; i < 12; i++) {
+			list.add(content(text(i)));
+		}
+
+		// 最新的不压缩，其余的都压缩了。
+		for (var row : historyDAO.selectStored(id, 0)) {
+			if (row.saveCount() == 11) {
+				assertThat(row.packed()).isNull();
+			} else {
+				assertThat(row.packed()).isNotNull();
+				assertThat(row.content()).isEmpty();
+			}
+		}
+
+		assertRestored(list, 2, 11);
+	}
+
+	/**
+	 * 压缩读取了记录之后，最旧的槽位被新的保存覆盖，之后写入的压缩结果不能覆盖新记录。
+	 */
+	@Test
+	void appendWhileCompacting() {
+		for (var i = 0; i < 10; i++) {
+			historyDAO.append(id, 10, content(text(i)));
+		}
+
+		var dao = mock(HistoryDAO.class, delegatesTo(historyDAO));
+		doAnswer(invocation -> {
+			var rows = historyDAO.selectStored(id, 0);
+			historyDAO.append(id, 10, content(text(10)));
+			return rows;
+		}).when(dao).selectStored(id, 0);
+
+		new HistoryCompressor(dao).compact(id, 9);
+
+		var stored = historyDAO.selectStored(id, 0);
+		assertThat(stored).extracting(StoredContent::saveCount).doesNotContain(0).contains(10);
+
+		var newest = historyDAO.select(id, 10);
+		assertThat(newest.getContent()).isEqualTo(text(10));
+
+		var list = historyList();
+		assertRestored(list, 1, 10);
+
+		// 下一次压缩把新记录之前的也处理好。
+		compressor.compact(id, 10);
+		assertRestored(list, 1, 10);
+	}
+}
@@ -0,0 +1,138 @@
+package com.kaciras.blog.api.draft;
+
+import com.kaciras.blog.api.MinimumSpringTest;
+import com.kaciras.blog.api.UseBlogMybatis;
+import com.kaciras.blog.infra.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@UseBlogMybatis
+@MinimumSpringTest
+final class HistoryListTest {
+
+	@MockitoBean
+	private HistoryCompressor compressor;
+
+	@MockitoBean
+	private DraftBuffer buffer;
+
+	@Autowired
+	private DraftDAO draftDAO;
+
+	@Autowired
+	private HistoryDAO historyDAO;
+
+	@Autowired
+	private AutowireCapableBeanFactory beanFactory;
+
+	private static DraftContent content(String text) {
+		var value = new DraftContent();
+		value.setTitle("title");
+		value.setKeywords("");
+		value.setSummary("");
+		value.setContent(text);
+		return value;
+	}
+
+	private int newDraft() {
+		var draft = new Draft();
+		draft.setUserId(2);
+		draftDAO.insert(draft);
+		return draft.getId();
+	}
+
+	private HistoryList historyList(int id) {
+		var list = new HistoryList(id);
+		beanFactory.autowireBean(list);
+		return list;
+	}
+
+	@Test
+	void overwriteOldest() {
+		var id = newDraft();
+		var list = historyList(id);
+
+		for (var i = 0; i < 12; i++) {
+			assertThat(list.add(content("v" + i))).isEqualTo(i);
+		}
+
+		// 环形缓冲区满了之后，0 和 1 所在的槽位被 10 和 11 覆盖。
+		var saveCounts = historyDAO.selectAll(id).stream().map(History::getSaveCount).toList();
+		assertThat(saveCounts).containsExactly(11, 10, 9, 8, 7, 6, 5, 4, 3, 2);
+
+		assertThat(list.findBySaveCount(0)).isNull();
+		assertThat(list.findBySaveCount(1)).isNull();
+		assertThat(list.findBySaveCount(10).getContent()).isEqualTo("v10");
+		assertThat(list.findBySaveCount(2).getContent()).isEqualTo("v2");
+		assertThat(list.findLatest().getSaveCount()).isEqualTo(11);
+
+		// 每次保存前都要写入缓冲区，之后压缩。
+		verify(buffer, times(12)).flush(id);
+		verify(compressor).compactAsync(id, 11);
+	}
+
+	@Test
+	void appendToMissingDraft() {
+		assertThat(historyDAO.append(404, 10, content("text"))).isNull();
+		assertThat(historyDAO.selectAll(404)).isEmpty();
+
+		assertThatThrownBy(() -> historyList(404).add(content("text")))
+				.isInstanceOf(ResourceNotFoundException.class);
+	}
+
+	/**
+	 * 并发的保存要在各自的连接上执行，所以不能放在测试的事务里，最后手动删除数据。
+	 * limit 设为 1 让所有的保存都写同一个槽位。
+	 */
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	@Test
+	void concurrentAppend() throws Exception {
+		var id = newDraft();
+		try {
+			var start = new CountDownLatch(1);
+			var futures = new ArrayList<Future<Integer>>();
+
+			try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for (var i = 0; i < 8; i++) {
+					var text = "t" + i;
+					futures.add(executor.submit(() -> {
+						start.await();
+						return historyDAO.append(id, 1, content(text));
+					}));
+				}
+				start.countDown();
+			}
+
+			var saveCounts = new ArrayList<Integer>();
+			for (var future : futures) {
+				saveCounts.add(future.get());
+			}
+			assertThat(saveCounts).containsExactlyInAnyOrderElementsOf(IntStream.range(0, 8).boxed().toList());
+
+			// 槽位里留下的是 save_count 最大的那次保存，内容也是它的。
+			var all = historyDAO.selectAll(id);
+			assertThat(all).hasSize(1);
+			assertThat(all.getFirst().getSaveCount()).isEqualTo(7);
+
+			var winner = saveCounts.indexOf(7);
+			assertThat(historyDAO.select(id, 7).getContent()).isEqualTo("t" + winner);
+		} finally {
+			draftDAO.deleteById(id);
+		}
+	}
+}
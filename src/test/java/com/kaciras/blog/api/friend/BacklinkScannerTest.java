@@ -0,0 +1,127 @@
+package com.kaciras.blog.api.friend;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 扫描的结果与原来用 Jsoup 解析 DOM 的实现做对比。
+ */
+final class BacklinkScannerTest {
+
+	private static final String ORIGIN = "https://blog.example.com";
+
+	/**
+	 * 以前 FriendSitePage 里的实现，无效的 URI 当作不匹配。
+	 */
+	private static boolean jsoupHasLink(String html) {
+		return Jsoup.parse(html).getElementsByTag("a").stream().anyMatch(el -> {
+			try {
+				var href = URI.create(el.attr("href"));
+				return ORIGIN.equals(href.getScheme() + "://" + href.getHost());
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		});
+	}
+
+	private static boolean scan(String html) throws IOException {
+		var input = new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8));
+		return BacklinkScanner.scan(input, ORIGIN, Long.MAX_VALUE);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"",
+			"<a href='https://blog.example.com'>",
+			"<a href=\"https://blog.example.com/about\">",
+			"<a href=https://blog.example.com>",
+			"<a href=https://blog.example.com/>",
+			"<A HREF = 'https://blog.example.com?q=1'>",
+			"<a class=x\nhref='https://blog.example.com#foo'>",
+			"<a download href='https://blog.example.com:8443/'>",
+			"<a title='<a href=https://blog.example.com>' href='/'>",
+			"<a href='/' href='https://blog.example.com'>",
+			"<a href='https://blog.example.com.evil.com'>",
+			"<a href='https://blog.example.comm'>",
+			"<a href='http://blog.example.com'>",
+			"<a href='//blog.example.com'>",
+			"<a href='https://blog.example.co'>",
+			"<abbr href='https://blog.example.com'>",
+			"<link href='https://blog.example.com'>",
+			"<!-- <a href='https://blog.example.com'> -->",
+			"<!----><a href='https://blog.example.com'>",
+			"<!DOCTYPE html><p>1 < 2</p><<a href='https://blog.example.com'>",
+			"<script>document.write(\"<a href='https://blog.example.com'>\")</script>",
+			"<script>var s = '</scr'</script><a href='https://blog.example.com'>",
+			"<style>a::after { content: '<a href=https://blog.example.com>' }</style>",
+			"<textarea><a href='https://blog.example.com'></textarea>",
+			"<div data-x='>'><a href='https://blog.example.com'></a></div>",
+	})
+	void sameAsJsoup(String html) throws IOException {
+		assertThat(scan(html)).as(html).isEqualTo(jsoupHasLink(html));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"friend-validate.html", "friend-validate-2.html"})
+	void sameAsJsoupOnPages(String name) throws IOException {
+		var html = new ClassPathResource(name).getContentAsString(StandardCharsets.UTF_8);
+		assertThat(scan(html)).isEqualTo(jsoupHasLink(html));
+	}
+
+	@Test
+	void stopAtFirstMatch() throws IOException {
+		var head = "<a href='https://blog.example.com'>".getBytes(StandardCharsets.UTF_8);
+		var input = new CountingStream(head, 1024 * 1024);
+
+		assertThat(BacklinkScanner.scan(input, ORIGIN, Long.MAX_VALUE)).isTrue();
+		assertThat(input.read).isLessThan(64 * 1024);
+	}
+
+	@Test
+	void limit() throws IOException {
+		var html = "<p>" + "x".repeat(100) + "</p><a href='https://blog.example.com'>";
+		var bytes = html.getBytes(StandardCharsets.UTF_8);
+
+		assertThat(BacklinkScanner.scan(new ByteArrayInputStream(bytes), ORIGIN, 100)).isFalse();
+		assertThat(BacklinkScanner.scan(new ByteArrayInputStream(bytes), ORIGIN, bytes.length)).isTrue();
+	}
+
+	/**
+	 * 先返回 head，然后是 size 个空格，并记录读取了多少字节。
+	 */
+	private static final class CountingStream extends InputStream {
+
+		private final byte[] head;
+		private final int size;
+
+		private int read;
+
+		private CountingStream(byte[] head, int size) {
+			this.head = head;
+			this.size = size;
+		}
+
+		@Override
+		public int read() {
+			if (read < head.length) {
+				return head[read++];
+			}
+			if (read < head.length + size) {
+				read++;
+				return ' ';
+			}
+			return -1;
+		}
+	}
+}
@@ -4,13 +4,16 @@ import com.kaciras.blog.api.AbstractControllerTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static com.kaciras.blog.api.friend.TestHelper.createFriend;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -36,10 +39,12 @@ final class FriendControllerTest extends AbstractControllerTest {
 				createFriend("B"),
 				createFriend("C"),
 		};
-		when(repository.getAll()).thenReturn(result);
+		var snapshot = new FriendRepository.Snapshot(result, objectMapper.writeValueAsBytes(result));
+		when(repository.getSnapshot()).thenReturn(snapshot);
 
 		var exchange = mockMvc.perform(get("/friends"))
 				.andExpect(status().is(200))
+				.andExpect(header().string("ETag", '"' + snapshot.etag() + '"'))
 				.andReturn();
 
 		List<FriendLink> list = objectMapper.readValue(exchange.getResponse().getContentAsByteArray(),
@@ -51,6 +56,63 @@ final class FriendControllerTest extends AbstractControllerTest {
 		assertThat(list.get(2)).usingRecursiveComparison().isEqualTo(result[2]);
 	}
 
+	@Test
+	void getFriendsGzip() throws Exception {
+		var result = new FriendLink[]{createFriend("A")};
+		var snapshot = new FriendRepository.Snapshot(result, objectMapper.writeValueAsBytes(result));
+		when(repository.getSnapshot()).thenReturn(snapshot);
+
+		var exchange = mockMvc.perform(get("/friends").header("Accept-Encoding", "gzip, br"))
+				.andExpect(status().is(200))
+				.andExpect(header().string("Content-Encoding", "gzip"))
+				.andReturn();
+
+		var body = exchange.getResponse().getContentAsByteArray();
+		try (var stream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			assertThat(stream.readAllBytes()).isEqualTo(snapshot.json());
+		}
+	}
+
+	@Test
+	void getFriendsGzipRejected() throws Exception {
+		var result = new FriendLink[]{createFriend("A")};
+		var snapshot = new FriendRepository.Snapshot(result, objectMapper.writeValueAsBytes(result));
+		when(repository.getSnapshot()).thenReturn(snapshot);
+
+		mockMvc.perform(get("/friends").header("Accept-Encoding", "gzip;q=0, br"))
+				.andExpect(status().is(200))
+				.andExpect(header().doesNotExist("Content-Encoding"))
+				.andExpect(header().string("ETag", '"' + snapshot.etag() + '"'));
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"gzip|true",
+			"GZIP, br|true",
+			"br;q=1.0, gzip;q=0.5|true",
+			"*|true",
+			"x-gzip|true",
+			"gzip;q=0|false",
+			"gzip; q=0.000|false",
+			"*;q=0|false",
+			"gzip;q=0, *|false",
+			"br, gzip-foo|false",
+			"gzip;q=abc|false",
+	})
+	void acceptsGzip(String header, boolean expected) {
+		assertThat(FriendController.acceptsGzip(header)).isEqualTo(expected);
+	}
+
+	@Test
+	void getFriendsNotModified() throws Exception {
+		var result = new FriendLink[]{createFriend("A")};
+		var snapshot = new FriendRepository.Snapshot(result, objectMapper.writeValueAsBytes(result));
+		when(repository.getSnapshot()).thenReturn(snapshot);
+
+		mockMvc.perform(get("/friends").header("If-None-Match", '"' + snapshot.etag() + '"'))
+				.andExpect(status().is(304));
+	}
+
 	private static Stream<Arguments> invalidFields() {
 		return Stream.of(
 				Arguments.of("url", null),
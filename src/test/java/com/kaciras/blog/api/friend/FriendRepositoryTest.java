@@ -1,10 +1,13 @@
 package com.kaciras.blog.api.friend;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaciras.blog.api.MinimumSpringTest;
+import com.kaciras.blog.api.RedisKeys;
 import com.kaciras.blog.api.UseBlogRedis;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 import java.net.URI;
 
@@ -19,6 +22,12 @@ final class FriendRepositoryTest {
 	@Autowired
 	private FriendRepository repository;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private StringRedisTemplate redis;
+
 	@Test
 	void addRepeat() {
 		var friend = createFriend("example.com");
@@ -38,6 +47,32 @@ final class FriendRepositoryTest {
 		assertThat(rv).usingRecursiveComparison().ignoringFields("createTime").isEqualTo(friend);
 	}
 
+	@Test
+	void snapshot() throws Exception {
+		repository.add(createFriend("A"));
+
+		var snapshot = repository.getSnapshot();
+		assertThat(snapshot.list()).hasSize(1);
+		assertThat(objectMapper.readTree(snapshot.json()))
+				.isEqualTo(objectMapper.valueToTree(repository.getAll()));
+
+		var etag = snapshot.etag();
+		repository.add(createFriend("B"));
+		assertThat(repository.getSnapshot().etag()).isNotEqualTo(etag);
+	}
+
+	@Test
+	void reload() {
+		repository.add(createFriend("A"));
+
+		// 模拟其它节点修改了数据但通知丢失
+		redis.unlink(RedisKeys.FRIENDS.of("list"));
+		assertThat(repository.getAll()).hasSize(1);
+
+		repository.reload();
+		assertThat(repository.getAll()).isEmpty();
+	}
+
 	@Test
 	void findByHost() {
 		var friend = createFriend("example.com");
@@ -8,18 +8,20 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.redis.DataRedisTest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
 import org.springframework.context.annotation.Import;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import java.net.URI;
-import java.nio.file.Files;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.kaciras.blog.api.friend.TestHelper.createFriend;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -30,8 +32,12 @@ import static org.mockito.internal.verification.VerificationModeFactory.noIntera
 
 @ActiveProfiles("test")
 @Import({RedisUtilsAutoConfiguration.class, FriendValidateService.class})
+@EnableConfigurationProperties(FriendValidatorProperties.class)
 @AutoConfigureJson
-@DataRedisTest(properties = "app.origin=https://blog.example.com")
+@DataRedisTest(properties = {
+		"app.origin=https://blog.example.com",
+		"app.friend-validator.max-retries=0",
+})
 final class FriendValidateServiceTest {
 
 	@MockitoBean
@@ -52,6 +58,9 @@ final class FriendValidateServiceTest {
 	@Autowired
 	private RedisConnectionFactory redis;
 
+	@Autowired
+	private StringRedisTemplate redisTemplate;
+
 	@BeforeEach
 	void flushDb() {
 		redis.getConnection().serverCommands().flushDb();
@@ -82,8 +91,8 @@ final class FriendValidateServiceTest {
 		addRecord("example.com", null, Instant.EPOCH);
 		service.removeFromValidate("example.com");
 
-		service.startValidation();
-		verify(validator, never()).visit(any());
+		service.startValidation().join();
+		verify(validator, never()).visit(any(), any());
 	}
 
 	@Test
@@ -92,27 +101,27 @@ final class FriendValidateServiceTest {
 		var f1 = addRecord("1.com", null, Instant.EPOCH);
 		addRecord("2.com", null, now);
 		var f3 = addRecord("3.com", null, Instant.EPOCH);
-		setValidateResult(false, null, null);
+		setValidateResult(false, null, false);
 
 		when(clock.instant()).thenReturn(now);
-		service.startValidation();
+		service.startValidation().join();
 
-		verify(validator, times(2)).visit(any());
-		verify(validator).visit(eq(f1.url));
-		verify(validator).visit(eq(f3.url));
+		verify(validator, times(2)).visit(any(), any());
+		verify(validator).visit(eq(f1.url), any());
+		verify(validator).visit(eq(f3.url), any());
 	}
 
-	private void setValidateResult(boolean alive, URI newUrl, String html) {
-		var rv = new FriendSitePage(alive, newUrl, null, html);
-		when(validator.visit(any())).thenReturn(CompletableFuture.completedFuture(rv));
+	private void setValidateResult(boolean alive, URI newUrl, boolean hasMyLink) {
+		var rv = new FriendSitePage(alive, newUrl, hasMyLink);
+		when(validator.visit(any(), any())).thenReturn(CompletableFuture.completedFuture(rv));
 	}
 
 	@Test
 	void allowSmallFailedCount() {
 		addRecord("example.com", null, Instant.EPOCH);
-		setValidateResult(false, null, null);
+		setValidateResult(false, null, false);
 
-		service.startValidation();
+		service.startValidation().join();
 
 		verify(notification, noInteractions()).notify(any());
 	}
@@ -120,11 +129,11 @@ final class FriendValidateServiceTest {
 	@Test
 	void notAlive() {
 		var friend = addRecord("example.com", null, Instant.EPOCH);
-		setValidateResult(false, null, null);
+		setValidateResult(false, null, false);
 
 		for (int i = 0; i < 4; i++) {
 			when(clock.instant()).thenReturn(Instant.MAX, Instant.EPOCH);
-			service.startValidation();
+			service.startValidation().join();
 		}
 
 		var captor = ArgumentCaptor.forClass(FriendAccident.class);
@@ -141,9 +150,9 @@ final class FriendValidateServiceTest {
 	void siteMoved() {
 		var friend = addRecord("example.com", null, Instant.EPOCH);
 		var newUrl = URI.create("https://new.home");
-		setValidateResult(true, newUrl, null);
+		setValidateResult(true, newUrl, false);
 
-		service.startValidation();
+		service.startValidation().join();
 
 		var captor = ArgumentCaptor.forClass(FriendAccident.class);
 		verify(notification).notify(captor.capture());
@@ -158,9 +167,9 @@ final class FriendValidateServiceTest {
 	@Test
 	void gotDumped() {
 		var friend = addRecord("example.com", "", Instant.EPOCH);
-		setValidateResult(true, null, "<html></html>");
+		setValidateResult(true, null, false);
 
-		service.startValidation();
+		service.startValidation().join();
 
 		var captor = ArgumentCaptor.forClass(FriendAccident.class);
 		verify(notification).notify(captor.capture());
@@ -174,24 +183,101 @@ final class FriendValidateServiceTest {
 	@Test
 	void hasMyLink() throws Exception {
 		addRecord("example.com", "", Instant.EPOCH);
-		var html = Files.readString(new ClassPathResource("friend-validate-2.html").getFile().toPath());
-		setValidateResult(true, null, html);
+		setValidateResult(true, null, true);
 
-		service.startValidation();
+		service.startValidation().join();
 
 		verify(notification, noInteractions()).notify(any());
 	}
 
+	@Test
+	void saveConditionalInfo() {
+		addRecord("example.com", "https://example.com/friends", Instant.EPOCH);
+		var rv = new FriendSitePage(true, null, true, "abc", "Wed, 21 Oct 2015 07:28:00 GMT", "hash", false);
+		var dead = new FriendSitePage(false, null, false);
+		when(validator.visit(any(), any())).thenReturn(
+				CompletableFuture.completedFuture(rv),
+				CompletableFuture.completedFuture(dead));
+
+		service.startValidation().join();
+		when(clock.instant()).thenReturn(Instant.MAX);
+		service.startValidation().join();
+
+		var captor = ArgumentCaptor.forClass(ValidateRecord.class);
+		verify(validator, times(2)).visit(any(), captor.capture());
+
+		// 第二次访问失败不会修改这些字段，所以它们一定是从 Redis 里读出来的。
+		var last = captor.getAllValues().get(1);
+		assertThat(last.etag).isEqualTo("abc");
+		assertThat(last.lastModified).isEqualTo("Wed, 21 Oct 2015 07:28:00 GMT");
+		assertThat(last.contentHash).isEqualTo("hash");
+		assertThat(last.myLink).isTrue();
+	}
+
 	// 有记录但没有对应的友链，因为检查任务是异步的，所以可能有这种边界情况。
 	@Test
 	void danglingRecord() {
 		addRecord("example.com", null, Instant.EPOCH);
 		var newUrl = URI.create("https://new.home");
-		setValidateResult(true, newUrl, null);
+		setValidateResult(true, newUrl, false);
 		when(repository.findByHost(any())).thenReturn(null);
 
-		service.startValidation();
+		service.startValidation().join();
 
 		verify(notification, noInteractions()).notify(any());
 	}
+
+	@Test
+	void resumePending() {
+		var now = Instant.now();
+		var f1 = addRecord("1.com", null, now);
+		addRecord("2.com", null, now);
+		setValidateResult(true, null, false);
+
+		// 模拟上次检查到一半重启，1.com 还没检查
+		redisTemplate.opsForSet().add("friends:pending", "1.com");
+
+		when(clock.instant()).thenReturn(now);
+		service.startValidation().join();
+
+		verify(validator).visit(eq(f1.url), any());
+		verify(validator, times(1)).visit(any(), any());
+		assertThat(redisTemplate.hasKey("friends:pending")).isFalse();
+	}
+
+	@Test
+	void progress() {
+		addRecord("1.com", null, Instant.EPOCH);
+		addRecord("2.com", null, Instant.EPOCH);
+		var snapshots = new CopyOnWriteArrayList<Map<String, String>>();
+		var page = new FriendSitePage(true, null, false);
+		when(validator.visit(any(), any())).thenAnswer(__ -> {
+			snapshots.add(redisTemplate.<String, String>opsForHash().entries("friends:progress"));
+			return CompletableFuture.completedFuture(page);
+		});
+
+		service.startValidation().join();
+
+		assertThat(snapshots).hasSize(2).allSatisfy(p -> assertThat(p).containsEntry("total", "2"));
+
+		// 完成后进度被删除
+		assertThat(redisTemplate.hasKey("friends:progress")).isFalse();
+		assertThat(redisTemplate.hasKey("friends:pending")).isFalse();
+	}
+
+	@Test
+	void resumeDeletedRecords() {
+		addRecord("1.com", null, Instant.EPOCH);
+		setValidateResult(true, null, false);
+
+		// 上次剩下的友链在重启期间被删了
+		redisTemplate.opsForSet().add("friends:pending", "deleted.com");
+		redisTemplate.opsForHash().put("friends:progress", "total", "1");
+
+		service.startValidation().join();
+
+		verify(validator, times(1)).visit(any(), any());
+		assertThat(redisTemplate.hasKey("friends:pending")).isFalse();
+		assertThat(redisTemplate.hasKey("friends:progress")).isFalse();
+	}
 }
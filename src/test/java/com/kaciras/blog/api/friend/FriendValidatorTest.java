@@ -4,15 +4,23 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -23,7 +31,10 @@ final class FriendValidatorTest {
 			.followRedirects(Redirect.ALWAYS)
 			.build();
 
-	private final FriendValidator validator = new FriendValidator(httpClient, "https://blog.example.com");
+	private final FriendValidatorProperties properties = new FriendValidatorProperties(
+			1, Duration.ZERO, 0, Duration.ZERO, DataSize.ofKilobytes(64));
+
+	private final FriendValidator validator = new FriendValidator(httpClient, "https://blog.example.com", properties);
 
 	private final List<HttpServer> servers = new ArrayList<>();
 
@@ -139,4 +150,97 @@ final class FriendValidatorTest {
 		assertThat(result.isAlive()).isTrue();
 		assertThat(result.hasMyLink()).isFalse();
 	}
+
+	/**
+	 * 超出读取限制的部分不检查，在那之后的链接当作没有。
+	 */
+	@Test
+	void scanLimit() throws Exception {
+		var padding = " ".repeat(128 * 1024);
+		var uri = createServer(exchange -> {
+			var html = "<html><body>" + padding + "<a href='https://blog.example.com'></a></body></html>";
+			var bytes = html.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+		});
+
+		var result = validator.visit(uri).get();
+		assertThat(result.isAlive()).isTrue();
+		assertThat(result.hasMyLink()).isFalse();
+	}
+
+	/**
+	 * 支持条件请求的服务器，记录发送了多少字节的页面。
+	 */
+	private URI createConditionalServer(AtomicLong sent, String header, String value) throws IOException {
+		var body = new ClassPathResource("friend-validate-2.html").getContentAsByteArray();
+		return createServer(exchange -> {
+			var condition = header.equals(HttpHeaders.ETAG)
+					? HttpHeaders.IF_NONE_MATCH
+					: HttpHeaders.IF_MODIFIED_SINCE;
+
+			exchange.getResponseHeaders().add(header, value);
+			if (value.equals(exchange.getRequestHeaders().getFirst(condition))) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				sent.addAndGet(body.length);
+			}
+		});
+	}
+
+	private ValidateRecord recordOf(URI uri, FriendSitePage page) {
+		var record = new ValidateRecord(uri, uri, Instant.EPOCH, 0);
+		record.etag = page.getEtag();
+		record.lastModified = page.getLastModified();
+		record.contentHash = page.getContentHash();
+		record.myLink = page.hasMyLink();
+		return record;
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"ETag, '\"v1\"'",
+			"Last-Modified, 'Wed, 21 Oct 2015 07:28:00 GMT'",
+	})
+	void notModified(String header, String value) throws Exception {
+		var sent = new AtomicLong();
+		var uri = createConditionalServer(sent, header, value);
+
+		var first = validator.visit(uri, null).get();
+		assertThat(first.isNotModified()).isFalse();
+		assertThat(first.hasMyLink()).isTrue();
+		assertThat(first.getContentHash()).isNotNull();
+		var bytes = sent.get();
+
+		var second = validator.visit(uri, recordOf(uri, first)).get();
+		assertThat(second.isAlive()).isTrue();
+		assertThat(second.isNotModified()).isTrue();
+		assertThat(second.hasMyLink()).isTrue();
+		assertThat(second.getContentHash()).isEqualTo(first.getContentHash());
+		assertThat(sent.get()).isEqualTo(bytes);
+	}
+
+	@Test
+	void contentHashIsStable() throws Exception {
+		var uri = createServer(exchange -> {
+			var html = new ClassPathResource("friend-validate.html");
+			exchange.sendResponseHeaders(200, html.getFile().length());
+			html.getInputStream().transferTo(exchange.getResponseBody());
+		});
+
+		var first = validator.visit(uri).get();
+		var second = validator.visit(uri).get();
+		assertThat(first.getContentHash()).isNotNull().isEqualTo(second.getContentHash());
+	}
+
+	// 没有发送条件请求却返回 304，这不正常。
+	@Test
+	void unexpectedNotModified() throws Exception {
+		var uri = createServer(exchange -> exchange.sendResponseHeaders(304, -1));
+
+		var result = validator.visit(uri).get();
+		assertThat(result.isAlive()).isFalse();
+	}
 }
@@ -0,0 +1,153 @@
+package com.kaciras.blog.api.friend;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 用本地的 HTTP 服务器作为友链站点来测试调度器。
+ */
+final class ValidationSchedulerTest {
+
+	private final FriendValidator validator = new FriendValidator(
+			HttpClient.newHttpClient(), "https://blog.example.com", properties(1, Duration.ZERO, 0));
+
+	private final AtomicInteger inflight = new AtomicInteger();
+	private final AtomicInteger maxInflight = new AtomicInteger();
+	private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+	private final List<Long> requestTimes = new CopyOnWriteArrayList<>();
+
+	private HttpServer server;
+
+	/**
+	 * 路径 /slow 等待 100ms 返回，/fail-N 的前 N 次请求返回 500。
+	 */
+	@BeforeEach
+	void startServer() throws Exception {
+		server = HttpServer.create(new InetSocketAddress(0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", exchange -> {
+			requestTimes.add(System.nanoTime());
+			var current = inflight.incrementAndGet();
+			maxInflight.accumulateAndGet(current, Math::max);
+			try {
+				var path = exchange.getRequestURI().getPath();
+				var status = 200;
+				if (path.startsWith("/slow")) {
+					Thread.sleep(100);
+				} else if (path.startsWith("/fail-")) {
+					var limit = Integer.parseInt(path.substring(6));
+					var count = failures.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+					status = count <= limit ? 500 : 200;
+				}
+				exchange.sendResponseHeaders(status, -1);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} finally {
+				inflight.decrementAndGet();
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	private URI url(String path) {
+		return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static FriendValidatorProperties properties(int concurrency, Duration hostInterval, int retries) {
+		return new FriendValidatorProperties(
+				concurrency, hostInterval, retries, Duration.ofMillis(10), DataSize.ofMegabytes(1));
+	}
+
+	private ValidationScheduler<URI> create(int concurrency, Duration hostInterval, int retries) {
+		return new ValidationScheduler<>(properties(concurrency, hostInterval, retries), validator::visit);
+	}
+
+	@Test
+	void concurrencyLimit() {
+		var tasks = IntStream.range(0, 12).mapToObj(i -> url("/slow/" + i)).toList();
+		var results = new ConcurrentHashMap<URI, FriendSitePage>();
+
+		create(3, Duration.ZERO, 0).run(tasks, u -> u, results::put);
+
+		assertThat(results).hasSize(12);
+		assertThat(results.values()).allMatch(FriendSitePage::isAlive);
+		assertThat(maxInflight.get()).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	void retry() {
+		var results = new ConcurrentHashMap<URI, FriendSitePage>();
+		var tasks = List.of(url("/fail-2"), url("/fail-5"));
+
+		create(2, Duration.ZERO, 2).run(tasks, u -> u, results::put);
+
+		assertThat(results.get(url("/fail-2")).isAlive()).isTrue();
+		assertThat(results.get(url("/fail-5")).isAlive()).isFalse();
+		assertThat(failures.get("/fail-5").get()).isEqualTo(3);
+	}
+
+	@Test
+	void releasePermitWhileBackoff() {
+		var config = new FriendValidatorProperties(
+				1, Duration.ZERO, 1, Duration.ofSeconds(1), DataSize.ofMegabytes(1));
+		var completed = new CopyOnWriteArrayList<URI>();
+		var tasks = List.of(url("/fail-1"), url("/ok"));
+
+		new ValidationScheduler<URI>(config, validator::visit).run(tasks, u -> u, (u, page) -> completed.add(u));
+
+		// 不管哪个先开始，/ok 都不用等 /fail-1 的退避结束
+		assertThat(completed).containsExactly(url("/ok"), url("/fail-1"));
+	}
+
+	/**
+	 * 时间固定不动，检查每个请求预约的等待时间，不受 HttpClient 预热等因素影响。
+	 */
+	@Test
+	void hostInterval() {
+		var sleeps = new CopyOnWriteArrayList<Long>();
+		var timer = new ValidationScheduler.Timer() {
+			@Override
+			public long nanoTime() {
+				return 0;
+			}
+
+			@Override
+			public void sleep(long nanos) {
+				sleeps.add(nanos);
+			}
+		};
+		var config = properties(3, Duration.ofMillis(200), 0);
+		var tasks = IntStream.range(0, 3).mapToObj(i -> url("/" + i)).toList();
+
+		new ValidationScheduler<URI>(config, validator::visit, timer).run(tasks, u -> u, (u, page) -> {});
+
+		assertThat(requestTimes).hasSize(3);
+		assertThat(sleeps).containsExactlyInAnyOrder(
+				Duration.ofMillis(200).toNanos(),
+				Duration.ofMillis(400).toNanos()
+		);
+	}
+}
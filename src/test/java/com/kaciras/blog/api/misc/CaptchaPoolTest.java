@@ -0,0 +1,71 @@
+package com.kaciras.blog.api.misc;
+
+import com.kaciras.blog.api.misc.TextImageCaptchaGenerator.Captcha;
+import com.kaciras.blog.infra.exception.RequestFrequencyException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+final class CaptchaPoolTest {
+
+	private static final Duration MAX_WAIT = Duration.ofMillis(50);
+
+	private final TextImageCaptchaGenerator generator = mock(TextImageCaptchaGenerator.class);
+
+	@Test
+	void refillUntilFull() {
+		when(generator.generate()).thenReturn(new Captcha("abcde", new byte[1]));
+		var pool = new CaptchaPool(generator, 2, MAX_WAIT);
+
+		pool.refill();
+		pool.refill();
+		pool.refill();
+
+		assertThat(pool.size()).isEqualTo(2);
+		verify(generator, times(2)).generate();
+	}
+
+	@Test
+	void takeFromPool() {
+		var pooled = new Captcha("abcde", new byte[1]);
+		when(generator.generate()).thenReturn(pooled);
+		var pool = new CaptchaPool(generator, 2, MAX_WAIT);
+		pool.refill();
+
+		assertThat(pool.take()).isSameAs(pooled);
+		assertThat(pool.size()).isZero();
+		assertThat(pool.getHits()).isEqualTo(1);
+	}
+
+	@Test
+	void rejectWhenEmpty() {
+		var pool = new CaptchaPool(generator, 2, MAX_WAIT);
+
+		assertThatThrownBy(pool::take)
+				.isInstanceOf(RequestFrequencyException.class)
+				.satisfies(e -> assertThat(((RequestFrequencyException) e).getHeaders().getFirst("Retry-After")).isEqualTo("1"));
+
+		assertThat(pool.getMisses()).isEqualTo(1);
+		verify(generator, never()).generate();
+	}
+
+	@Test
+	void waitForRefill() throws Exception {
+		var captcha = new Captcha("abcde", new byte[1]);
+		when(generator.generate()).thenReturn(captcha);
+
+		try (var pool = new CaptchaPool(generator, 2, Duration.ofSeconds(5))) {
+			var taken = CompletableFuture.supplyAsync(pool::take);
+			Thread.sleep(20);
+			pool.refill();
+
+			assertThat(taken.get(5, TimeUnit.SECONDS)).isSameAs(captcha);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.kaciras.blog.api.misc;
+
+import com.kaciras.blog.api.AbstractControllerTest;
+import com.kaciras.blog.api.RedisKeys;
+import com.kaciras.blog.infra.codec.ImageReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+final class CardControllerTest extends AbstractControllerTest {
+
+	@Autowired
+	private CardController controller;
+
+	@Autowired
+	private RedisTemplate<String, byte[]> rawRedisTemplate;
+
+	private static Card createCard(String name) {
+		var card = new Card();
+		card.setName(name);
+		card.setLink("https://example.com/" + name);
+		card.setPicture(ImageReference.parse("3IeQaaHXqjt8kQ675nCT.svg"));
+		return card;
+	}
+
+	@Test
+	void getEmpty() throws Exception {
+		controller.refresh();
+
+		mockMvc.perform(get("/cards"))
+				.andExpect(status().is(200))
+				.andExpect(header().exists("ETag"))
+				.andExpect(content().string("[]"));
+	}
+
+	@Test
+	void updateAndGet() throws Exception {
+		var cards = List.of(createCard("foo"), createCard("bar"));
+		var json = toJson(cards);
+
+		mockMvc.perform(put("/cards").principal(ADMIN).content(json))
+				.andExpect(status().is(204));
+
+		mockMvc.perform(get("/cards"))
+				.andExpect(status().is(200))
+				.andExpect(content().json(json, true));
+
+		var stored = rawRedisTemplate.opsForValue().get(RedisKeys.CARD_LIST.value());
+		assertThat(new String(stored, StandardCharsets.UTF_8)).isEqualTo(json);
+	}
+
+	@Test
+	void notModified() throws Exception {
+		mockMvc.perform(put("/cards").principal(ADMIN).content(toJson(List.of(createCard("foo")))));
+
+		var etag = mockMvc.perform(get("/cards"))
+				.andReturn().getResponse().getHeader("ETag");
+
+		mockMvc.perform(get("/cards").header("If-None-Match", etag))
+				.andExpect(status().is(304));
+	}
+
+	@Test
+	void etagChangesOnUpdate() throws Exception {
+		mockMvc.perform(put("/cards").principal(ADMIN).content(toJson(List.of(createCard("foo")))));
+		var etag = mockMvc.perform(get("/cards")).andReturn().getResponse().getHeader("ETag");
+
+		mockMvc.perform(put("/cards").principal(ADMIN).content(toJson(List.of(createCard("bar")))));
+
+		mockMvc.perform(get("/cards").header("If-None-Match", etag))
+				.andExpect(status().is(200));
+	}
+
+	@Test
+	void refreshFromRedis() throws Exception {
+		var json = "[{\"name\":\"baz\"}]";
+		rawRedisTemplate.opsForValue().set(RedisKeys.CARD_LIST.value(), json.getBytes(StandardCharsets.UTF_8));
+
+		controller.refresh();
+
+		mockMvc.perform(get("/cards")).andExpect(content().string(json));
+	}
+}
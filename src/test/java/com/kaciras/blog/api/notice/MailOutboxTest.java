@@ -0,0 +1,298 @@
+package com.kaciras.blog.api.notice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaciras.blog.api.MinimumSpringTest;
+import com.kaciras.blog.api.UseBlogRedis;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 使用进程内的 SMTP 服务器来测试发件箱。
+ */
+@UseBlogRedis
+@MinimumSpringTest
+final class MailOutboxTest {
+
+	private static final MailNotifyProperties PROPERTIES = new MailNotifyProperties(
+			"alice@example.com", "bob@example.com",
+			Duration.ofSeconds(10), 20, 3, Duration.ofMinutes(1), Duration.ofMinutes(5));
+
+	@Autowired
+	private StringRedisTemplate redis;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final Clock clock = mock(Clock.class);
+
+	private SmtpStub smtp;
+	private MailOutbox outbox;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		smtp = new SmtpStub();
+		outbox = createOutbox(smtp.getPort());
+		setTime(Duration.ZERO);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		smtp.close();
+	}
+
+	private MailOutbox createOutbox(int port) {
+		var sender = new JavaMailSenderImpl();
+		sender.setHost("localhost");
+		sender.setPort(port);
+		return new MailOutbox(sender, redis, objectMapper, clock, PROPERTIES, "Test");
+	}
+
+	private void setTime(Duration sinceEpoch) {
+		when(clock.millis()).thenReturn(sinceEpoch.toMillis());
+	}
+
+	@Test
+	void batch() {
+		outbox.add("a@example.com", "title", "<p>1</p>");
+		outbox.add("b@example.com", "title", "<p>2</p>");
+		outbox.add("c@example.com", "title", "<p>3</p>");
+
+		outbox.drain();
+
+		assertThat(smtp.connections.get()).isEqualTo(1);
+		assertThat(smtp.delivered).containsExactlyInAnyOrder("a@example.com", "b@example.com", "c@example.com");
+		assertThat(outbox.getSent()).isEqualTo(3);
+		assertThat(outbox.getPending()).isZero();
+	}
+
+	@Test
+	void deduplicate() {
+		outbox.add("a@example.com", "title", "<p>1</p>");
+		outbox.add("a@example.com", "title", "<p>1</p>");
+		outbox.drain();
+
+		assertThat(smtp.delivered).containsExactly("a@example.com");
+
+		// 已经发出去的不算重复
+		outbox.add("a@example.com", "title", "<p>1</p>");
+		outbox.drain();
+		assertThat(smtp.delivered).hasSize(2);
+	}
+
+	@Test
+	void addWhileSending() {
+		var holder = new MailOutbox[1];
+		var sender = new JavaMailSenderImpl() {
+			@Override
+			public void send(MimeMessage... messages) {
+				// 这批已经取出了，发送期间又来了一封相同的
+				if (smtp.delivered.isEmpty()) {
+					holder[0].add("a@example.com", "title", "<p>1</p>");
+				}
+				super.send(messages);
+			}
+		};
+		sender.setHost("localhost");
+		sender.setPort(smtp.getPort());
+		var outbox = holder[0] = new MailOutbox(sender, redis, objectMapper, clock, PROPERTIES, "Test");
+
+		outbox.add("a@example.com", "title", "<p>1</p>");
+		outbox.drain();
+		assertThat(smtp.delivered).hasSize(1);
+		assertThat(outbox.getPending()).isOne();
+
+		// 后来的那封没有被当作重复删掉
+		outbox.drain();
+		assertThat(smtp.delivered).hasSize(2);
+		assertThat(outbox.getPending()).isZero();
+	}
+
+	@Test
+	void retryWithBackoff() {
+		smtp.rejected.add("b@example.com");
+		outbox.add("a@example.com", "title", "html");
+		outbox.add("b@example.com", "title", "html");
+
+		outbox.drain();
+		assertThat(smtp.delivered).containsExactly("a@example.com");
+		assertThat(outbox.getPending()).isEqualTo(1);
+
+		// 还没到重试的时间
+		setTime(Duration.ofSeconds(59));
+		outbox.drain();
+		assertThat(smtp.delivered).hasSize(1);
+
+		smtp.rejected.clear();
+		setTime(Duration.ofMinutes(1));
+		outbox.drain();
+
+		assertThat(smtp.delivered).containsExactly("a@example.com", "b@example.com");
+		assertThat(outbox.getPending()).isZero();
+	}
+
+	@Test
+	void giveUp() {
+		smtp.rejected.add("a@example.com");
+		outbox.add("a@example.com", "title", "html");
+
+		// 第一次失败后等 1 分钟，第二次失败后等 2 分钟，第三次就放弃了。
+		outbox.drain();
+		setTime(Duration.ofMinutes(1));
+		outbox.drain();
+		setTime(Duration.ofMinutes(3));
+		outbox.drain();
+
+		assertThat(outbox.getPending()).isZero();
+		assertThat(outbox.getDropped()).isEqualTo(1);
+	}
+
+	@Test
+	void serverDown() throws IOException {
+		smtp.close();
+		outbox.add("a@example.com", "title", "html");
+
+		outbox.drain();
+
+		assertThat(outbox.getPending()).isEqualTo(1);
+		assertThat(outbox.getSent()).isZero();
+	}
+
+	@Test
+	void invalidAddress() {
+		outbox.add("", "<- 地址为空会抛出异常", "异常直接处理了不会跑到外层");
+
+		outbox.drain();
+
+		assertThat(smtp.connections.get()).isZero();
+		assertThat(outbox.getDropped()).isEqualTo(1);
+		assertThat(outbox.getPending()).isZero();
+	}
+
+	@Test
+	void digest() throws Exception {
+		outbox.addToDigest("bob@example.com", "有新评论啦", "详情请前往控制台查看");
+		outbox.addToDigest("bob@example.com", "有新评论啦", "详情请前往控制台查看");
+		outbox.addToDigest("bob@example.com", "友链失效", "example.com 无法访问");
+
+		setTime(Duration.ofMinutes(4));
+		outbox.drain();
+		assertThat(smtp.delivered).isEmpty();
+
+		setTime(Duration.ofMinutes(5));
+		outbox.drain();
+
+		assertThat(smtp.delivered).containsExactly("bob@example.com");
+
+		var raw = smtp.contents.getFirst().getBytes(StandardCharsets.UTF_8);
+		var message = new MimeMessage((Session) null, new ByteArrayInputStream(raw));
+		assertThat(message.getSubject()).isEqualTo("你有 2 条新通知 - Test");
+	}
+
+	/**
+	 * 只实现了发送所需的最少命令的 SMTP 服务器，记录连接数和收到的邮件。
+	 */
+	private static final class SmtpStub implements AutoCloseable {
+
+		private final ServerSocket server = new ServerSocket(0);
+
+		final AtomicInteger connections = new AtomicInteger();
+		final List<String> delivered = new CopyOnWriteArrayList<>();
+		final List<String> contents = new CopyOnWriteArrayList<>();
+		final Set<String> rejected = new CopyOnWriteArraySet<>();
+
+		SmtpStub() throws IOException {
+			Thread.ofVirtual().start(this::accept);
+		}
+
+		int getPort() {
+			return server.getLocalPort();
+		}
+
+		private void accept() {
+			while (!server.isClosed()) {
+				try {
+					var socket = server.accept();
+					connections.incrementAndGet();
+					Thread.ofVirtual().start(() -> session(socket));
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		private void session(Socket socket) {
+			try (socket) {
+				var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				var output = socket.getOutputStream();
+				reply(output, "220 stub");
+
+				String recipient = null;
+				for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+					var command = line.toUpperCase();
+					if (command.startsWith("RCPT")) {
+						var address = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+						if (rejected.contains(address)) {
+							reply(output, "550 rejected");
+						} else {
+							recipient = address;
+							reply(output, "250 OK");
+						}
+					} else if (command.startsWith("DATA")) {
+						reply(output, "354 go ahead");
+						var content = new StringBuilder();
+						for (line = reader.readLine(); line != null && !".".equals(line); line = reader.readLine()) {
+							content.append(line).append('\n');
+						}
+						delivered.add(recipient);
+						contents.add(content.toString());
+						reply(output, "250 OK");
+					} else if (command.startsWith("QUIT")) {
+						reply(output, "221 bye");
+						return;
+					} else {
+						recipient = command.startsWith("RSET") ? null : recipient;
+						reply(output, "250 OK");
+					}
+				}
+			} catch (IOException ignore) {
+				// 客户端断开
+			}
+		}
+
+		private static void reply(OutputStream output, String line) throws IOException {
+			output.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+			output.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			server.close();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.kaciras.blog.api.notice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+final class MailTemplateTest {
+
+	private static String render(String template, Map<String, ?> model) {
+		return MailTemplate.compile(template).render(model);
+	}
+
+	@Test
+	void placeholders() {
+		var html = render("<a href=\"%url%\">%title%</a>%title%", Map.of("url", "/a", "title", 123));
+		assertThat(html).isEqualTo("<a href=\"/a\">123</a>123");
+	}
+
+	@Test
+	void percentSign() {
+		var html = render("width: 100%; %% %a b% 50%%name%", Map.of("name", "x"));
+		assertThat(html).isEqualTo("width: 100%; %% %a b% 50%x");
+	}
+
+	@Test
+	void missingParameter() {
+		var template = MailTemplate.compile("Hello %name%");
+		assertThatThrownBy(() -> template.render(Map.of())).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void condition() {
+		var template = MailTemplate.compile("A%if nest%B%nest%%else%C%end%D");
+
+		assertThat(template.render(Map.of("nest", 2))).isEqualTo("AB2D");
+		assertThat(template.render(Map.of("nest", false))).isEqualTo("ACD");
+		assertThat(template.render(Map.of("nest", ""))).isEqualTo("ACD");
+		assertThat(template.render(Map.of())).isEqualTo("ACD");
+	}
+
+	@Test
+	void nestedCondition() {
+		var template = MailTemplate.compile("%if a%1%if b%2%end%3%end%");
+		var model = new HashMap<String, Object>();
+
+		assertThat(template.render(model)).isEmpty();
+
+		model.put("a", true);
+		assertThat(template.render(model)).isEqualTo("13");
+
+		model.put("b", true);
+		assertThat(template.render(model)).isEqualTo("123");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"%if a%", "%end%", "%else%", "%if a%%else%%else%%end%", "%if a%%if b%%end%"})
+	void unbalanced(String template) {
+		assertThatThrownBy(() -> MailTemplate.compile(template)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void loadAll() {
+		var templates = MailTemplate.loadAll("mail");
+
+		assertThat(templates).containsKeys("Template", "NewDiscussion", "ReplyToast");
+		assertThat(templates.get("Template").render(Map.of("name", "Kaciras"))).isEqualTo("<div>Hello Kaciras</div>");
+	}
+}
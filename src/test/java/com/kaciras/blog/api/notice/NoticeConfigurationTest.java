@@ -7,7 +7,9 @@ import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
 
 import java.time.Clock;
 
@@ -19,7 +21,9 @@ final class NoticeConfigurationTest {
 	private final ApplicationContextRunner runner = new ApplicationContextRunner()
 			.withAllowBeanDefinitionOverriding(true)
 			.withBean(RedisOperationsBuilder.class, () -> new RedisOperationsBuilder(mock(RedisConnectionFactory.class), new ObjectMapper()))
+			.withBean(StringRedisTemplate.class, () -> new StringRedisTemplate(mock(RedisConnectionFactory.class)))
 			.withBean(JavaMailSender.class, () -> mock(JavaMailSender.class))
+			.withBean(TaskScheduler.class, () -> mock(TaskScheduler.class))
 			.withBean(Clock.class, Clock::systemUTC)
 			.withUserConfiguration(TestConfiguration.class)
 			.withUserConfiguration(JacksonAutoConfiguration.class)
@@ -38,10 +42,11 @@ final class NoticeConfigurationTest {
 
 	@Test
 	void mailService() {
-		runner.withPropertyValues("app.notice.mail.from=alice@example.com").run(context -> {
+		runner.withPropertyValues("app.name=Test", "app.notice.mail.from=alice@example.com").run(context -> {
 			var noticeService = context.getBean(NoticeService.class);
 			var mailService = context.getBean(MailService.class);
 			assertThat(noticeService).hasFieldOrPropertyWithValue("mailService", mailService);
+			assertThat(context).hasSingleBean(MailOutbox.class);
 		});
 	}
 }
@@ -6,6 +6,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
@@ -13,6 +14,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.stream.Stream;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -39,7 +42,7 @@ class NoticeControllerTest extends AbstractControllerTest {
 	void getAll() throws Exception {
 		var data = objectMapper.valueToTree(new TestActivity(666));
 		var notice = new Notice(ActivityType.FRIEND, Instant.EPOCH, data);
-		when(service.getAll()).thenReturn(List.of(notice, notice));
+		when(service.getAll(any())).thenReturn(List.of(notice, notice));
 
 		var request = get("/notifications").principal(ADMIN);
 		mockMvc.perform(request)
@@ -47,6 +50,17 @@ class NoticeControllerTest extends AbstractControllerTest {
 				.andExpect(snapshot.matchBody());
 	}
 
+	@Test
+	void paging() throws Exception {
+		when(service.getAll(any())).thenReturn(List.of());
+
+		var request = get("/notifications?start=2&count=10").principal(ADMIN);
+		mockMvc.perform(request).andExpect(status().is(200));
+
+		// 页号被当作行的偏移，即第 2 到 11 条
+		verify(service).getAll(eq(PageRequest.of(2, 10)));
+	}
+
 	@Test
 	void clear() throws Exception {
 		var request = delete("/notifications").principal(ADMIN);
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -80,7 +82,7 @@ final class NoticeServiceTest {
 	void getAll() {
 		service.notify(new TestActivity(666));
 
-		var list = service.getAll();
+		var list = service.getAll(Pageable.unpaged());
 
 		assertThat(list).hasSize(1);
 		assertThat(list.getFirst().getType()).isEqualTo(ActivityType.DISCUSSION);
@@ -94,12 +96,46 @@ final class NoticeServiceTest {
 
 		service.clear();
 
-		assertThat(service.getAll()).isEmpty();
+		assertThat(service.getAll(Pageable.unpaged())).isEmpty();
 	}
 
 	@Test
 	void messageAdmin() {
 		service.notify(new TestActivity2());
-		assertThat(service.getAll()).isEmpty();
+		assertThat(service.getAll(Pageable.unpaged())).isEmpty();
+	}
+
+	@Test
+	void paging() {
+		for (int i = 0; i < 5; i++) {
+			service.notify(new TestActivity(i));
+		}
+
+		// start 是行的偏移，与 article 和 discuss 的 SqlProvider 相同
+		var page = service.getAll(PageRequest.of(1, 2));
+		assertThat(page).extracting(n -> n.getData().get("intValue").asInt()).containsExactly(1, 2);
+
+		page = service.getAll(PageRequest.of(4, 2));
+		assertThat(page).extracting(n -> n.getData().get("intValue").asInt()).containsExactly(4);
+	}
+
+	@Test
+	void capacity() {
+		for (int i = 0; i < 502; i++) {
+			service.notify(new TestActivity(i));
+		}
+
+		var list = service.getAll(Pageable.unpaged());
+		assertThat(list).hasSize(500);
+		assertThat(list.getFirst().getData().get("intValue").asInt()).isEqualTo(2);
+	}
+
+	@Test
+	void mailAdminAfterClear() {
+		service.notify(new TestActivity(666));
+		service.clear();
+		service.notify(new TestActivity(666));
+
+		verify(mailService, times(2)).sendToAdmin(anyString(), anyString());
 	}
 }
@@ -0,0 +1,67 @@
+package com.kaciras.blog.api.ratelimit;
+
+import com.kaciras.blog.api.SessionValue;
+import com.kaciras.blog.infra.principal.WebPrincipal;
+import com.kaciras.blog.infra.ratelimit.GradientConcurrencyLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class ConcurrencyLimitFilterTest {
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	// 最小值为 1，所以普通请求和重要请求各能用 1 个
+	private final GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(2, 1, 2);
+	private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, 5);
+
+	private boolean accepted;
+
+	private void doFilter(HttpServletRequest request) throws Exception {
+		filter.doFilter(request, response, (a, b) -> accepted = true);
+	}
+
+	private void occupy() {
+		limiter.setReserveRatio(0.5);
+		assertThat(limiter.tryAcquire(false)).isTrue();
+	}
+
+	@Test
+	void releaseAfterRequest() throws Exception {
+		doFilter(new MockHttpServletRequest("GET", "/"));
+
+		assertThat(accepted).isTrue();
+		assertThat(limiter.getInflight()).isZero();
+	}
+
+	@Test
+	void shedAnonymousRead() throws Exception {
+		occupy();
+		doFilter(new MockHttpServletRequest("GET", "/"));
+
+		assertThat(accepted).isFalse();
+		assertThat(response.getStatus()).isEqualTo(503);
+		assertThat(response.getHeader("Retry-After")).isEqualTo("5");
+		assertThat(filter.getShedCount()).isOne();
+	}
+
+	@Test
+	void allowWrite() throws Exception {
+		occupy();
+		doFilter(new MockHttpServletRequest("POST", "/"));
+		assertThat(accepted).isTrue();
+	}
+
+	@Test
+	void allowAdmin() throws Exception {
+		occupy();
+		var request = new MockHttpServletRequest("GET", "/");
+		SessionValue.USER_ID.setTo(request.getSession(), WebPrincipal.ADMIN_ID);
+
+		doFilter(request);
+		assertThat(accepted).isTrue();
+	}
+}
@@ -6,8 +6,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 
-import java.net.InetAddress;
-
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
@@ -19,12 +17,11 @@ final class EffectRateCheckerTest {
 	private final EffectRateChecker checker = new EffectRateChecker(limiter);
 
 	private final MockHttpServletRequest request = new MockHttpServletRequest();
-	private InetAddress address;
+	private final byte[] address = new byte[16];
 
 	// 默认跳过本地的请求，需要设置一下请求的地址
 	@BeforeEach
-	void setUp() throws Exception {
-		address = InetAddress.getByName("56.152.33.44");
+	void setUp() {
 		request.setRemoteAddr("56.152.33.44");
 	}
 
@@ -3,15 +3,15 @@ package com.kaciras.blog.api.ratelimit;
 import jakarta.servlet.Filter;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
 import java.util.List;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 final class RateLimitFilterTest {
 
@@ -77,4 +77,25 @@ final class RateLimitFilterTest {
 		doFilter(filter, request);
 		assertThat(accepted).isTrue();
 	}
+
+	@Test
+	void ipv6Aggregation() throws Exception {
+		var checker = mock(RateLimitChecker.class);
+		var filter = new RateLimitFilter(List.of(checker));
+		filter.setIpv6Aggregation(true);
+
+		var request = new MockHttpServletRequest();
+		request.setRemoteAddr("1234:6666:1:2:3:4:5:6");
+		doFilter(filter, request);
+
+		request.setRemoteAddr("1.2.3.4");
+		doFilter(filter, request);
+
+		var captor = ArgumentCaptor.forClass(byte[].class);
+		verify(checker, times(2)).check(captor.capture(), any());
+		assertThat(captor.getAllValues().get(0))
+				.containsExactly(0x12, 0x34, 0x66, 0x66, 0, 1, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0);
+		assertThat(captor.getAllValues().get(1))
+				.containsExactly(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0xFF, 0xFF, 1, 2, 3, 4);
+	}
 }
@@ -46,6 +46,35 @@ final class RateLimiterConfigurationTest {
 		});
 	}
 
+	@Test
+	void circuitBreaker() {
+		runner.withPropertyValues(
+				"app.rate-limiter.generic.rate=2",
+				"app.rate-limiter.generic.size=20",
+				"app.rate-limiter.circuit-breaker.failure-threshold=5",
+				"app.rate-limiter.circuit-breaker.slow-call=500ms",
+				"app.rate-limiter.circuit-breaker.open-time=30s",
+				"app.rate-limiter.circuit-breaker.fallback-scale=0.5"
+		).run(context -> {
+			assertThat(context).hasSingleBean(RateLimitFilter.class);
+			assertThat(context).hasBean("genericRateChecker");
+		});
+	}
+
+	@Test
+	void concurrency() {
+		runner.withPropertyValues(
+				"app.rate-limiter.concurrency.initial-limit=50",
+				"app.rate-limiter.concurrency.min-limit=10",
+				"app.rate-limiter.concurrency.max-limit=400",
+				"app.rate-limiter.concurrency.reserve-ratio=0.2",
+				"app.rate-limiter.concurrency.retry-after=2s"
+		).run(context -> {
+			assertThat(context).hasSingleBean(ConcurrencyLimitFilter.class);
+			assertThat(context).doesNotHaveBean(RateLimitFilter.class);
+		});
+	}
+
 	@Test
 	void checkerOrder() {
 		runner.withPropertyValues(
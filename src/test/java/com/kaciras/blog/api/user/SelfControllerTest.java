@@ -2,11 +2,13 @@ package com.kaciras.blog.api.user;
 
 import com.kaciras.blog.api.AbstractControllerTest;
 import com.kaciras.blog.api.account.AuthType;
+import com.kaciras.blog.api.account.HttpSessionTable;
 import com.kaciras.blog.infra.codec.ImageReference;
 import com.kaciras.blog.infra.principal.WebPrincipal;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import java.time.Instant;
@@ -24,6 +26,9 @@ final class SelfControllerTest extends AbstractControllerTest {
 	@MockitoBean
 	private UserRepository repository;
 
+	@MockitoBean
+	private HttpSessionTable sessionTable;
+
 	@BeforeEach
 	void setUp() {
 		when(repository.get(eq(0))).thenReturn(User.GUEST);
@@ -36,7 +41,13 @@ final class SelfControllerTest extends AbstractControllerTest {
 
 	@Test
 	void logout() throws Exception {
-		mockMvc.perform(delete("/user")).andExpect(status().is(205));
+		var session = new MockHttpSession(null, "test_session");
+		session.setAttribute("UserId", 666);
+
+		mockMvc.perform(delete("/user").session(session)).andExpect(status().is(205));
+
+		assertThat(session.getAttribute("UserId")).isNull();
+		verify(sessionTable).invalidatePrincipal(eq("test_session"));
 	}
 
 	@Test
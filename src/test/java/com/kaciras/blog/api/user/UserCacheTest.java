@@ -0,0 +1,51 @@
+package com.kaciras.blog.api.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+final class UserCacheTest {
+
+	private final UserCache cache = new UserCache(
+			mock(StringRedisTemplate.class),
+			mock(RedisMessageListenerContainer.class)
+	);
+
+	private static User newUser(int id) {
+		var user = new User();
+		user.setId(id);
+		user.setName("alice");
+		return user;
+	}
+
+	@Test
+	void put() {
+		cache.put(newUser(1), cache.stamp());
+		assertThat(cache.get(1)).isNotNull();
+	}
+
+	@Test
+	void discardStalePut() {
+		var stamp = cache.stamp();
+		cache.invalidate(1);
+
+		cache.put(newUser(1), stamp);
+		assertThat(cache.get(1)).isNull();
+	}
+
+	@Test
+	void discardStalePutByMessage() {
+		var stamp = cache.stamp();
+		var body = "1".getBytes(StandardCharsets.UTF_8);
+		cache.onMessage(new DefaultMessage(new byte[0], body), null);
+
+		cache.put(newUser(1), stamp);
+		assertThat(cache.get(1)).isNull();
+	}
+}
@@ -2,6 +2,7 @@ package com.kaciras.blog.api.user;
 
 import com.kaciras.blog.api.MinimumSpringTest;
 import com.kaciras.blog.api.UseBlogMybatis;
+import com.kaciras.blog.api.UseBlogRedis;
 import com.kaciras.blog.api.account.AuthType;
 import com.kaciras.blog.infra.codec.ImageReference;
 import com.kaciras.blog.infra.exception.ResourceNotFoundException;
@@ -13,12 +14,14 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import java.net.InetAddress;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
-@Import(UserRepository.class)
+@Import({UserRepository.class, UserCache.class})
+@UseBlogRedis
 @UseBlogMybatis
 @MinimumSpringTest
 class UserRepositoryTest {
@@ -63,6 +66,38 @@ class UserRepositoryTest {
 		assertThat(got).usingRecursiveComparison().isEqualTo(user);
 	}
 
+	@Test
+	void getReturnsCopy() {
+		var user = testUser();
+		when(clock.instant()).thenReturn(Instant.EPOCH);
+		repository.add(user);
+
+		var first = repository.get(user.getId());
+		first.setName("modified");
+
+		var second = repository.get(user.getId());
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getName()).isEqualTo("alice");
+	}
+
+	@Test
+	void getAll() {
+		when(clock.instant()).thenReturn(Instant.EPOCH);
+		var alice = testUser();
+		var bob = testUser();
+		bob.setName("bob");
+		repository.add(alice);
+		repository.add(bob);
+
+		// 先查一个让它进缓存，另一个从数据库加载
+		repository.get(alice.getId());
+		var users = repository.getAll(List.of(0, alice.getId(), bob.getId(), 666));
+
+		assertThat(users).containsOnlyKeys(0, alice.getId(), bob.getId());
+		assertThat(users.get(0)).isEqualTo(User.GUEST);
+		assertThat(users.get(bob.getId())).usingRecursiveComparison().isEqualTo(bob);
+	}
+
 	@Test
 	void updateNonExists() {
 		var user = new User();
@@ -0,0 +1,72 @@
+package com.kaciras.blog.infra;
+
+import com.kaciras.blog.infra.DatabaseAdmission.Lane;
+import com.kaciras.blog.infra.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+final class DatabaseAdmissionTest {
+
+	private final DatabaseAdmission admission = new DatabaseAdmission(1);
+
+	@Test
+	void acquireAndRelease() {
+		admission.acquire(Lane.READ);
+		assertThat(admission.isHolding()).isTrue();
+		assertThat(admission.getAvailable()).isZero();
+
+		admission.release();
+		assertThat(admission.isHolding()).isFalse();
+		assertThat(admission.getAvailable()).isOne();
+		assertThat(admission.getAdmitted(Lane.READ)).isOne();
+	}
+
+	@Test
+	void waitTimeout() {
+		admission.configure(Lane.READ, 10, Duration.ofMillis(50));
+		admission.acquire(Lane.PRIORITY);
+
+		var other = CompletableFuture.runAsync(() -> admission.acquire(Lane.READ));
+
+		assertThat(other).failsWithin(5, TimeUnit.SECONDS)
+				.withThrowableOfType(ExecutionException.class)
+				.havingCause()
+				.isInstanceOf(ServiceUnavailableException.class);
+		assertThat(admission.getRejected(Lane.READ)).isOne();
+		assertThat(admission.getWaiting(Lane.READ)).isZero();
+	}
+
+	@Test
+	void queueFull() {
+		admission.configure(Lane.READ, 0, Duration.ofSeconds(10));
+		assertThatThrownBy(() -> admission.acquire(Lane.READ)).isInstanceOf(ServiceUnavailableException.class);
+		assertThat(admission.getAvailable()).isOne();
+	}
+
+	@Test
+	void admitAfterRelease() throws Exception {
+		admission.acquire(Lane.PRIORITY);
+
+		var other = CompletableFuture.runAsync(() -> {
+			admission.acquire(Lane.READ);
+			admission.release();
+		});
+
+		Thread.sleep(50);
+		assertThat(admission.getWaiting(Lane.READ)).isOne();
+
+		admission.release();
+		other.get(5, TimeUnit.SECONDS);
+
+		assertThat(admission.getAdmitted(Lane.READ)).isOne();
+		assertThat(admission.getMaxWait(Lane.READ)).isPositive();
+		assertThat(admission.getAverageWait(Lane.READ)).isPositive();
+	}
+}
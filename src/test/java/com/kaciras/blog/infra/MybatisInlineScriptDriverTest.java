@@ -0,0 +1,45 @@
+package com.kaciras.blog.infra;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+final class MybatisInlineScriptDriverTest {
+
+	private final MybatisInlineScriptDriver driver = new MybatisInlineScriptDriver();
+
+	private BoundSql render(String script, Map<String, Object> params) {
+		return driver.createSqlSource(new Configuration(), script, Map.class).getBoundSql(params);
+	}
+
+	// 生成的 SQL 里空白的数量不重要，比较时全部去掉。
+	private static String compact(BoundSql sql) {
+		return sql.getSql().replaceAll("\\s+", "");
+	}
+
+	@Test
+	void plain() {
+		var sql = render("SELECT * FROM t WHERE id=#{id}", Map.of("id", 1));
+		assertThat(sql.getSql()).isEqualTo("SELECT * FROM t WHERE id=?");
+	}
+
+	@Test
+	void inList() {
+		var sql = render("DELETE FROM t WHERE id IN (#{ids})", Map.of("ids", List.of(1, 2, 3)));
+		assertThat(compact(sql)).isEqualTo("DELETEFROMtWHEREidIN(?,?,?)");
+		assertThat(sql.getParameterMappings()).hasSize(3);
+	}
+
+	@Test
+	void multiRowValues() {
+		var params = Map.<String, Object>of("id", 7, "values", List.of("a", "b"));
+		var sql = render("INSERT INTO t(id, value) VALUES (#{id}, #{values[]})", params);
+		assertThat(compact(sql)).isEqualTo("INSERTINTOt(id,value)VALUES(?,?),(?,?)");
+		assertThat(sql.getParameterMappings()).hasSize(4);
+	}
+}
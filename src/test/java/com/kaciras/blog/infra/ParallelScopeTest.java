@@ -0,0 +1,72 @@
+package com.kaciras.blog.infra;
+
+import com.kaciras.blog.infra.exception.ResourceNotFoundException;
+import com.kaciras.blog.infra.principal.SecurityContext;
+import com.kaciras.blog.infra.principal.WebPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+final class ParallelScopeTest {
+
+	@AfterEach
+	void tearDown() {
+		SecurityContext.setPrincipal(null);
+	}
+
+	@Test
+	void runConcurrently() throws Exception {
+		var latch = new CountDownLatch(2);
+
+		// 如果是顺序执行的，第一个任务会一直等下去
+		try (var scope = new ParallelScope()) {
+			var a = scope.fork(() -> {
+				latch.countDown();
+				latch.await();
+				return 1;
+			});
+			var b = scope.fork(() -> {
+				latch.countDown();
+				latch.await();
+				return 2;
+			});
+			assertThat(a.get() + b.get()).isEqualTo(3);
+		}
+	}
+
+	@Test
+	void propagateSecurityContext() {
+		var principal = new WebPrincipal(WebPrincipal.ADMIN_ID);
+		SecurityContext.setPrincipal(principal);
+
+		try (var scope = new ParallelScope()) {
+			var result = scope.fork(SecurityContext::getPrincipal);
+			assertThat(result.get()).isSameAs(principal);
+		}
+	}
+
+	@Test
+	void rethrowRuntimeException() {
+		try (var scope = new ParallelScope()) {
+			var result = scope.fork(() -> {
+				throw new ResourceNotFoundException();
+			});
+			assertThatThrownBy(result::get).isInstanceOf(ResourceNotFoundException.class);
+		}
+	}
+
+	@Test
+	void wrapCheckedException() {
+		try (var scope = new ParallelScope()) {
+			var result = scope.fork(() -> {
+				throw new IOException();
+			});
+			assertThatThrownBy(result::get).hasCauseInstanceOf(IOException.class);
+		}
+	}
+}
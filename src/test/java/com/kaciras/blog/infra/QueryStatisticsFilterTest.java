@@ -0,0 +1,103 @@
+package com.kaciras.blog.infra;
+
+import jakarta.servlet.FilterChain;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+final class QueryStatisticsFilterTest {
+
+	private final Configuration configuration = new Configuration();
+
+	private final QueryStatisticsInterceptor interceptor = new QueryStatisticsInterceptor();
+
+	private final MockHttpServletRequest request = new MockHttpServletRequest();
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	private void execute(String id) throws Throwable {
+		var source = new StaticSqlSource(configuration, "UPDATE foo SET bar=1");
+		var statement = new MappedStatement.Builder(configuration, id, source, SqlCommandType.UPDATE).build();
+		var handler = new RoutingStatementHandler(mock(Executor.class), statement, null, RowBounds.DEFAULT, null, null);
+		var method = StatementHandler.class.getMethod("update", Statement.class);
+		interceptor.intercept(new Invocation(handler, method, new Object[]{mock(PreparedStatement.class)}));
+	}
+
+	private FilterChain chain(String... statements) {
+		return (req, res) -> {
+			RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+			try {
+				for (var id : statements) {
+					execute(id);
+				}
+			} catch (Throwable e) {
+				throw new AssertionError(e);
+			}
+			res.getWriter().write("body");
+		};
+	}
+
+	@Test
+	void outsideRequest() throws Throwable {
+		execute("test.update");
+		assertThat(QueryStatistics.current()).isNull();
+	}
+
+	@Test
+	void serverTiming() throws Exception {
+		var filter = new QueryStatisticsFilter(5, true);
+		filter.doFilter(request, response, chain("test.a", "test.b", "test.a"));
+
+		var statistics = (QueryStatistics) request.getAttribute(QueryStatistics.ATTRIBUTE);
+		assertThat(statistics.getCount()).isEqualTo(3);
+		assertThat(statistics.getRepeated(2)).containsExactly(Map.entry("test.a", 2));
+
+		assertThat(response.getHeader(QueryStatisticsFilter.HEADER)).matches("db;dur=\\d+\\.\\d{2};desc=\"3 queries\"");
+		assertThat(response.getContentAsString()).isEqualTo("body");
+	}
+
+	@Test
+	void noServerTiming() throws Exception {
+		var filter = new QueryStatisticsFilter(5, false);
+		filter.doFilter(request, response, chain("test.a"));
+
+		assertThat(response.getHeader(QueryStatisticsFilter.HEADER)).isNull();
+		assertThat(filter.getQueries()).isOne();
+	}
+
+	@Test
+	void detectRepeated() throws Exception {
+		var filter = new QueryStatisticsFilter(3, false);
+
+		filter.doFilter(request, response, chain("test.a", "test.a", "test.b"));
+		assertThat(filter.getRepeated()).isZero();
+
+		filter.doFilter(request, response, chain("test.a", "test.a", "test.a"));
+		assertThat(filter.getRepeated()).isOne();
+		assertThat(filter.getRequests()).isEqualTo(2);
+		assertThat(filter.getQueries()).isEqualTo(6);
+	}
+}
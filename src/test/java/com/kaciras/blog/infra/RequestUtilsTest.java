@@ -1,9 +1,11 @@
 package com.kaciras.blog.infra;
 
+import com.kaciras.blog.infra.codec.CodecUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.mock.web.MockHttpServletRequest;
 
 import java.io.UncheckedIOException;
@@ -62,4 +64,30 @@ final class RequestUtilsTest {
 		var actual = RequestUtils.isLocalNetwork(address);
 		assertThat(actual).isEqualTo(expected);
 	}
+
+	@Test
+	void addressBytesFrom() {
+		request.setRemoteAddr("1234::5678");
+		var bytes = RequestUtils.addressBytesFrom(request);
+		assertThat(bytes).hasSize(16).startsWith(0x12, 0x34).endsWith(0x56, 0x78);
+	}
+
+	@Test
+	void addressBytesFromUnknownHost() {
+		request.setRemoteAddr("invalid");
+		assertThatThrownBy(() -> RequestUtils.addressBytesFrom(request)).isInstanceOf(UncheckedIOException.class);
+	}
+
+	@ValueSource(strings = {
+			"127.0.0.1", "127.8.8.8", "10.0.0.1", "172.16.0.1", "172.31.255.255", "172.32.0.1",
+			"192.168.0.1", "192.169.0.1", "1.1.1.1", "::1", "::2", "::", "fec0::1", "fe80::1", "1234::1",
+	})
+	@ParameterizedTest
+	void isLocalNetworkBytes(String host) throws Exception {
+		var address = InetAddress.getByName(host);
+		var expected = RequestUtils.isLocalNetwork(address);
+
+		var actual = RequestUtils.isLocalNetwork(CodecUtils.toIPv6Bytes(address));
+		assertThat(actual).isEqualTo(expected);
+	}
 }
@@ -0,0 +1,57 @@
+package com.kaciras.blog.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+final class SmileRedisSerializerTest {
+
+	record Link(String name, String url, int rank, List<String> tags) {}
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final SmileRedisSerializer<Link> serializer = new SmileRedisSerializer<>(objectMapper, Link.class);
+
+	private final Link value = new Link("Kaciras 的博客", "https://blog.kaciras.com", 3, List.of("前端", "后端"));
+
+	@Test
+	void roundTrip() {
+		var bytes = serializer.serialize(value);
+
+		assertThat(SmileRedisSerializer.isSmile(bytes)).isTrue();
+		assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+	}
+
+	@Test
+	void smallerThanJson() throws Exception {
+		var json = objectMapper.writeValueAsBytes(value);
+		assertThat(serializer.serialize(value)).hasSizeLessThan(json.length);
+	}
+
+	@Test
+	void readLegacyJson() throws Exception {
+		var json = objectMapper.writeValueAsBytes(value);
+
+		assertThat(SmileRedisSerializer.isSmile(json)).isFalse();
+		assertThat(serializer.deserialize(json)).isEqualTo(value);
+	}
+
+	@Test
+	void nullAndEmpty() {
+		assertThat(serializer.serialize(null)).isEmpty();
+		assertThat(serializer.deserialize(null)).isNull();
+		assertThat(serializer.deserialize(new byte[0])).isNull();
+	}
+
+	@Test
+	void invalidData() {
+		var bytes = "not a json".getBytes(StandardCharsets.UTF_8);
+		assertThatThrownBy(() -> serializer.deserialize(bytes)).isInstanceOf(SerializationException.class);
+	}
+}
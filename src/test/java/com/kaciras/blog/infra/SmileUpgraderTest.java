@@ -0,0 +1,79 @@
+package com.kaciras.blog.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = RedisAutoConfiguration.class)
+final class SmileUpgraderTest {
+
+	record Link(String name, int rank) {}
+
+	private static final String HASH_KEY = "test:upgradeHash";
+	private static final String LIST_KEY = "test:upgradeList";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Autowired
+	private RedisConnectionFactory factory;
+
+	@Autowired
+	private StringRedisTemplate redis;
+
+	@BeforeEach
+	void cleanUp() {
+		redis.unlink(List.of(HASH_KEY, LIST_KEY));
+	}
+
+	private byte[] raw(RedisCallback<byte[]> callback) {
+		return redis.execute(callback);
+	}
+
+	@Test
+	void upgradeHash() throws Exception {
+		redis.opsForHash().put(HASH_KEY, "a", objectMapper.writeValueAsString(new Link("A", 1)));
+		redis.opsForHash().put(HASH_KEY, "b", objectMapper.writeValueAsString(new Link("B", 2)));
+
+		var hash = new RedisOperationsBuilder(factory, objectMapper, RedisValueFormat.SMILE)
+				.bindHash(HASH_KEY, Link.class);
+
+		var field = "a".getBytes(StandardCharsets.UTF_8);
+		var key = HASH_KEY.getBytes(StandardCharsets.UTF_8);
+		assertThat(SmileRedisSerializer.isSmile(raw(c -> c.hashCommands().hGet(key, field)))).isTrue();
+		assertThat(hash.get("a")).isEqualTo(new Link("A", 1));
+		assertThat(hash.get("b")).isEqualTo(new Link("B", 2));
+	}
+
+	@Test
+	void upgradeList() throws Exception {
+		redis.opsForList().rightPush(LIST_KEY, objectMapper.writeValueAsString(new Link("A", 1)));
+
+		var list = new RedisOperationsBuilder(factory, objectMapper, RedisValueFormat.SMILE)
+				.bindList(LIST_KEY, Link.class);
+
+		var key = LIST_KEY.getBytes(StandardCharsets.UTF_8);
+		assertThat(SmileRedisSerializer.isSmile(raw(c -> c.listCommands().lIndex(key, 0)))).isTrue();
+		assertThat(list.index(0)).isEqualTo(new Link("A", 1));
+	}
+
+	@Test
+	void keepJsonFormat() throws Exception {
+		var json = objectMapper.writeValueAsString(new Link("A", 1));
+		redis.opsForHash().put(HASH_KEY, "a", json);
+
+		new RedisOperationsBuilder(factory, objectMapper).bindHash(HASH_KEY, Link.class);
+
+		assertThat(redis.opsForHash().get(HASH_KEY, "a")).isEqualTo(json);
+	}
+}
@@ -1,6 +1,8 @@
 package com.kaciras.blog.infra.autoconfigure;
 
 import com.google.common.reflect.ClassPath;
+import com.kaciras.blog.infra.DatabaseAdmission;
+import com.kaciras.blog.infra.DatabaseAdmissionAspect;
 import com.kaciras.blog.infra.MybatisMapperAspect;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.TypeHandler;
@@ -8,12 +10,14 @@ import org.junit.jupiter.api.Test;
 import org.mybatis.spring.boot.autoconfigure.ConfigurationCustomizer;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 
+import javax.sql.DataSource;
 import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 final class BlogMybatisAutoConfigurationTest {
 
@@ -64,4 +68,23 @@ final class BlogMybatisAutoConfigurationTest {
 			assertThat(context).hasSingleBean(MybatisMapperAspect.class);
 		});
 	}
+
+	@Test
+	void databaseAdmission() {
+		contextRunner.withBean(DataSource.class, () -> mock(DataSource.class))
+				.withPropertyValues(
+						"app.db-admission.enabled=true",
+						"app.db-admission.permits=4",
+						"app.db-admission.lanes.read.max-queue=10",
+						"app.db-admission.lanes.read.max-wait=1s"
+				).run(context -> {
+					assertThat(context).hasSingleBean(DatabaseAdmissionAspect.class);
+					assertThat(context.getBean(DatabaseAdmission.class).getAvailable()).isEqualTo(4);
+				});
+	}
+
+	@Test
+	void noAdmissionByDefault() {
+		contextRunner.run(context -> assertThat(context).doesNotHaveBean(DatabaseAdmission.class));
+	}
 }
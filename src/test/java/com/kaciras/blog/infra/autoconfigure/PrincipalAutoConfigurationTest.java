@@ -3,6 +3,7 @@ package com.kaciras.blog.infra.autoconfigure;
 import com.kaciras.blog.infra.principal.AuthorizeAspect;
 import com.kaciras.blog.infra.principal.PrincipalFilter;
 import com.kaciras.blog.infra.principal.SecurityContextFilter;
+import com.kaciras.blog.infra.principal.SessionPrincipalCache;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
 
@@ -20,6 +21,7 @@ final class PrincipalAutoConfigurationTest {
 			assertThat(context).hasSingleBean(PrincipalFilter.class);
 			assertThat(context).hasSingleBean(SecurityContextFilter.class);
 			assertThat(context).hasSingleBean(AuthorizeAspect.class);
+			assertThat(context).hasSingleBean(SessionPrincipalCache.class);
 		});
 	}
 }
@@ -31,6 +31,40 @@ final class CodecUtilsTest {
 		assertThat(bytes).containsExactly(0x98, 0x76, 0x54, 0x32, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x10, 0xFF);
 	}
 
+	@ValueSource(strings = {
+			"0.0.0.0", "127.0.0.5", "255.255.255.255", "1.22.133.4",
+			"::", "::1", "1::", "9876:5432::10FF", "1:2:3:4:5:6:7:8", "1:2:3::7:8",
+			"::ffff:1.2.3.4", "64:ff9b::10.0.0.1", "[abcd::1]", "fe80::1%1",
+	})
+	@ParameterizedTest
+	void parseIPv6Bytes(String text) throws Exception {
+		var expected = CodecUtils.toIPv6Bytes(InetAddress.getByName(text));
+		assertThat(CodecUtils.parseIPv6Bytes(text)).containsExactly(expected);
+	}
+
+	@ValueSource(strings = {
+			"", "[]", "invalid", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1..2.3", "1.2.3.4.", "1.2.3.0004",
+			":", ":::", "1:", ":1", "1::2::3", "12345::", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::",
+			"::1.2.3", "::g", "localhost",
+	})
+	@ParameterizedTest
+	void parseIPv6BytesInvalid(String text) {
+		assertThat(CodecUtils.parseIPv6Bytes(text)).isNull();
+	}
+
+	@Test
+	void isIPv4Mapped() {
+		assertThat(CodecUtils.isIPv4Mapped(CodecUtils.parseIPv6Bytes("8.8.8.8"))).isTrue();
+		assertThat(CodecUtils.isIPv4Mapped(CodecUtils.parseIPv6Bytes("::8.8.8.8"))).isFalse();
+		assertThat(CodecUtils.isIPv4Mapped(CodecUtils.parseIPv6Bytes("1234::1"))).isFalse();
+	}
+
+	@Test
+	void concatBytes() {
+		var bytes = CodecUtils.concatBytes(new byte[]{1, 2}, new byte[]{3});
+		assertThat(bytes).containsExactly(1, 2, 3);
+	}
+
 	@Test
 	void indexOfBytes() {
 		var text = "CodecUtilsTest.indexOfBytes";
@@ -1,10 +1,13 @@
 package com.kaciras.blog.infra.principal;
 
 import com.kaciras.blog.infra.FilterChainCapture;
+import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpSession;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 final class PrincipalFilterTest {
@@ -55,4 +58,106 @@ final class PrincipalFilterTest {
 		var principal = (WebPrincipal) result.outRequest.getUserPrincipal();
 		assertThat(principal.isAdminister()).isTrue();
 	}
+
+	private static MockHttpServletRequest sessionRequest(String id, Integer userId) {
+		var session = new MockHttpSession(null, id);
+		if (userId != null) {
+			session.setAttribute("UserId", userId);
+		}
+		var request = new MockHttpServletRequest();
+		request.setSession(session);
+		request.setCookies(new Cookie("SESSION", id));
+		return request;
+	}
+
+	@Test
+	void cacheHit() throws Exception {
+		var cache = new SessionPrincipalCache(Duration.ofMinutes(1), 100);
+		cache.put("foo", new WebPrincipal(666));
+
+		var filter = new PrincipalFilter(false);
+		filter.setCache(cache);
+
+		var request = sessionRequest("foo", null);
+		var result = FilterChainCapture.doFilter(filter, request);
+
+		var principal = (WebPrincipal) result.outRequest.getUserPrincipal();
+		assertThat(principal.getId()).isEqualTo(666);
+	}
+
+	@Test
+	void cacheMiss() throws Exception {
+		var cache = new SessionPrincipalCache(Duration.ofMinutes(1), 100);
+		var filter = new PrincipalFilter(false);
+		filter.setCache(cache);
+
+		var result = FilterChainCapture.doFilter(filter, sessionRequest("foo", 666));
+
+		var principal = (WebPrincipal) result.outRequest.getUserPrincipal();
+		assertThat(principal.getId()).isEqualTo(666);
+		assertThat(cache.get("foo")).isEqualTo(principal);
+	}
+
+	@Test
+	void cacheInvalidate() throws Exception {
+		var cache = new SessionPrincipalCache(Duration.ofMinutes(1), 100);
+		cache.put("foo", new WebPrincipal(666));
+		cache.invalidate("foo");
+
+		var filter = new PrincipalFilter(false);
+		filter.setCache(cache);
+
+		var result = FilterChainCapture.doFilter(filter, sessionRequest("foo", null));
+
+		assertThat(result.outRequest.getUserPrincipal()).isEqualTo(WebPrincipal.ANONYMOUS);
+	}
+
+	@Test
+	void cacheWithoutCookie() throws Exception {
+		var cache = new SessionPrincipalCache(Duration.ofMinutes(1), 100);
+		var filter = new PrincipalFilter(false);
+		filter.setCache(cache);
+
+		var request = new MockHttpServletRequest();
+		var session = new MockHttpSession();
+		session.setAttribute("UserId", 666);
+		request.setSession(session);
+
+		var result = FilterChainCapture.doFilter(filter, request);
+
+		var principal = (WebPrincipal) result.outRequest.getUserPrincipal();
+		assertThat(principal.getId()).isEqualTo(666);
+		assertThat(cache.get(session.getId())).isNull();
+	}
+
+	@Test
+	void notCacheUnknownSession() throws Exception {
+		var cache = new SessionPrincipalCache(Duration.ofMinutes(1), 100);
+		var filter = new PrincipalFilter(false);
+		filter.setCache(cache);
+
+		// 随便编的 Cookie，没有对应的会话
+		var request = new MockHttpServletRequest();
+		request.setCookies(new Cookie("SESSION", "random"));
+		var result = FilterChainCapture.doFilter(filter, request);
+
+		assertThat(result.outRequest.getUserPrincipal()).isEqualTo(WebPrincipal.ANONYMOUS);
+		assertThat(cache.get("random")).isNull();
+	}
+
+	@Test
+	void notCacheOtherSession() throws Exception {
+		var cache = new SessionPrincipalCache(Duration.ofMinutes(1), 100);
+		var filter = new PrincipalFilter(false);
+		filter.setCache(cache);
+
+		// Cookie 里的会话已失效，本次请求又新建了一个
+		var request = sessionRequest("new", 666);
+		request.setCookies(new Cookie("SESSION", "expired"));
+		var result = FilterChainCapture.doFilter(filter, request);
+
+		var principal = (WebPrincipal) result.outRequest.getUserPrincipal();
+		assertThat(principal.getId()).isEqualTo(666);
+		assertThat(cache.get("expired")).isNull();
+	}
 }
@@ -0,0 +1,135 @@
+package com.kaciras.blog.infra.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+final class CircuitBreakerLimiterTest {
+
+	private static final byte[] KEY = "foo".getBytes();
+
+	private final Clock clock = mock(Clock.class);
+	private final RateLimiter inner = mock(RateLimiter.class);
+	private final RateLimiter fallback = mock(RateLimiter.class);
+
+	private final CircuitBreakerLimiter limiter = new CircuitBreakerLimiter("test", inner, fallback, clock);
+
+	private long time;
+
+	@BeforeEach
+	void setUp() {
+		limiter.setFailureThreshold(2);
+		limiter.setSlowCallThreshold(Duration.ofMillis(100));
+		limiter.setOpenDuration(Duration.ofSeconds(10));
+
+		when(clock.millis()).then(__ -> time);
+		when(fallback.acquire(any(), anyInt())).thenReturn(7L);
+	}
+
+	private void breakInner() {
+		when(inner.acquire(any(), anyInt()))
+				.thenThrow(new RedisConnectionFailureException("test"));
+	}
+
+	@Test
+	void passThrough() {
+		when(inner.acquire(any(), anyInt())).thenReturn(3L);
+
+		assertThat(limiter.acquire(KEY, 1)).isEqualTo(3);
+		assertThat(limiter.isOpen()).isFalse();
+		verifyNoInteractions(fallback);
+	}
+
+	@Test
+	void fallbackOnError() {
+		breakInner();
+
+		assertThat(limiter.acquire(KEY, 1)).isEqualTo(7);
+		assertThat(limiter.isOpen()).isFalse();
+	}
+
+	@Test
+	void tripOnErrors() {
+		breakInner();
+
+		limiter.acquire(KEY, 1);
+		limiter.acquire(KEY, 1);
+		clearInvocations(inner);
+
+		assertThat(limiter.isOpen()).isTrue();
+		assertThat(limiter.getTripCount()).isEqualTo(1);
+		assertThat(limiter.acquire(KEY, 1)).isEqualTo(7);
+		verifyNoInteractions(inner);
+	}
+
+	@Test
+	void tripOnSlowCalls() {
+		when(inner.acquire(any(), anyInt())).then(__ -> {
+			time += 200;
+			return 0L;
+		});
+
+		limiter.acquire(KEY, 1);
+		limiter.acquire(KEY, 1);
+
+		assertThat(limiter.isOpen()).isTrue();
+	}
+
+	@Test
+	void successResetsFailures() {
+		when(inner.acquire(any(), anyInt()))
+				.thenThrow(new RedisConnectionFailureException("test"))
+				.thenReturn(0L)
+				.thenThrow(new RedisConnectionFailureException("test"));
+
+		limiter.acquire(KEY, 1);
+		limiter.acquire(KEY, 1);
+		limiter.acquire(KEY, 1);
+
+		assertThat(limiter.isOpen()).isFalse();
+	}
+
+	@Test
+	void recover() {
+		breakInner();
+		limiter.acquire(KEY, 1);
+		limiter.acquire(KEY, 1);
+
+		reset(inner);
+		when(inner.acquire(any(), anyInt())).thenReturn(0L);
+
+		time += 5000;
+		assertThat(limiter.acquire(KEY, 1)).isEqualTo(7);
+		verifyNoInteractions(inner);
+
+		time += 5000;
+		assertThat(limiter.acquire(KEY, 1)).isZero();
+		assertThat(limiter.isOpen()).isFalse();
+		assertThat(limiter.getRecoveryCount()).isEqualTo(1);
+	}
+
+	@Test
+	void probeFailed() {
+		breakInner();
+		limiter.acquire(KEY, 1);
+		limiter.acquire(KEY, 1);
+
+		time += 10000;
+		assertThat(limiter.acquire(KEY, 1)).isEqualTo(7);
+		assertThat(limiter.isOpen()).isTrue();
+
+		// 探测失败后重新计算熔断时间
+		clearInvocations(inner);
+		time += 5000;
+		limiter.acquire(KEY, 1);
+		verifyNoInteractions(inner);
+	}
+}
@@ -0,0 +1,96 @@
+package com.kaciras.blog.infra.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+final class GradientConcurrencyLimiterTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(10, 2, 100);
+
+	private void acquireAll() {
+		while (limiter.tryAcquire(true)) ;
+	}
+
+	private void releaseAll(long rtt) {
+		while (limiter.getInflight() > 0) limiter.release(rtt);
+	}
+
+	@Test
+	void reserveForImportant() {
+		limiter.setReserveRatio(0.2);
+
+		for (var i = 0; i < 8; i++) {
+			assertThat(limiter.tryAcquire(false)).isTrue();
+		}
+		assertThat(limiter.tryAcquire(false)).isFalse();
+
+		assertThat(limiter.tryAcquire(true)).isTrue();
+		assertThat(limiter.tryAcquire(true)).isTrue();
+		assertThat(limiter.tryAcquire(true)).isFalse();
+	}
+
+	@Test
+	void releasePermit() {
+		acquireAll();
+		assertThat(limiter.tryAcquire(true)).isFalse();
+
+		limiter.release(FAST);
+		assertThat(limiter.tryAcquire(true)).isTrue();
+	}
+
+	@Test
+	void growWhenFast() {
+		for (var i = 0; i < 20; i++) {
+			acquireAll();
+			releaseAll(FAST);
+		}
+		assertThat(limiter.getLimit()).isGreaterThan(10);
+	}
+
+	@Test
+	void shrinkWhenSlow() {
+		for (var i = 0; i < 5; i++) {
+			acquireAll();
+			releaseAll(FAST);
+		}
+		var before = limiter.getLimit();
+
+		for (var i = 0; i < 20; i++) {
+			acquireAll();
+			releaseAll(SLOW);
+		}
+		assertThat(limiter.getLimit()).isLessThan(before);
+	}
+
+	@Test
+	void keepWhenIdle() {
+		for (var i = 0; i < 100; i++) {
+			limiter.tryAcquire(true);
+			limiter.release(FAST);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	void bounds() {
+		for (var i = 0; i < 200; i++) {
+			acquireAll();
+			releaseAll(FAST);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(100);
+	}
+
+	@Test
+	void invalidArguments() {
+		assertThatThrownBy(() -> new GradientConcurrencyLimiter(10, 0, 100)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new GradientConcurrencyLimiter(1, 2, 100)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new GradientConcurrencyLimiter(200, 2, 100)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,120 @@
+package com.kaciras.blog.infra.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 跟 RedisTokenBucketTest 的用例一样，两者的结果应当一致。
+ */
+final class MemoryTokenBucketTest {
+
+	private static final byte[] KEY = "TEST".getBytes();
+
+	private final Clock clock = mock(Clock.class);
+
+	private final MemoryTokenBucket limiter = new MemoryTokenBucket(clock);
+
+	private int timeSecond;
+
+	@BeforeEach
+	void setUp() {
+		when(clock.instant()).thenReturn(Instant.ofEpochSecond(timeSecond));
+	}
+
+	private void timePass(int second) {
+		timeSecond += second;
+		when(clock.instant()).thenReturn(Instant.ofEpochSecond(timeSecond));
+	}
+
+	@Test
+	void acquireSingle() {
+		limiter.addBucket(100, 2);
+
+		assertThat(limiter.acquire(KEY, 50)).isZero();
+		assertThat(limiter.acquire(KEY, 40)).isZero();
+		assertThat(limiter.acquire(KEY, 30)).isEqualTo(10);
+	}
+
+	@Test
+	void restoreSingle() {
+		limiter.addBucket(100, 2);
+
+		assertThat(limiter.acquire(KEY, 100)).isZero();
+
+		timePass(50);
+		assertThat(limiter.acquire(KEY, 100)).isZero();
+		assertThat(limiter.acquire(KEY, 30)).isEqualTo(15);
+	}
+
+	@Test
+	void noBucket() {
+		assertThat(limiter.acquire(KEY, 123456)).isZero();
+	}
+
+	@Test
+	void overSize() {
+		limiter.addBucket(100, 2);
+		limiter.addBucket(200, 2);
+
+		assertThat(limiter.acquire(KEY, 150)).isNegative();
+	}
+
+	@Test
+	void acquireMultiple() {
+		limiter.addBucket(40, 4);
+		limiter.addBucket(50, 2);
+		limiter.addBucket(200, 1);
+
+		assertThat(limiter.acquire(KEY, 40)).isZero();
+
+		timePass(10);
+		assertThat(limiter.acquire(KEY, 40)).isEqualTo(5);
+
+		timePass(5);
+		assertThat(limiter.acquire(KEY, 40)).isZero();
+	}
+
+	@Test
+	void evictIdleRecords() {
+		limiter.addBucket(10, 1);
+		limiter.setMaxRecords(1);
+
+		assertThat(limiter.acquire(new byte[]{'A'}, 10)).isZero();
+		timePass(10);
+		assertThat(limiter.acquire(new byte[]{'B'}, 10)).isZero();
+		assertThat(limiter.size()).isOne();
+
+		// A 的记录已被清理，但令牌本来也回满了，所以结果一样
+		assertThat(limiter.acquire(new byte[]{'A'}, 10)).isZero();
+	}
+
+	@Test
+	void sweepAtMostOncePerSecond() {
+		limiter.addBucket(10, 1);
+		limiter.setMaxRecords(1);
+
+		limiter.acquire(new byte[]{'A'}, 1);
+		limiter.acquire(new byte[]{'B'}, 1);
+		limiter.acquire(new byte[]{'C'}, 1);
+		assertThat(limiter.size()).isEqualTo(3);
+
+		// 都空闲了，下一秒的第一次调用会全部清理
+		timePass(10);
+		limiter.acquire(new byte[]{'D'}, 1);
+		assertThat(limiter.size()).isOne();
+	}
+
+	@Test
+	void invalidBucket() {
+		assertThatThrownBy(() -> limiter.addBucket(-5, 3)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> limiter.addBucket(10, 0)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
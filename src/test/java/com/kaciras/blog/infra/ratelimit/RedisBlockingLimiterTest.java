@@ -23,7 +23,7 @@ import static org.mockito.Mockito.*;
 @SpringBootTest(classes = TestRedisConfiguration.class)
 final class RedisBlockingLimiterTest {
 
-	private static final String KEY = "TEST";
+	private static final byte[] KEY = "TEST".getBytes();
 	private static final String NAMESPACE = "RATE_LIMIT:";
 	private static final int DEFAULT_BLOCK_TIME = 60;
 
@@ -42,7 +42,7 @@ final class RedisBlockingLimiterTest {
 
 	@BeforeEach
 	void setUp() {
-		template.unlink(NAMESPACE + KEY);
+		template.unlink(NAMESPACE + "TEST");
 		when(clock.instant()).thenReturn(Instant.EPOCH);
 		limiter = new RedisBlockingLimiter(NAMESPACE, inner, connectionFactory, clock);
 		limiter.setBlockTimes(List.of(Duration.ofSeconds(DEFAULT_BLOCK_TIME)));
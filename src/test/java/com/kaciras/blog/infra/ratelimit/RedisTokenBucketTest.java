@@ -17,13 +17,13 @@ import static org.mockito.Mockito.when;
 @SpringBootTest(classes = TestRedisConfiguration.class)
 final class RedisTokenBucketTest {
 
-	private static final String KEY = "TEST";
+	private static final byte[] KEY = "TEST".getBytes();
 	private static final String NAMESPACE = "RATE_LIMIT:";
 
 	private final Clock clock = mock(Clock.class);
 
 	@Autowired
-	private RedisTemplate<String, Object> template;
+	private RedisTemplate<byte[], Object> template;
 
 	private int timeSecond;
 
@@ -32,7 +32,7 @@ final class RedisTokenBucketTest {
 	@BeforeEach
 	void setUp() {
 		limiter = new RedisTokenBucket(NAMESPACE, template, clock);
-		template.unlink(NAMESPACE + KEY);
+		template.unlink((NAMESPACE + "TEST").getBytes());
 		when(clock.instant()).thenReturn(Instant.ofEpochSecond(timeSecond));
 	}
 
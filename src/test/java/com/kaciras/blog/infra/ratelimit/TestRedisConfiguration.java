@@ -23,4 +23,14 @@ public class TestRedisConfiguration {
 		redisTemplate.setValueSerializer(new GenericToStringSerializer<>(Object.class));
 		return redisTemplate;
 	}
+
+	@Bean
+	RedisTemplate<byte[], Object> testBinaryRedisTemplate(RedisConnectionFactory factory) {
+		var redisTemplate = new RedisTemplate<byte[], Object>();
+		redisTemplate.setConnectionFactory(factory);
+		redisTemplate.setEnableDefaultSerializer(false);
+		redisTemplate.setKeySerializer(RedisSerializer.byteArray());
+		redisTemplate.setValueSerializer(new GenericToStringSerializer<>(Object.class));
+		return redisTemplate;
+	}
 }
@@ -0,0 +1,109 @@
+package com.kaciras.blog.api.draft;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 草稿历史存储方式的对比，10 个版本的约 100K 字符的文章，相邻版本之间有 20 处修改。
+ * <ul>
+ *     <li>plain：以前的存法，每个版本都是完整的文本，读取不需要计算。</li>
+ *     <li>deflate：除最新的外每个版本单独压缩，读任何一个都只要解压一次。</li>
+ *     <li>delta：现在的存法，最新的不压缩，第二新的是基准，更旧的是差异，读最旧的要应用 8 次差异。</li>
+ * </ul>
+ * 三种方式占用的空间在 Setup 时打印出来。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HistoryCodecPerf {
+
+	private static final int VERSIONS = 10;
+
+	private final String[] versions = new String[VERSIONS];
+
+	private byte[][] deflated;
+	private byte[][] packed;
+
+	@Setup
+	public void setUp() {
+		var random = new Random(42);
+		var builder = new StringBuilder();
+		while (builder.length() < 100_000) {
+			builder.append("第 ").append(random.nextInt(10000)).append(" 段，一些 Markdown 文本，**加粗** 和 `code`。\n");
+		}
+		for (var i = 0; i < VERSIONS; i++) {
+			for (var j = 0; j < 20; j++) {
+				var position = random.nextInt(builder.length() - 200);
+				builder.insert(position, "修改了一句话。");
+				builder.delete(position + 50, position + 60);
+			}
+			versions[i] = builder.toString();
+		}
+
+		// 两种压缩方式都不压最新的版本。
+		deflated = new byte[VERSIONS - 1][];
+		for (var i = 0; i < VERSIONS - 1; i++) {
+			deflated[i] = HistoryCodec.encodeBase(versions[i]);
+		}
+
+		// 最新的 versions[9] 不压缩，8 是基准，0~7 是相对于后一个版本的差异。
+		packed = new byte[VERSIONS - 1][];
+		packed[VERSIONS - 2] = HistoryCodec.encodeBase(versions[VERSIONS - 2]);
+		for (var i = VERSIONS - 3; i >= 0; i--) {
+			packed[i] = HistoryCodec.encodeDelta(versions[i + 1], i + 1, versions[i]);
+		}
+
+		var latest = versions[VERSIONS - 1].getBytes(StandardCharsets.UTF_8).length;
+		System.out.printf("plain = %d, deflate = %d, delta = %d bytes%n",
+				sum(versions), latest + sum(deflated), latest + sum(packed));
+	}
+
+	private static long sum(String[] values) {
+		var total = 0L;
+		for (var value : values) {
+			total += value.getBytes(StandardCharsets.UTF_8).length;
+		}
+		return total;
+	}
+
+	private static long sum(byte[][] values) {
+		var total = 0L;
+		for (var value : values) {
+			total += value.length;
+		}
+		return total;
+	}
+
+	@Benchmark
+	public String deflateOldest() {
+		return HistoryCodec.decodeBase(deflated[0]);
+	}
+
+	@Benchmark
+	public String deltaBase() {
+		return HistoryCodec.decodeBase(packed[VERSIONS - 2]);
+	}
+
+	@Benchmark
+	public String deltaOldest() {
+		var content = HistoryCodec.decodeBase(packed[VERSIONS - 2]);
+		for (var i = VERSIONS - 3; i >= 0; i--) {
+			content = HistoryCodec.decodeDelta(content, packed[i]);
+		}
+		return content;
+	}
+
+	/**
+	 * 每次保存后台压缩的开销，主要是计算差异。
+	 */
+	@Benchmark
+	public byte[] encodeDelta() {
+		return HistoryCodec.encodeDelta(versions[VERSIONS - 1], VERSIONS - 1, versions[VERSIONS - 2]);
+	}
+}
@@ -0,0 +1,37 @@
+package com.kaciras.blog.api.misc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测量生成一个验证码（绘图加 JPEG 编码）的耗时，用于估算 CaptchaPool 的填充速率要设多大。
+ * <p>
+ * 单线程的结果就是每个验证码的 CPU 时间，多线程则可以看出 AWT 里有没有锁竞争。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CaptchaGeneratePerf {
+
+	private TextImageCaptchaGenerator generator;
+
+	@Setup
+	public void setUp() throws Exception {
+		generator = new TextImageCaptchaGenerator();
+	}
+
+	@Benchmark
+	public TextImageCaptchaGenerator.Captcha generate() {
+		return generator.generate();
+	}
+
+	@Threads(4)
+	@Benchmark
+	public TextImageCaptchaGenerator.Captcha generate4Threads() {
+		return generator.generate();
+	}
+}
@@ -0,0 +1,116 @@
+package com.kaciras.blog.api.misc;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 对比 TextImageCaptchaGenerator 改写前后各个步骤的耗时，old 开头的是以前的写法，
+ * 其它的直接调用 TextImageCaptchaGenerator 里的方法，测的就是实际使用的代码。
+ * <ul>
+ *     <li>噪点：setRGB + IntStream 生成颜色 vs 直接写 int 数组。</li>
+ *     <li>扭曲：每行每列 copyArea + drawLine vs 在 int 数组上平移。</li>
+ *     <li>编码：ImageIO.write vs 池化的 ImageWriter。</li>
+ *     <li>整体：generate 整个流程，跟 CaptchaGeneratePerf 的结果对照。</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CaptchaRasterPerf {
+
+	private static final int W = 150;
+	private static final int H = 40;
+
+	private final Random random = new Random();
+
+	private BufferedImage image;
+	private int[] pixels;
+	private TextImageCaptchaGenerator generator;
+
+	@Setup
+	public void setUp() throws Exception {
+		image = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		generator = new TextImageCaptchaGenerator();
+	}
+
+	@Benchmark
+	public BufferedImage oldNoise() {
+		var area = (int) (0.08f * W * H);
+		for (var i = 0; i < area; i++) {
+			var rgb = IntStream.range(0, 3)
+					.map(c -> random.nextInt(0xFF))
+					.reduce((a, b) -> a << 8 | b)
+					.getAsInt();
+			image.setRGB(random.nextInt(W), random.nextInt(H), rgb);
+		}
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage noise() {
+		TextImageCaptchaGenerator.noise(ThreadLocalRandom.current(), pixels);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage oldShear() {
+		var g = image.createGraphics();
+		var color = Color.WHITE;
+		var period = random.nextInt(40) + 10;
+		for (var i = 0; i < H; i++) {
+			var d = (int) (Math.sin(i / 2.0));
+			g.copyArea(0, i, W, 1, d, 0);
+			g.setColor(color);
+			g.drawLine(d, i, 0, i);
+			g.drawLine(d + W, i, W, i);
+		}
+		for (var i = 0; i < W; i++) {
+			var d = (int) ((period >> 1) * Math.sin(i / (double) period + Math.PI * 0.7));
+			g.copyArea(i, 0, 1, H, 0, d);
+			g.setColor(color);
+			g.drawLine(i, d, i, 0);
+			g.drawLine(i, d + H, i, H);
+		}
+		g.dispose();
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage shear() {
+		var rand = ThreadLocalRandom.current();
+		TextImageCaptchaGenerator.shearX(rand, pixels, W, H, 0xFFFFFF);
+		TextImageCaptchaGenerator.shearY(rand, pixels, W, H, 0xFFFFFF);
+		return image;
+	}
+
+	@Benchmark
+	public byte[] oldEncode() throws IOException {
+		var output = new ByteArrayOutputStream(4096);
+		ImageIO.write(image, "jpg", output);
+		return output.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return generator.encode(image);
+	}
+
+	@Benchmark
+	public TextImageCaptchaGenerator.Captcha generate() {
+		return generator.generate();
+	}
+}
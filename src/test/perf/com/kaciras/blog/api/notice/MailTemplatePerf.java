@@ -0,0 +1,66 @@
+package com.kaciras.blog.api.notice;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 对比以前每次读取资源并用正则替换的做法和编译后的 MailTemplate，模板为 ReplyToast。
+ * <p>
+ * readAndReplace 包含了读取资源文件的开销，也就是以前 interpolate 的完整过程；
+ * regexOnly 只算正则替换，用来看编译本身省了多少。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MailTemplatePerf {
+
+	private static final Pattern PLACEHOLDER = Pattern.compile("%(\\w+)%");
+
+	private final Map<String, Object> model = Map.of(
+			"title", "给Markdown添加视频支持",
+			"url", "https://blog.example.com/article/18/add-video-support-to-markdown#comment-42",
+			"content", "写得很好，不过 Safari 上好像不能自动播放？",
+			"floor", 42,
+			"nest", 7,
+			"nestFloor", 3
+	);
+
+	private String source;
+	private MailTemplate template;
+
+	@Setup
+	public void setUp() throws IOException {
+		source = readResource();
+		template = MailTemplate.compile(source);
+	}
+
+	private static String readResource() throws IOException {
+		try (var stream = new ClassPathResource("mail/ReplyToast.html").getInputStream()) {
+			return new String(stream.readAllBytes());
+		}
+	}
+
+	@Benchmark
+	public String readAndReplace() throws IOException {
+		return PLACEHOLDER.matcher(readResource()).replaceAll(m -> model.get(m.group(1)).toString());
+	}
+
+	@Benchmark
+	public String regexOnly() {
+		return PLACEHOLDER.matcher(source).replaceAll(m -> model.get(m.group(1)).toString());
+	}
+
+	@Benchmark
+	public String compiled() {
+		return template.render(model);
+	}
+}
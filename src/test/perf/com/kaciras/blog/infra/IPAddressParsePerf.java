@@ -0,0 +1,63 @@
+package com.kaciras.blog.infra;
+
+import com.kaciras.blog.infra.codec.CodecUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比限流器从请求的远程地址生成键的几种方式，RateLimitFilter 对每个请求都要做一次。
+ * <ul>
+ *     <li>inetAddressString：以前的做法，InetAddress.getByName 后拼接 toString() 作为 Redis 的键。</li>
+ *     <li>inetAddressBytes：InetAddress.getByName 后转为 16 字节的数组。</li>
+ *     <li>parseBytes：CodecUtils.parseIPv6Bytes 直接解析字面量。</li>
+ * </ul>
+ * <p>
+ * JDK 21.0.1，单核虚拟机，误差较大，只看相对的快慢：
+ * <pre>
+ * Benchmark                                                        (address)   Mode  Cnt   Score   Error   Units
+ * IPAddressParsePerf.inetAddressBytes                          111.222.33.44  thrpt    5  10.801 ± 3.461  ops/us
+ * IPAddressParsePerf.inetAddressBytes                      2400:3200:baba::1  thrpt    5   4.683 ± 0.912  ops/us
+ * IPAddressParsePerf.inetAddressBytes   2001:db8:85a3:8d3:1319:8a2e:370:7348  thrpt    5   3.819 ± 0.549  ops/us
+ * IPAddressParsePerf.inetAddressString                         111.222.33.44  thrpt    5   4.883 ± 0.640  ops/us
+ * IPAddressParsePerf.inetAddressString                     2400:3200:baba::1  thrpt    5   2.392 ± 0.885  ops/us
+ * IPAddressParsePerf.inetAddressString  2001:db8:85a3:8d3:1319:8a2e:370:7348  thrpt    5   1.794 ± 0.211  ops/us
+ * IPAddressParsePerf.parseBytes                                111.222.33.44  thrpt    5  18.866 ± 4.969  ops/us
+ * IPAddressParsePerf.parseBytes                            2400:3200:baba::1  thrpt    5  10.844 ± 2.298  ops/us
+ * IPAddressParsePerf.parseBytes         2001:db8:85a3:8d3:1319:8a2e:370:7348  thrpt    5   6.652 ± 0.726  ops/us
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Measurement(iterations = 5, time = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IPAddressParsePerf {
+
+	private static final String NAMESPACE = "rl:";
+	private static final byte[] NAMESPACE_BYTES = NAMESPACE.getBytes(StandardCharsets.UTF_8);
+
+	@SuppressWarnings("unused")
+	@Param({"111.222.33.44", "2400:3200:baba::1", "2001:db8:85a3:8d3:1319:8a2e:370:7348"})
+	private String address;
+
+	@Benchmark
+	public byte[] inetAddressString() throws UnknownHostException {
+		var ip = InetAddress.getByName(address);
+		return (NAMESPACE + ip).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public byte[] inetAddressBytes() throws UnknownHostException {
+		var ip = InetAddress.getByName(address);
+		return CodecUtils.concatBytes(NAMESPACE_BYTES, CodecUtils.toIPv6Bytes(ip));
+	}
+
+	@Benchmark
+	public byte[] parseBytes() {
+		var ip = CodecUtils.parseIPv6Bytes(address);
+		return CodecUtils.concatBytes(NAMESPACE_BYTES, ip);
+	}
+}
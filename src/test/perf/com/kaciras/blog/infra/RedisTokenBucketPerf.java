@@ -28,17 +28,17 @@ import java.util.concurrent.TimeUnit;
 public class RedisTokenBucketPerf extends AbstractSpringPerf {
 
 	private static final String NAMESPACE = "TokenBucket:";
-	private static final String KEY = "Benchmark";
+	private static final byte[] KEY = "Benchmark".getBytes();
 
 	@Autowired
-	private RedisTemplate<String, Object> template;
+	private RedisTemplate<byte[], Object> template;
 
 	private RedisTokenBucket single;
 	private RedisTokenBucket forty;
 
 	@Setup(Level.Iteration)
 	public void setUpIteration() {
-		template.unlink(KEY);
+		template.unlink((NAMESPACE + "Benchmark").getBytes());
 
 		single = new RedisTokenBucket(NAMESPACE, template, Clock.systemDefaultZone());
 		single.addBucket(Integer.MAX_VALUE, 10_0000);
@@ -0,0 +1,67 @@
+package com.kaciras.blog.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 RedisValueFormat 的两种格式序列化和反序列化的耗时，数据模仿友链（FriendLink）。
+ * 序列化后的大小与速度无关，在 Setup 里打印出来。
+ * <p>
+ * legacyJson 是 Smile 序列化器读取以前存的 JSON，多了一次格式判断，应当与 JSON 格式的 read 接近。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RedisValueFormatPerf {
+
+	public record Link(URI url, String name, String favicon, String background, URI friendPage, Instant createTime) {}
+
+	private final Link value = new Link(
+			URI.create("https://example.com"),
+			"示例网站",
+			"/image/f8d1e55f0b0de32bda17ea8a06a0e9ae9c2b5f6a2e3e1e5b7a9b2e3f4c5d6e7f.png",
+			"/image/0a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9.webp",
+			URI.create("https://example.com/friends"),
+			Instant.parse("2024-06-01T12:00:00Z")
+	);
+
+	@Param({"JSON", "SMILE"})
+	private RedisValueFormat format;
+
+	private RedisSerializer<Link> serializer;
+	private byte[] data;
+	private byte[] json;
+
+	@Setup
+	public void setUp() throws Exception {
+		var objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+		serializer = format.create(objectMapper, Link.class);
+		data = serializer.serialize(value);
+		json = objectMapper.writeValueAsBytes(value);
+		System.out.printf("%n%s: %d bytes%n", format, data.length);
+	}
+
+	@Benchmark
+	public byte[] write() {
+		return serializer.serialize(value);
+	}
+
+	@Benchmark
+	public Link read() {
+		return serializer.deserialize(data);
+	}
+
+	@Benchmark
+	public Link legacyJson() {
+		return serializer.deserialize(json);
+	}
+}